@@ -0,0 +1,169 @@
+package de.lfstudios.game.benchmarks;
+
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.World;
+import de.lfstudios.game.core.entity.EntityWorld;
+import de.lfstudios.game.core.entity.PhysicsSystem;
+import de.lfstudios.game.core.entity.RenderSystem;
+import de.lfstudios.game.core.map.DepthOrder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeping the objects and the entities in view sorted by depth. Objects
+ * enter and leave the view a few at a time, entities move a little every
+ * frame, both orders stay nearly sorted.
+ *
+ * The entities are moved by interpolating their bodies, interpolate()
+ * measures that part alone.
+ *
+ * @author vwiebe
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepthSortBenchmark
+{
+	private static final float AREA = 4000;
+	private static final float BOX_TO_WORLD = 100;
+
+	@Param({"100", "1000", "10000"})
+	public int count;
+
+	private Random random = new Random(42);
+
+	// count objects of twice as many are in the order at any time
+	private DepthOrder objectOrder;
+	private float[] objectKeys;
+	private int head;
+
+	private World world;
+	private EntityWorld entities;
+	private PhysicsSystem physicsSystem;
+	private RenderSystem renderSystem;
+	private float alpha;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Headless.start();
+
+		this.objectOrder = new DepthOrder();
+		this.objectKeys = new float[this.count * 2];
+
+		for(int i = 0; i < this.objectKeys.length; i++)
+		{
+			this.objectKeys[i] = this.random.nextFloat() * AREA;
+		}
+
+		for(int i = 0; i < this.count; i++)
+		{
+			this.objectOrder.add(i, this.objectKeys[i]);
+		}
+		this.objectOrder.sort();
+
+		this.setupEntities();
+	}
+
+	/**
+	 * Every body is placed twice, the entities start at the first and
+	 * interpolate towards the second position.
+	 */
+	private void setupEntities()
+	{
+		TextureRegion region = Headless.createRegion(30, 30);
+		Animation[] animations = new Animation[8];
+
+		for(int i = 0; i < animations.length; i++)
+		{
+			animations[i] = new Animation(1, region);
+		}
+
+		this.world = new World(new Vector2(0, 0), true);
+		this.entities = new EntityWorld();
+		this.physicsSystem = new PhysicsSystem(BOX_TO_WORLD);
+		this.renderSystem = new RenderSystem();
+
+		BodyDef bodyDef = new BodyDef();
+		bodyDef.type = BodyDef.BodyType.DynamicBody;
+
+		for(int i = 0; i < this.count; i++)
+		{
+			float x = this.random.nextFloat() * AREA;
+			float y = this.random.nextFloat() * AREA;
+			bodyDef.position.set(x / BOX_TO_WORLD, y / BOX_TO_WORLD);
+			Body body = this.world.createBody(bodyDef);
+
+			int entity = this.entities.create(x, y);
+			this.entities.setBody(entity, body);
+			this.entities.setAnimations(entity, animations, true, 4);
+		}
+
+		this.physicsSystem.savePositions(this.entities);
+
+		// nothing was destroyed, the ids are 0 to count - 1
+		for(int entity = 0; entity < this.count; entity++)
+		{
+			Body body = this.entities.getBody(entity);
+			body.setTransform(body.getPosition().x + (this.random.nextFloat() - 0.5f),
+							  body.getPosition().y + (this.random.nextFloat() - 0.5f),
+							  0);
+		}
+	}
+
+	@Benchmark
+	public int sortObjects()
+	{
+		// one percent of the view changes
+		for(int i = 0; i < Math.max(1, this.count / 100); i++)
+		{
+			this.objectOrder.remove(this.head % this.objectKeys.length);
+			int entering = (this.head + this.count) % this.objectKeys.length;
+			this.objectOrder.add(entering, this.objectKeys[entering]);
+			this.head++;
+		}
+
+		this.objectOrder.sort();
+		return this.objectOrder.size();
+	}
+
+	@Benchmark
+	public void interpolate()
+	{
+		this.physicsSystem.interpolate(this.entities, this.nextAlpha());
+	}
+
+	@Benchmark
+	public int sortEntities()
+	{
+		this.physicsSystem.interpolate(this.entities, this.nextAlpha());
+		this.renderSystem.update(this.entities, 0, 0, AREA, AREA);
+		return this.renderSystem.size();
+	}
+
+	/**
+	 *
+	 * @return moves back and forth between 0 and 1 in 100 steps
+	 */
+	private float nextAlpha()
+	{
+		this.alpha += 0.01f;
+		if(this.alpha > 2) this.alpha -= 2;
+		return this.alpha > 1 ? 2 - this.alpha : this.alpha;
+	}
+
+	@TearDown(Level.Trial)
+	public void dispose()
+	{
+		this.world.dispose();
+	}
+}
@@ -0,0 +1,166 @@
+package de.lfstudios.game.benchmarks;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.scenes.scene2d.ui.Touchpad;
+import de.lfstudios.game.core.ai.ChaseBehaviour;
+import de.lfstudios.game.core.audio.SoundEffects;
+import de.lfstudios.game.core.entity.EntityWorld;
+import de.lfstudios.game.core.map.Map;
+import de.lfstudios.game.core.player.Action;
+import de.lfstudios.game.core.player.ActionAssetCache;
+import de.lfstudios.game.core.player.ActionSet;
+import de.lfstudios.game.core.player.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The entity updates of a frame on the real map with a growing number of
+ * players and pigs around the start: Player.update alone, everything
+ * {@link Map#updateEntities} does (AI included), a single world.step and
+ * everything {@link Map#updatePhysics} does.
+ *
+ * @author vwiebe
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark
+{
+	private static final float DELTA = 1 / 60f;
+	private static final String MAP_ATLAS = "game/atlas/map.atlas";
+	private static final String PIG_ACTIONS = "game/actions/pig.json";
+
+	// the start of the player, in world pixels
+	private static final float START_X = 777 * 4;
+	private static final float START_Y = 3820 * 4 + 300;
+	private static final int SPAWN_COLUMNS = 32;
+	private static final float SPAWN_SPACING = 100;
+
+	@Param({"1", "10", "100", "1000"})
+	public int count;
+
+	private AssetManager assetManager;
+	private Map map;
+	private ActionAssetCache actionAssetCache;
+	private Player[] players;
+	private Action pigStandAction;
+	private Action pigWalkAction;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Headless.start();
+
+		this.assetManager = Headless.createAssetManager();
+		SoundEffects.queueAssets(this.assetManager);
+		Player.queueAssets(this.assetManager);
+		this.assetManager.load(PIG_ACTIONS, ActionSet.class);
+		this.assetManager.load(Map.MAP_FILE, Map.class);
+		this.assetManager.finishLoading();
+
+		this.map = this.assetManager.get(Map.MAP_FILE, Map.class);
+		this.actionAssetCache = new ActionAssetCache(this.assetManager, Player.ATLAS, MAP_ATLAS);
+		SoundEffects soundEffects = new SoundEffects(this.assetManager, 8);
+		Touchpad touchpad = new Touchpad(0, new Touchpad.TouchpadStyle());
+
+		ActionSet playerActions = this.assetManager.get(Player.ACTIONS, ActionSet.class);
+		this.players = new Player[this.count];
+
+		for(int i = 0; i < this.count; i++)
+		{
+			this.players[i] = new Player(this.actionAssetCache, playerActions, soundEffects);
+			this.players[i].attach(this.map.getEntities(),
+								   this.map.spawn(this.getSpawnX(i),
+												  this.getSpawnY(i),
+												  Player.BODY_RADIUS,
+												  Player.BODY_OFFSET_X,
+												  Player.BODY_OFFSET_Y),
+								   touchpad);
+		}
+
+		ActionSet pigActions = this.assetManager.get(PIG_ACTIONS, ActionSet.class);
+		this.pigStandAction = new Action(this.actionAssetCache, pigActions.get("stand"));
+		this.pigWalkAction = new Action(this.actionAssetCache, pigActions.get("walk"));
+
+		for(int i = this.count; i < this.count * 2; i++)
+		{
+			int pig = this.map.spawn(this.getSpawnX(i), this.getSpawnY(i), 0.15f, 0.6f, 0.1f);
+			this.map.getEntities().setTeam(pig, 2);
+			this.map.getEntities().setAnimations(pig,
+												 this.pigStandAction.getAnimations(),
+												 this.pigStandAction.isAnimationLooping(),
+												 4);
+			this.map.getAiScheduler().add(pig, new ChaseBehaviour(this.map,
+																  this.pigStandAction,
+																  this.pigWalkAction,
+																  4,
+																  1.2f));
+		}
+
+		this.map.setFocus(this.players[0].getEntity());
+
+		// get the pigs moving
+		for(int i = 0; i < 10; i++)
+		{
+			this.map.updateEntities(DELTA);
+			this.map.updatePhysics(DELTA);
+		}
+	}
+
+	private float getSpawnX(int i)
+	{
+		return START_X + (i % SPAWN_COLUMNS) * SPAWN_SPACING;
+	}
+
+	private float getSpawnY(int i)
+	{
+		return START_Y - (i / SPAWN_COLUMNS) * SPAWN_SPACING;
+	}
+
+	@Benchmark
+	public void updatePlayers()
+	{
+		EntityWorld entities = this.map.getEntities();
+
+		for(Player player : this.players)
+		{
+			player.update(entities, player.getEntity(), DELTA);
+		}
+	}
+
+	@Benchmark
+	public void updateEntities()
+	{
+		this.map.updateEntities(DELTA);
+	}
+
+	@Benchmark
+	public void stepWorld()
+	{
+		this.map.getWorld().step(DELTA, 6, 2);
+	}
+
+	@Benchmark
+	public void updatePhysics()
+	{
+		this.map.updatePhysics(DELTA);
+	}
+
+	@TearDown(Level.Trial)
+	public void dispose()
+	{
+		for(Player player : this.players)
+		{
+			player.dispose();
+		}
+		this.pigStandAction.dispose();
+		this.pigWalkAction.dispose();
+		this.actionAssetCache.dispose();
+		this.map.getWorld().dispose();
+		this.assetManager.dispose();
+	}
+}
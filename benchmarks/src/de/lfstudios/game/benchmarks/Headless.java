@@ -0,0 +1,125 @@
+package de.lfstudios.game.benchmarks;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import de.lfstudios.game.core.map.Map;
+import de.lfstudios.game.core.map.MapLoader;
+import de.lfstudios.game.core.player.ActionSet;
+import de.lfstudios.game.core.player.ActionSetLoader;
+import de.lfstudios.game.core.render.TextureDecoder;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.IntBuffer;
+
+/**
+ * Starts libGDX without a window for the benchmarks. The headless backend
+ * has no GL, a GL20 that does nothing takes its place, which is enough to
+ * create textures, shaders, frame buffers and sprite batches. Nothing is
+ * drawn, only the CPU side of the game is measured.
+ *
+ * The assets are internal files, so the working directory must be
+ * android/assets, the jmh task takes care of that.
+ *
+ * @author vwiebe
+ */
+public class Headless
+{
+	private static boolean started;
+
+	public static synchronized void start()
+	{
+		if(started) return;
+
+		new HeadlessApplication(new ApplicationAdapter() {}, new HeadlessApplicationConfiguration());
+
+		if(Gdx.gl == null)
+		{
+			GL20 gl = createNullGL();
+			Gdx.gl = gl;
+			Gdx.gl20 = gl;
+		}
+		started = true;
+	}
+
+	/**
+	 *
+	 * @return an asset manager with the loaders of the game
+	 */
+	public static AssetManager createAssetManager()
+	{
+		AssetManager assetManager = new AssetManager();
+		// the decoder threads are daemons, they end with the benchmark
+		TextureDecoder decoder = TextureDecoder.register(assetManager, new InternalFileHandleResolver());
+		assetManager.setLoader(Map.class, new MapLoader(new InternalFileHandleResolver(), decoder));
+		assetManager.setLoader(ActionSet.class, new ActionSetLoader(new InternalFileHandleResolver()));
+		return assetManager;
+	}
+
+	/**
+	 * For synthetic objects and entities, only the size of the region
+	 * matters to the game logic.
+	 *
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static TextureRegion createRegion(int width, int height)
+	{
+		Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+		TextureRegion region = new TextureRegion(new Texture(pixmap));
+		pixmap.dispose();
+		return region;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	private static GL20 createNullGL()
+	{
+		return (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(),
+											 new Class[] {GL20.class},
+											 new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				String name = method.getName();
+
+				// shaders compile and link, they just have no attributes or uniforms
+				if(name.equals("glGetShaderiv") || name.equals("glGetProgramiv"))
+				{
+					int parameter = (Integer) args[1];
+
+					if(parameter == GL20.GL_COMPILE_STATUS || parameter == GL20.GL_LINK_STATUS)
+					{
+						((IntBuffer) args[2]).put(0, 1);
+					}
+					return null;
+				}
+
+				// frame buffers are complete
+				if(name.equals("glCheckFramebufferStatus")) return GL20.GL_FRAMEBUFFER_COMPLETE;
+
+				Class<?> type = method.getReturnType();
+
+				// 0 is no object to GL, e.g. for glCreateShader
+				if(type == int.class) return name.startsWith("glCreate") || name.startsWith("glGen") ? 1 : 0;
+				if(type == boolean.class) return false;
+				if(type == float.class) return 0f;
+				if(type == String.class) return "";
+				return null;
+			}
+		});
+	}
+}
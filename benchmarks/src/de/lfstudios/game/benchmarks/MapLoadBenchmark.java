@@ -0,0 +1,73 @@
+package de.lfstudios.game.benchmarks;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import de.lfstudios.game.core.map.Map;
+import de.lfstudios.game.core.map.MapCacheLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the map from the tmx file and from the baked map cache, textures
+ * included. Run the bakeMap task first, otherwise the cache is outdated.
+ *
+ * @author vwiebe
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapLoadBenchmark
+{
+	private static final String MAP_CACHE = "game/map/map.bin";
+
+	@Param({"tmx", "cache"})
+	public String source;
+
+	private AssetManager assetManager;
+	private Map map;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Headless.start();
+		this.assetManager = Headless.createAssetManager();
+
+		if(this.source.equals("cache") &&
+		   !MapCacheLoader.isValid(Gdx.files.internal(MAP_CACHE), Gdx.files.internal(Map.MAP_FILE)))
+		{
+			throw new IllegalStateException(MAP_CACHE + " is missing or outdated, run the bakeMap task");
+		}
+	}
+
+	@Benchmark
+	public Map load()
+	{
+		MapCacheLoader mapCache = null;
+
+		if(this.source.equals("cache"))
+		{
+			mapCache = new MapCacheLoader();
+			mapCache.read(Gdx.files.internal(MAP_CACHE));
+		}
+
+		this.map = new Map(this.assetManager, mapCache);
+		return this.map;
+	}
+
+	@TearDown(Level.Invocation)
+	public void disposeMap()
+	{
+		this.map.dispose();
+		this.map.getWorld().dispose();
+	}
+
+	@TearDown(Level.Trial)
+	public void dispose()
+	{
+		this.assetManager.dispose();
+	}
+}
@@ -0,0 +1,83 @@
+package de.lfstudios.game.benchmarks;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
+import de.lfstudios.game.core.map.Map;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU side of drawing the ground of the real map for a 1920x1080 view
+ * in the meadow around the start: the renderer of libGDX rebuilding the
+ * vertices of every visible cell, {@link Map#drawTiles} from the baked tile
+ * layers or chunks, and a whole frame of the map with the objects.
+ *
+ * @author vwiebe
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileRenderBenchmark
+{
+	@Param({"false", "true"})
+	public boolean chunkBaking;
+
+	private AssetManager assetManager;
+	private Map map;
+	private OrthogonalTiledMapRenderer mapRenderer;
+	private SpriteBatch spriteBatch;
+	private OrthographicCamera camera;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Headless.start();
+
+		this.assetManager = Headless.createAssetManager();
+		this.assetManager.load(Map.MAP_FILE, Map.class);
+		this.assetManager.finishLoading();
+
+		this.map = this.assetManager.get(Map.MAP_FILE, Map.class);
+		this.map.setChunkBaking(this.chunkBaking);
+		this.mapRenderer = new OrthogonalTiledMapRenderer(this.map.getTiledMap(), this.map.getMapScale());
+		this.spriteBatch = new SpriteBatch();
+		this.camera = new OrthographicCamera(1920, 1080);
+		this.camera.position.set(777 * 4, 3820 * 4, 0);
+		this.camera.update();
+	}
+
+	@Benchmark
+	public void renderer()
+	{
+		this.mapRenderer.setView(this.camera);
+		this.mapRenderer.render();
+	}
+
+	@Benchmark
+	public void tiles()
+	{
+		this.map.drawTiles(this.camera);
+	}
+
+	@Benchmark
+	public void frame()
+	{
+		this.map.drawTiles(this.camera);
+		this.map.draw(this.spriteBatch, this.camera);
+	}
+
+	@TearDown(Level.Trial)
+	public void dispose()
+	{
+		this.spriteBatch.dispose();
+		this.mapRenderer.dispose();
+		this.map.getWorld().dispose();
+		this.assetManager.dispose();
+	}
+}
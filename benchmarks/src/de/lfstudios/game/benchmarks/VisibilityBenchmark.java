@@ -0,0 +1,94 @@
+package de.lfstudios.game.benchmarks;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import de.lfstudios.game.core.map.MapObjectGrid;
+import de.lfstudios.game.core.map.MapObjectStore;
+import de.lfstudios.game.core.map.MapVisibility;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per frame visibility update of the map objects on synthetic maps,
+ * scrolling like the player walks and jumping to random places. The grid
+ * and the view match the game, 64 px tiles at scale 4 and a 1920x1080
+ * screen.
+ *
+ * @author vwiebe
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisibilityBenchmark
+{
+	private static final int TILE_SIZE = 64 * 4;
+	private static final int GRID_CELL_SIZE = 4 * TILE_SIZE;
+	private static final float SCROLL_SPEED = 8;
+
+	@Param({"64", "256"})
+	public int mapTiles;
+
+	@Param({"1000", "10000", "100000"})
+	public int objects;
+
+	private int mapSize;
+	private MapVisibility visibility;
+	private OrthographicCamera camera;
+	private Random random = new Random(42);
+	private float scrollX = SCROLL_SPEED;
+	private float scrollY = SCROLL_SPEED / 2;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Headless.start();
+		this.mapSize = this.mapTiles * TILE_SIZE;
+
+		TextureRegion region = Headless.createRegion(32, 48);
+		MapObjectStore store = new MapObjectStore();
+		MapObjectGrid grid = new MapObjectGrid(this.mapSize, this.mapSize, GRID_CELL_SIZE);
+
+		for(int i = 0; i < this.objects; i++)
+		{
+			grid.add(store, store.add(this.random.nextFloat() * this.mapSize,
+									  this.random.nextFloat() * this.mapSize,
+									  0,
+									  i % 10 == 0,
+									  region,
+									  4));
+		}
+
+		this.visibility = new MapVisibility(store, grid);
+		this.camera = new OrthographicCamera(1920, 1080);
+		this.camera.position.set(this.mapSize / 2, this.mapSize / 2, 0);
+		this.visibility.update(this.camera);
+	}
+
+	@Benchmark
+	public int scroll()
+	{
+		float x = this.camera.position.x + this.scrollX;
+		float y = this.camera.position.y + this.scrollY;
+
+		// bounce off the border of the map
+		if(x < 0 || x > this.mapSize) this.scrollX = -this.scrollX;
+		if(y < 0 || y > this.mapSize) this.scrollY = -this.scrollY;
+
+		this.camera.position.set(x, y, 0);
+		this.visibility.update(this.camera);
+		return this.visibility.getVisibleObjects().size();
+	}
+
+	@Benchmark
+	public int jump()
+	{
+		this.camera.position.set(this.random.nextFloat() * this.mapSize, this.random.nextFloat() * this.mapSize, 0);
+		this.visibility.update(this.camera);
+		return this.visibility.getVisibleObjects().size();
+	}
+}
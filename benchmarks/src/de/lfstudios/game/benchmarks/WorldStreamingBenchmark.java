@@ -0,0 +1,98 @@
+package de.lfstudios.game.benchmarks;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import de.lfstudios.game.core.map.Map;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A frame of the map while the camera travels across it row by row for a
+ * 1920x1080 view, the whole map loaded at once against the regions
+ * streamed around the camera. The regions are loaded and unloaded on the
+ * way, the frames that add one pay for its tiles, objects and bodies.
+ *
+ * @author vwiebe
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldStreamingBenchmark
+{
+	private static final float DELTA = 1 / 60f;
+	// a fast run, in world pixels per frame
+	private static final float SPEED = 50;
+	private static final float ROW_SPACING = 2048;
+
+	@Param({"false", "true"})
+	public boolean streaming;
+
+	private AssetManager assetManager;
+	private String mapFile;
+	private Map map;
+	private SpriteBatch spriteBatch;
+	private OrthographicCamera camera;
+	private int direction = 1;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Headless.start();
+
+		this.mapFile = this.streaming ? Map.WORLD_FILE : Map.MAP_FILE;
+		this.assetManager = Headless.createAssetManager();
+		this.assetManager.load(this.mapFile, Map.class);
+		this.assetManager.finishLoading();
+
+		this.map = this.assetManager.get(this.mapFile, Map.class);
+		this.spriteBatch = new SpriteBatch();
+		this.camera = new OrthographicCamera(1920, 1080);
+		this.camera.position.set(0, ROW_SPACING / 2, 0);
+		this.camera.update();
+		this.map.finishLoading(this.camera.position.x, this.camera.position.y);
+	}
+
+	@Benchmark
+	public void frame()
+	{
+		this.move();
+		this.map.drawTiles(this.camera);
+		this.map.updatePhysics(DELTA);
+		this.map.draw(this.spriteBatch, this.camera);
+	}
+
+	/**
+	 * Moves along the current row and turns into the next one at the edge
+	 * of the map, back to the first one after the last.
+	 */
+	private void move()
+	{
+		float x = this.camera.position.x + SPEED * this.direction;
+		float y = this.camera.position.y;
+
+		if(x < 0 || x > this.map.getMapPixelWidth())
+		{
+			this.direction = -this.direction;
+			x = this.camera.position.x;
+			y += ROW_SPACING;
+
+			if(y > this.map.getMapPixelHeight()) y = ROW_SPACING / 2;
+		}
+
+		this.camera.position.set(x, y, 0);
+		this.camera.update();
+	}
+
+	@TearDown(Level.Trial)
+	public void dispose()
+	{
+		this.spriteBatch.dispose();
+		this.map.getWorld().dispose();
+		this.assetManager.dispose();
+	}
+}
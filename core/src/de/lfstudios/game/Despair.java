@@ -2,27 +2,79 @@ package de.lfstudios.game;
 
 import com.badlogic.gdx.Game;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
 import de.lfstudios.game.controller.GameController;
 import de.lfstudios.game.controller.MenuController;
+import de.lfstudios.game.core.audio.SoundEffects;
+import de.lfstudios.game.core.map.Map;
+import de.lfstudios.game.core.map.MapLoader;
+import de.lfstudios.game.core.player.ActionSet;
+import de.lfstudios.game.core.player.ActionSetLoader;
+import de.lfstudios.game.core.render.TextureDecoder;
+import de.lfstudios.game.view.GameScreen;
+import de.lfstudios.game.view.LoadingScreen;
 
 /**
  * @author vwiebe
  */
 public class Despair extends Game
 {
+	/**
+	 * Shows the debug overlay and the frame profiler from the start. They
+	 * can always be toggled, the overlay with a three finger touch or F8,
+	 * the profiler with a four finger touch or F9.
+	 */
+	public static final boolean DEBUG = false;
+
+	/**
+	 * Puts a few chasing pigs next to the start of the game. They are the
+	 * only enemies so far and keep the AI scheduler, the flow fields and
+	 * the entity systems running.
+	 */
+	public static final boolean SPAWN_TEST_ENEMIES = true;
+
+	private static final int SOUND_VOICES = 8;
 
 	private MenuController menuController;
 	private GameController gameController;
+	private AssetManager assetManager;
+	private TextureDecoder textureDecoder;
+	private SoundEffects soundEffects;
 
 	@Override
 	public void create()
 	{
+		if(this.assetManager == null)
+		{
+			this.assetManager = new AssetManager();
+			this.textureDecoder = TextureDecoder.register(this.assetManager, new InternalFileHandleResolver());
+			this.assetManager.setLoader(Map.class, new MapLoader(new InternalFileHandleResolver(), this.textureDecoder));
+			this.assetManager.setLoader(ActionSet.class, new ActionSetLoader(new InternalFileHandleResolver()));
+
+			// the clips are tiny and needed by the menu right away
+			SoundEffects.queueAssets(this.assetManager);
+			this.assetManager.finishLoading();
+			this.soundEffects = new SoundEffects(this.assetManager, SOUND_VOICES);
+		}
+
 		this.menuController = new MenuController(this);
 		this.setScreen(this.menuController.getMenuScreen());
 	}
 
+	/**
+	 * Queues the game assets and shows the loading screen, the game screen
+	 * is created by {@link #showGame()} once everything is loaded.
+	 */
 	public void startGame()
 	{
+		GameScreen.queueAssets(this.assetManager);
+		this.setScreen(new LoadingScreen(this));
+	}
+
+	public void showGame()
+	{
+		Gdx.app.log("Despair", this.textureDecoder.getReport());
 		this.gameController = new GameController(this);
 		this.setScreen(this.gameController.getGameScreen());
 	}
@@ -36,4 +88,31 @@ public class Despair extends Game
 	{
 		this.create();
 	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public AssetManager getAssetManager()
+	{
+		return this.assetManager;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public SoundEffects getSoundEffects()
+	{
+		return this.soundEffects;
+	}
+
+	@Override
+	public void dispose()
+	{
+		super.dispose();
+		this.soundEffects.stopAll();
+		this.assetManager.dispose();
+		this.textureDecoder.dispose();
+	}
 }
@@ -0,0 +1,239 @@
+package de.lfstudios.game.core.ai;
+
+import com.badlogic.gdx.utils.TimeUtils;
+import de.lfstudios.game.core.entity.EntityWorld;
+
+/**
+ * Runs the {@link Behaviour}s of the entities on a time budget. Entities
+ * near the focus (usually the player) are updated every frame. Far entities
+ * are updated round robin at most every FAR_INTERVAL seconds, as many per
+ * frame as the remaining budget allows, and continue where the last frame
+ * stopped. A far entity that misses its interval just waits for the next
+ * frame, it keeps its last decision meanwhile.
+ *
+ * @author vwiebe
+ */
+public class AiScheduler
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static final float NEAR_DISTANCE = 1200;
+	private static final float FAR_INTERVAL = 0.25f;
+	private static final long DEFAULT_BUDGET = 2000000;
+
+	private long budget = DEFAULT_BUDGET;
+
+	private int size;
+	private int[] agents = new int[INITIAL_CAPACITY];
+	private Behaviour[] behaviours = new Behaviour[INITIAL_CAPACITY];
+	private float[] elapsed = new float[INITIAL_CAPACITY];
+	private int cursor;
+
+	private long frameCost;
+	private int nearUpdates;
+	private int farUpdates;
+	private int deferredUpdates;
+
+	/**
+	 *
+	 * @param entity
+	 * @param behaviour
+	 */
+	public void add(int entity, Behaviour behaviour)
+	{
+		if(this.size == this.agents.length)
+		{
+			int[] newAgents = new int[this.size * 2];
+			Behaviour[] newBehaviours = new Behaviour[this.size * 2];
+			float[] newElapsed = new float[this.size * 2];
+			System.arraycopy(this.agents, 0, newAgents, 0, this.size);
+			System.arraycopy(this.behaviours, 0, newBehaviours, 0, this.size);
+			System.arraycopy(this.elapsed, 0, newElapsed, 0, this.size);
+			this.agents = newAgents;
+			this.behaviours = newBehaviours;
+			this.elapsed = newElapsed;
+		}
+
+		this.agents[this.size] = entity;
+		this.behaviours[this.size] = behaviour;
+		// the first update happens as soon as possible
+		this.elapsed[this.size] = FAR_INTERVAL;
+		this.size++;
+	}
+
+	/**
+	 *
+	 * @param entity
+	 */
+	public void remove(int entity)
+	{
+		for(int i = 0; i < this.size; i++)
+		{
+			if(this.agents[i] == entity)
+			{
+				this.size--;
+				this.agents[i] = this.agents[this.size];
+				this.behaviours[i] = this.behaviours[this.size];
+				this.elapsed[i] = this.elapsed[this.size];
+				this.behaviours[this.size] = null;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Called once per frame before the controllers and animations of the
+	 * entities are updated.
+	 *
+	 * @param world
+	 * @param focusX
+	 * @param focusY
+	 * @param delta
+	 */
+	public void update(EntityWorld world, float focusX, float focusY, float delta)
+	{
+		long start = TimeUtils.nanoTime();
+		this.nearUpdates = 0;
+		this.farUpdates = 0;
+		this.deferredUpdates = 0;
+
+		// near entities first, they are the ones the player sees react
+		for(int i = 0; i < this.size; i++)
+		{
+			this.elapsed[i] += delta;
+
+			if(this.isNear(world, this.agents[i], focusX, focusY))
+			{
+				this.behaviours[i].update(world, this.agents[i], this.elapsed[i]);
+				this.elapsed[i] = 0;
+				this.nearUpdates++;
+			}
+		}
+
+		// then the far ones round robin with what is left of the budget
+		int firstDeferred = -1;
+
+		for(int n = 0; n < this.size; n++)
+		{
+			if(this.cursor >= this.size) this.cursor = 0;
+
+			int i = this.cursor++;
+
+			if(this.elapsed[i] < FAR_INTERVAL) continue;
+
+			if(TimeUtils.nanoTime() - start >= this.budget)
+			{
+				if(firstDeferred == -1) firstDeferred = i;
+				this.deferredUpdates++;
+				continue;
+			}
+
+			this.behaviours[i].update(world, this.agents[i], this.elapsed[i]);
+			this.elapsed[i] = 0;
+			this.farUpdates++;
+		}
+
+		// the next frame starts with the first one that missed out
+		if(firstDeferred != -1) this.cursor = firstDeferred;
+
+		this.frameCost = TimeUtils.nanoTime() - start;
+	}
+
+	/**
+	 *
+	 * @param world
+	 * @param entity
+	 * @param focusX
+	 * @param focusY
+	 * @return
+	 */
+	private boolean isNear(EntityWorld world, int entity, float focusX, float focusY)
+	{
+		float dx = world.getX(entity) - focusX;
+		float dy = world.getY(entity) - focusY;
+		return dx * dx + dy * dy < NEAR_DISTANCE * NEAR_DISTANCE;
+	}
+
+	/**
+	 *
+	 * @param budget nanoseconds per frame for the far entities
+	 */
+	public void setBudget(long budget)
+	{
+		this.budget = budget;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public long getBudget()
+	{
+		return this.budget;
+	}
+
+	/**
+	 *
+	 * @return nanoseconds spent in the last update
+	 */
+	public long getFrameCost()
+	{
+		return this.frameCost;
+	}
+
+	/**
+	 *
+	 * @return the part of the budget used in the last update, above 1 if near entities overran it
+	 */
+	public float getBudgetUse()
+	{
+		return (float) this.frameCost / this.budget;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getNearUpdates()
+	{
+		return this.nearUpdates;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getFarUpdates()
+	{
+		return this.farUpdates;
+	}
+
+	/**
+	 *
+	 * @return far entities that were due but did not fit into the budget
+	 */
+	public int getDeferredUpdates()
+	{
+		return this.deferredUpdates;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public String getReport()
+	{
+		return this.size + " agents, " + this.nearUpdates + " near, " + this.farUpdates + " far, " +
+			   this.deferredUpdates + " deferred, " + (this.frameCost / 1000) + " us (" +
+			   (int) (this.getBudgetUse() * 100) + "% of budget)";
+	}
+}
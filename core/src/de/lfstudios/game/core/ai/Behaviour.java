@@ -0,0 +1,22 @@
+package de.lfstudios.game.core.ai;
+
+import de.lfstudios.game.core.entity.EntityWorld;
+
+/**
+ * The decision logic of an entity, run by the {@link AiScheduler}. Far
+ * entities are updated less often than every frame, so a behaviour gets
+ * the time since its last update and leaves its decision in the entity's
+ * components (velocity, direction, animation) until the next one.
+ *
+ * @author vwiebe
+ */
+public interface Behaviour
+{
+	/**
+	 *
+	 * @param world
+	 * @param entity
+	 * @param elapsed seconds since the last update of this entity
+	 */
+	void update(EntityWorld world, int entity, float elapsed);
+}
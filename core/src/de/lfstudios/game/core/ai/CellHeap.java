@@ -0,0 +1,98 @@
+package de.lfstudios.game.core.ai;
+
+/**
+ * Binary min heap of cells by an int priority, for the searches on the
+ * {@link NavigationGrid}. A cell can be pushed more than once, the caller
+ * skips the outdated entries.
+ *
+ * @author vwiebe
+ */
+class CellHeap
+{
+	private int[] cells = new int[256];
+	private int[] priorities = new int[256];
+	private int size;
+
+	void clear()
+	{
+		this.size = 0;
+	}
+
+	/**
+	 *
+	 * @param cell
+	 * @param priority
+	 */
+	void push(int cell, int priority)
+	{
+		if(this.size == this.cells.length)
+		{
+			int[] newCells = new int[this.size * 2];
+			int[] newPriorities = new int[this.size * 2];
+			System.arraycopy(this.cells, 0, newCells, 0, this.size);
+			System.arraycopy(this.priorities, 0, newPriorities, 0, this.size);
+			this.cells = newCells;
+			this.priorities = newPriorities;
+		}
+
+		int i = this.size++;
+
+		while(i > 0)
+		{
+			int parent = (i - 1) >> 1;
+			if(this.priorities[parent] <= priority) break;
+
+			this.cells[i] = this.cells[parent];
+			this.priorities[i] = this.priorities[parent];
+			i = parent;
+		}
+		this.cells[i] = cell;
+		this.priorities[i] = priority;
+	}
+
+	/**
+	 *
+	 * @return the cell with the lowest priority
+	 */
+	int pop()
+	{
+		int cell = this.cells[0];
+		int lastCell = this.cells[--this.size];
+		int lastPriority = this.priorities[this.size];
+		int i = 0;
+
+		while(true)
+		{
+			int child = (i << 1) + 1;
+			if(child >= this.size) break;
+
+			if(child + 1 < this.size && this.priorities[child + 1] < this.priorities[child]) child++;
+			if(this.priorities[child] >= lastPriority) break;
+
+			this.cells[i] = this.cells[child];
+			this.priorities[i] = this.priorities[child];
+			i = child;
+		}
+		this.cells[i] = lastCell;
+		this.priorities[i] = lastPriority;
+		return cell;
+	}
+
+	/**
+	 *
+	 * @return the priority of the cell pop returns next
+	 */
+	int peekPriority()
+	{
+		return this.priorities[0];
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	int size()
+	{
+		return this.size;
+	}
+}
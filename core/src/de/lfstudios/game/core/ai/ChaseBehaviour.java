@@ -0,0 +1,202 @@
+package de.lfstudios.game.core.ai;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+import de.lfstudios.game.core.entity.EntityWorld;
+import de.lfstudios.game.core.map.Map;
+import de.lfstudios.game.core.player.Action;
+
+/**
+ * Walks towards the nearest hostile entity in sight and keeps some distance
+ * to the entities of its own team, otherwise wanders around. If the map's
+ * {@link FlowField} leads to the target it is followed around the walls,
+ * otherwise the entity walks straight at it. One instance per entity, the
+ * actions are shared.
+ *
+ * @author vwiebe
+ */
+public class ChaseBehaviour implements Behaviour
+{
+	// world pixels
+	private static final float SIGHT = 1000;
+	private static final float SEPARATION = 120;
+
+	private static final float WANDER_MIN_TIME = 1;
+	private static final float WANDER_MAX_TIME = 3;
+
+	// shared by all behaviours, they run one after another
+	private static final IntArray neighbours = new IntArray();
+	private static final Vector2 flow = new Vector2();
+
+	private Map map;
+	private Action standAction;
+	private Action walkAction;
+	private Action currentAction;
+	private float scale;
+	private float speed;
+
+	private float wanderTime;
+	private float wanderX;
+	private float wanderY;
+
+	/**
+	 *
+	 * @param map
+	 * @param standAction
+	 * @param walkAction
+	 * @param scale of the sprite
+	 * @param speed in box2d units per second
+	 */
+	public ChaseBehaviour(Map map, Action standAction, Action walkAction, float scale, float speed)
+	{
+		this.map = map;
+		this.standAction = standAction;
+		this.walkAction = walkAction;
+		this.scale = scale;
+		this.speed = speed;
+	}
+
+	/**
+	 *
+	 * @param world
+	 * @param entity
+	 * @param elapsed
+	 */
+	@Override
+	public void update(EntityWorld world, int entity, float elapsed)
+	{
+		float x = world.getX(entity);
+		float y = world.getY(entity);
+		int team = world.getTeam(entity);
+
+		neighbours.clear();
+		this.map.queryEntities(x - SIGHT, y - SIGHT, x + SIGHT, y + SIGHT, neighbours);
+
+		float targetDistance = SIGHT * SIGHT;
+		float targetX = 0;
+		float targetY = 0;
+		boolean hasTarget = false;
+		float separationX = 0;
+		float separationY = 0;
+
+		for(int i = 0; i < neighbours.size; i++)
+		{
+			int other = neighbours.get(i);
+			if(other == entity) continue;
+
+			int otherTeam = world.getTeam(other);
+			float dx = world.getX(other) - x;
+			float dy = world.getY(other) - y;
+			float distance = dx * dx + dy * dy;
+
+			if(otherTeam == team)
+			{
+				if(distance < SEPARATION * SEPARATION && distance > 0)
+				{
+					separationX -= dx / distance * SEPARATION;
+					separationY -= dy / distance * SEPARATION;
+				}
+			}
+			else if(otherTeam != 0 && distance < targetDistance)
+			{
+				targetDistance = distance;
+				targetX = dx;
+				targetY = dy;
+				hasTarget = true;
+			}
+		}
+
+		float moveX;
+		float moveY;
+
+		if(hasTarget)
+		{
+			FlowField flowField = this.map.getFlowField();
+
+			if(flowField.isTarget(x + targetX, y + targetY) && flowField.getDirection(x, y, flow))
+			{
+				moveX = flow.x + separationX;
+				moveY = flow.y + separationY;
+			}
+			else
+			{
+				float length = (float) Math.sqrt(targetDistance);
+				moveX = targetX / length + separationX;
+				moveY = targetY / length + separationY;
+			}
+		}
+		else
+		{
+			this.wander(elapsed);
+			moveX = this.wanderX + separationX;
+			moveY = this.wanderY + separationY;
+		}
+
+		this.move(world, entity, moveX, moveY);
+	}
+
+	/**
+	 *
+	 * @param elapsed
+	 */
+	private void wander(float elapsed)
+	{
+		this.wanderTime -= elapsed;
+		if(this.wanderTime > 0) return;
+
+		this.wanderTime = MathUtils.random(WANDER_MIN_TIME, WANDER_MAX_TIME);
+
+		// stand still half of the time
+		if(MathUtils.randomBoolean())
+		{
+			this.wanderX = 0;
+			this.wanderY = 0;
+		}
+		else
+		{
+			float angle = MathUtils.random(MathUtils.PI2);
+			this.wanderX = MathUtils.cos(angle) * 0.5f;
+			this.wanderY = MathUtils.sin(angle) * 0.5f;
+		}
+	}
+
+	/**
+	 *
+	 * @param world
+	 * @param entity
+	 * @param x
+	 * @param y
+	 */
+	private void move(EntityWorld world, int entity, float x, float y)
+	{
+		float length = (float) Math.sqrt(x * x + y * y);
+
+		if(length < 0.1f)
+		{
+			world.setVelocity(entity, 0, 0);
+			this.setCurrentAction(world, entity, this.standAction);
+			return;
+		}
+
+		// slower when wandering or pushed around only a little
+		float speed = this.speed * Math.min(1, length) / length;
+		world.setVelocity(entity, x * speed, y * speed);
+		world.setDirection(entity, Action.toDirection(x, y));
+		this.setCurrentAction(world, entity, this.walkAction);
+	}
+
+	/**
+	 *
+	 * @param world
+	 * @param entity
+	 * @param action
+	 */
+	private void setCurrentAction(EntityWorld world, int entity, Action action)
+	{
+		if(action == this.currentAction) return;
+
+		this.currentAction = action;
+		world.setAnimations(entity, action.getAnimations(), action.isAnimationLooping(), this.scale);
+	}
+}
@@ -0,0 +1,174 @@
+package de.lfstudios.game.core.ai;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * The cost to reach one target cell from every cell around it, shared by
+ * all entities chasing the same target. It is computed once per target
+ * cell with Dijkstra outwards from the target, up to MAX_COST, so the
+ * target moving inside its cell costs nothing. Every entity then just
+ * steps to its cheapest neighbour instead of running its own search.
+ *
+ * @author vwiebe
+ */
+public class FlowField
+{
+	// about 24 straight cells, further away the entities find no direction
+	private static final int MAX_COST = 24 * NavigationGrid.STRAIGHT_COST;
+
+	private final NavigationGrid grid;
+	private final int columns;
+
+	// the cost of a cell is valid where stamps equals stamp
+	private final int[] costs;
+	private final int[] stamps;
+	private int stamp;
+	private final CellHeap open = new CellHeap();
+
+	private int target = -1;
+	private int computeCount;
+	private int reachedCells;
+	private long computeTime;
+
+	/**
+	 *
+	 * @param grid
+	 */
+	public FlowField(NavigationGrid grid)
+	{
+		this.grid = grid;
+		this.columns = grid.getColumns();
+		this.costs = new int[grid.getColumns() * grid.getRows()];
+		this.stamps = new int[this.costs.length];
+	}
+
+	/**
+	 * Called once per frame, recomputes the field if the target has
+	 * entered another cell.
+	 *
+	 * @param targetX
+	 * @param targetY
+	 */
+	public void update(float targetX, float targetY)
+	{
+		int target = this.grid.getCell(targetX, targetY);
+		if(target == this.target) return;
+
+		long start = TimeUtils.nanoTime();
+		this.target = target;
+		this.stamp++;
+		this.reachedCells = 0;
+		this.open.clear();
+
+		// the target may stand on a blocked cell next to a wall, it still spreads
+		this.costs[target] = 0;
+		this.stamps[target] = this.stamp;
+		this.open.push(target, 0);
+
+		while(this.open.size() > 0)
+		{
+			int cost = this.open.peekPriority();
+			int cell = this.open.pop();
+
+			// an outdated entry
+			if(cost > this.costs[cell]) continue;
+			this.reachedCells++;
+
+			int column = cell % this.columns;
+			int row = cell / this.columns;
+
+			for(int n = 0; n < NavigationGrid.NEIGHBOUR_X.length; n++)
+			{
+				int neighbour = this.grid.getNeighbour(column, row, n);
+				if(neighbour == -1) continue;
+
+				int neighbourCost = cost + (n < 4 ? NavigationGrid.STRAIGHT_COST : NavigationGrid.DIAGONAL_COST);
+
+				if(neighbourCost <= MAX_COST &&
+				   (this.stamps[neighbour] != this.stamp || neighbourCost < this.costs[neighbour]))
+				{
+					this.stamps[neighbour] = this.stamp;
+					this.costs[neighbour] = neighbourCost;
+					this.open.push(neighbour, neighbourCost);
+				}
+			}
+		}
+
+		this.computeCount++;
+		this.computeTime = TimeUtils.nanoTime() - start;
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @param y
+	 * @param direction set to the unit vector towards the cheapest neighbour
+	 * @return false in the target cell and where the field does not reach
+	 */
+	public boolean getDirection(float x, float y, Vector2 direction)
+	{
+		int cell = this.grid.getCell(x, y);
+
+		if(cell == this.target || this.stamps[cell] != this.stamp) return false;
+
+		int column = cell % this.columns;
+		int row = cell / this.columns;
+		int best = -1;
+		int bestCost = this.costs[cell];
+
+		for(int n = 0; n < NavigationGrid.NEIGHBOUR_X.length; n++)
+		{
+			int neighbour = this.grid.getNeighbour(column, row, n);
+
+			if(neighbour != -1 && this.stamps[neighbour] == this.stamp && this.costs[neighbour] < bestCost)
+			{
+				best = n;
+				bestCost = this.costs[neighbour];
+			}
+		}
+
+		if(best == -1) return false;
+
+		direction.set(NavigationGrid.NEIGHBOUR_X[best], NavigationGrid.NEIGHBOUR_Y[best]).nor();
+		return true;
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @param y
+	 * @return true if the position is in the cell the field leads to
+	 */
+	public boolean isTarget(float x, float y)
+	{
+		return this.grid.getCell(x, y) == this.target;
+	}
+
+	/**
+	 *
+	 * @return how often the field was computed
+	 */
+	public int getComputeCount()
+	{
+		return this.computeCount;
+	}
+
+	/**
+	 *
+	 * @return the cells reached by the last computation
+	 */
+	public int getReachedCells()
+	{
+		return this.reachedCells;
+	}
+
+	/**
+	 *
+	 * @return nanoseconds the last computation took
+	 */
+	public long getComputeTime()
+	{
+		return this.computeTime;
+	}
+}
@@ -0,0 +1,275 @@
+package de.lfstudios.game.core.ai;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Walkability of the map in square cells, rasterized from the collision
+ * chains when the map is loaded. Every cell a chain passes through is
+ * blocked, moving diagonally past a blocked cell is not allowed, so a
+ * chain can not be crossed between two of its cells.
+ *
+ * Moves cost 10 straight and 14 diagonal, the paths and the
+ * {@link FlowField}s use the same costs.
+ *
+ * @author vwiebe
+ */
+public class NavigationGrid
+{
+	static final int STRAIGHT_COST = 10;
+	static final int DIAGONAL_COST = 14;
+
+	// the 8 neighbours, straight ones first
+	static final int[] NEIGHBOUR_X = {1, -1, 0, 0, 1, 1, -1, -1};
+	static final int[] NEIGHBOUR_Y = {0, 0, 1, -1, 1, -1, 1, -1};
+
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+	private final boolean[] blocked;
+	private int blockedCount;
+
+	// the state of the last search, valid where stamps equals stamp
+	private final int[] costs;
+	private final int[] parents;
+	private final int[] stamps;
+	private int stamp;
+	private final CellHeap open = new CellHeap();
+
+	/**
+	 *
+	 * @param mapPixelWidth
+	 * @param mapPixelHeight
+	 * @param cellSize in world pixels
+	 */
+	public NavigationGrid(int mapPixelWidth, int mapPixelHeight, float cellSize)
+	{
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (int) Math.ceil(mapPixelWidth / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil(mapPixelHeight / cellSize));
+		this.blocked = new boolean[this.columns * this.rows];
+		this.costs = new int[this.blocked.length];
+		this.parents = new int[this.blocked.length];
+		this.stamps = new int[this.blocked.length];
+	}
+
+	/**
+	 * Blocks every cell the chain passes through.
+	 *
+	 * @param vertices absolute positions in world pixels, x and y interleaved
+	 */
+	public void addChain(float[] vertices)
+	{
+		for(int i = 2; i < vertices.length; i += 2)
+		{
+			this.addSegment(vertices[i - 2], vertices[i - 1], vertices[i], vertices[i + 1]);
+		}
+	}
+
+	/**
+	 * Steps along the segment in quarter cells, fine enough not to skip a
+	 * cell the segment crosses more than at a corner.
+	 *
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 */
+	private void addSegment(float x1, float y1, float x2, float y2)
+	{
+		float length = (float) Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
+		int steps = Math.max(1, (int) Math.ceil(length / (this.cellSize / 4)));
+
+		for(int i = 0; i <= steps; i++)
+		{
+			float t = (float) i / steps;
+			int cell = this.getCell(x1 + (x2 - x1) * t, y1 + (y2 - y1) * t);
+
+			if(!this.blocked[cell])
+			{
+				this.blocked[cell] = true;
+				this.blockedCount++;
+			}
+		}
+	}
+
+	/**
+	 * A* with the octile distance, the path is written to the given array
+	 * as cells from the start to the goal. The start is not part of it.
+	 *
+	 * @param startX
+	 * @param startY
+	 * @param goalX
+	 * @param goalY
+	 * @param path cleared first
+	 * @return false if the goal can not be reached
+	 */
+	public boolean findPath(float startX, float startY, float goalX, float goalY, IntArray path)
+	{
+		path.clear();
+
+		int start = this.getCell(startX, startY);
+		int goal = this.getCell(goalX, goalY);
+
+		if(this.blocked[goal]) return false;
+
+		this.stamp++;
+		this.open.clear();
+		this.costs[start] = 0;
+		this.parents[start] = -1;
+		this.stamps[start] = this.stamp;
+		this.open.push(start, this.estimate(start, goal));
+
+		while(this.open.size() > 0)
+		{
+			int priority = this.open.peekPriority();
+			int cell = this.open.pop();
+
+			if(cell == goal)
+			{
+				for(int c = goal; c != start; c = this.parents[c])
+				{
+					path.add(c);
+				}
+				path.reverse();
+				return true;
+			}
+
+			// an outdated entry, the cell was pushed again with a lower cost
+			if(priority > this.costs[cell] + this.estimate(cell, goal)) continue;
+
+			int column = cell % this.columns;
+			int row = cell / this.columns;
+
+			for(int n = 0; n < NEIGHBOUR_X.length; n++)
+			{
+				int neighbour = this.getNeighbour(column, row, n);
+				if(neighbour == -1) continue;
+
+				int cost = this.costs[cell] + (n < 4 ? STRAIGHT_COST : DIAGONAL_COST);
+
+				if(this.stamps[neighbour] != this.stamp || cost < this.costs[neighbour])
+				{
+					this.stamps[neighbour] = this.stamp;
+					this.costs[neighbour] = cost;
+					this.parents[neighbour] = cell;
+					this.open.push(neighbour, cost + this.estimate(neighbour, goal));
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param cell
+	 * @param goal
+	 * @return the octile distance, never more than the real cost
+	 */
+	private int estimate(int cell, int goal)
+	{
+		int dx = Math.abs(cell % this.columns - goal % this.columns);
+		int dy = Math.abs(cell / this.columns - goal / this.columns);
+		return STRAIGHT_COST * Math.max(dx, dy) + (DIAGONAL_COST - STRAIGHT_COST) * Math.min(dx, dy);
+	}
+
+	/**
+	 *
+	 * @param column
+	 * @param row
+	 * @param n index into NEIGHBOUR_X and NEIGHBOUR_Y
+	 * @return the walkable neighbour or -1
+	 */
+	int getNeighbour(int column, int row, int n)
+	{
+		int neighbourColumn = column + NEIGHBOUR_X[n];
+		int neighbourRow = row + NEIGHBOUR_Y[n];
+
+		if(!this.isWalkable(neighbourColumn, neighbourRow)) return -1;
+
+		// no cutting corners
+		if(n >= 4 && (!this.isWalkable(neighbourColumn, row) || !this.isWalkable(column, neighbourRow))) return -1;
+
+		return neighbourRow * this.columns + neighbourColumn;
+	}
+
+	/**
+	 *
+	 * @param column
+	 * @param row
+	 * @return false for blocked cells and outside of the map
+	 */
+	public boolean isWalkable(int column, int row)
+	{
+		return column >= 0 && column < this.columns && row >= 0 && row < this.rows &&
+			   !this.blocked[row * this.columns + column];
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @param y
+	 * @return the cell containing the position, clamped to the map
+	 */
+	public int getCell(float x, float y)
+	{
+		int column = Math.min(this.columns - 1, Math.max(0, (int) (x / this.cellSize)));
+		int row = Math.min(this.rows - 1, Math.max(0, (int) (y / this.cellSize)));
+		return row * this.columns + column;
+	}
+
+	/**
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public float getCenterX(int cell)
+	{
+		return (cell % this.columns + 0.5f) * this.cellSize;
+	}
+
+	/**
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public float getCenterY(int cell)
+	{
+		return (cell / this.columns + 0.5f) * this.cellSize;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getColumns()
+	{
+		return this.columns;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getRows()
+	{
+		return this.rows;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getCellSize()
+	{
+		return this.cellSize;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBlockedCount()
+	{
+		return this.blockedCount;
+	}
+}
@@ -0,0 +1,143 @@
+package de.lfstudios.game.core.audio;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A short sound with one or more recorded variants, played through
+ * {@link SoundEffects}. Voices of effects with a higher priority may steal
+ * the voices of effects with a lower or equal priority.
+ *
+ * @author vwiebe
+ */
+public class SoundEffect
+{
+	public static final int PRIORITY_AMBIENT = 0;
+	public static final int PRIORITY_ACTION = 1;
+	public static final int PRIORITY_HIT = 2;
+	public static final int PRIORITY_UI = 3;
+
+	static final Array<SoundEffect> ALL = new Array<SoundEffect>();
+
+	public static final SoundEffect WALK = new SoundEffect("walk", PRIORITY_AMBIENT, 0, 0, "sounds/walk.mp3");
+	public static final SoundEffect RUN = new SoundEffect("run", PRIORITY_AMBIENT, 0, 0, "sounds/run.mp3");
+	public static final SoundEffect SWING = new SoundEffect("swing", PRIORITY_ACTION, 0.3f, 0.05f,
+															"sounds/swing_0.mp3",
+															"sounds/swing_1.mp3",
+															"sounds/swing_2.mp3",
+															"sounds/swing_3.mp3");
+	public static final SoundEffect BLOCK = new SoundEffect("block", PRIORITY_ACTION, 0.3f, 0.05f, "sounds/block_0.mp3");
+	public static final SoundEffect SWORD = new SoundEffect("sword", PRIORITY_HIT, 0.5f, 0.05f,
+															"sounds/sword1.mp3",
+															"sounds/sword2.mp3",
+															"sounds/sword3.mp3",
+															"sounds/sword4.mp3",
+															"sounds/sword5.mp3",
+															"sounds/sword6.mp3",
+															"sounds/sword7.mp3",
+															"sounds/sword8.mp3");
+	public static final SoundEffect GORE = new SoundEffect("gore", PRIORITY_HIT, 1.5f, 0.05f,
+														   "sounds/gore1.mp3",
+														   "sounds/gore2.mp3",
+														   "sounds/gore3.mp3",
+														   "sounds/gore4.mp3",
+														   "sounds/gore5.mp3",
+														   "sounds/gore6.mp3",
+														   "sounds/gore7.mp3",
+														   "sounds/gore8.mp3");
+	public static final SoundEffect GONG = new SoundEffect("gong", PRIORITY_UI, 2f, 0, "sounds/gong.mp3");
+
+	private final int id;
+	private final String name;
+	private final int priority;
+	private final float duration;
+	private final float pitchVariance;
+	private final String[] variants;
+
+	/**
+	 *
+	 * @param name
+	 * @param priority
+	 * @param duration seconds a voice is kept busy, looped voices are kept until stopped
+	 * @param pitchVariance maximum random change of the pitch, 0.05 = 5%
+	 * @param variants paths of the recorded variants
+	 */
+	private SoundEffect(String name, int priority, float duration, float pitchVariance, String... variants)
+	{
+		this.id = ALL.size;
+		this.name = name;
+		this.priority = priority;
+		this.duration = duration;
+		this.pitchVariance = pitchVariance;
+		this.variants = variants;
+		ALL.add(this);
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return the effect with the given name
+	 */
+	public static SoundEffect forName(String name)
+	{
+		for(SoundEffect effect : ALL)
+		{
+			if(effect.name.equals(name)) return effect;
+		}
+		throw new GdxRuntimeException("unknown sound effect: " + name);
+	}
+
+	/**
+	 *
+	 * @return index of the effect in ALL
+	 */
+	int getId()
+	{
+		return this.id;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public String getName()
+	{
+		return this.name;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getPriority()
+	{
+		return this.priority;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getDuration()
+	{
+		return this.duration;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getPitchVariance()
+	{
+		return this.pitchVariance;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public String[] getVariants()
+	{
+		return this.variants;
+	}
+}
@@ -0,0 +1,313 @@
+package de.lfstudios.game.core.audio;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Plays preloaded {@link SoundEffect}s on a bounded number of voices. When
+ * all voices are busy the voice with the lowest priority is stolen, the
+ * oldest one if several share that priority. An effect is dropped if every
+ * voice plays something more important. Variants are picked at random
+ * without repeating the last one.
+ *
+ * The latency counters measure the time from the trigger to the sound
+ * being handed to the audio backend, the output latency of the device
+ * comes on top.
+ *
+ * @author vwiebe
+ */
+public class SoundEffects
+{
+	private static final long NO_VOICE = -1;
+
+	private Sound[][] sounds;
+	private int[] lastVariants;
+
+	private Sound[] voiceSounds;
+	private long[] voiceIds;
+	private int[] voicePriorities;
+	private long[] voiceEnds;
+	private int[] voiceGenerations;
+
+	private int plays;
+	private int steals;
+	private int drops;
+	private long lastLatency;
+	private long maxLatency;
+	private long totalLatency;
+
+	/**
+	 * Queues the variants of every sound effect.
+	 *
+	 * @param assetManager
+	 */
+	public static void queueAssets(AssetManager assetManager)
+	{
+		for(SoundEffect effect : SoundEffect.ALL)
+		{
+			for(String variant : effect.getVariants())
+			{
+				assetManager.load(variant, Sound.class);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param assetManager the assets queued by {@link #queueAssets} must be loaded
+	 * @param voices maximum number of sounds playing at once
+	 */
+	public SoundEffects(AssetManager assetManager, int voices)
+	{
+		this.sounds = new Sound[SoundEffect.ALL.size][];
+		this.lastVariants = new int[SoundEffect.ALL.size];
+
+		for(SoundEffect effect : SoundEffect.ALL)
+		{
+			String[] variants = effect.getVariants();
+			this.sounds[effect.getId()] = new Sound[variants.length];
+
+			for(int i = 0; i < variants.length; i++)
+			{
+				this.sounds[effect.getId()][i] = assetManager.get(variants[i], Sound.class);
+			}
+			this.lastVariants[effect.getId()] = -1;
+		}
+
+		this.voiceSounds = new Sound[voices];
+		this.voiceIds = new long[voices];
+		this.voicePriorities = new int[voices];
+		this.voiceEnds = new long[voices];
+		this.voiceGenerations = new int[voices];
+	}
+
+	/**
+	 *
+	 * @param effect
+	 * @param volume
+	 * @return a handle for {@link #stop} or -1 if the effect was dropped
+	 */
+	public long play(SoundEffect effect, float volume)
+	{
+		return this.start(effect, volume, false);
+	}
+
+	/**
+	 * The voice is kept until {@link #stop} is called or it is stolen.
+	 *
+	 * @param effect
+	 * @param volume
+	 * @return a handle for {@link #stop} or -1 if the effect was dropped
+	 */
+	public long loop(SoundEffect effect, float volume)
+	{
+		return this.start(effect, volume, true);
+	}
+
+	/**
+	 * Stopping a voice that has been reused in the meantime does nothing.
+	 *
+	 * @param handle
+	 */
+	public void stop(long handle)
+	{
+		if(handle == NO_VOICE) return;
+
+		int voice = (int) (handle & 0xffffffffL);
+		int generation = (int) (handle >>> 32);
+
+		if(voice < this.voiceSounds.length &&
+		   this.voiceGenerations[voice] == generation &&
+		   this.voiceSounds[voice] != null)
+		{
+			this.voiceSounds[voice].stop(this.voiceIds[voice]);
+			this.voiceSounds[voice] = null;
+		}
+	}
+
+	/**
+	 *
+	 * @param effect
+	 * @param volume
+	 * @param looping
+	 * @return
+	 */
+	private long start(SoundEffect effect, float volume, boolean looping)
+	{
+		long start = TimeUtils.nanoTime();
+		long now = TimeUtils.millis();
+		int voice = this.findVoice(effect.getPriority(), now);
+
+		if(voice == -1)
+		{
+			this.drops++;
+			return NO_VOICE;
+		}
+
+		if(this.voiceSounds[voice] != null)
+		{
+			this.voiceSounds[voice].stop(this.voiceIds[voice]);
+			this.steals++;
+		}
+
+		Sound sound = this.sounds[effect.getId()][this.pickVariant(effect)];
+		float pitch = 1 + MathUtils.random(-effect.getPitchVariance(), effect.getPitchVariance());
+		long id = looping ? sound.loop(volume, pitch, 0) : sound.play(volume, pitch, 0);
+
+		if(id == -1)
+		{
+			// the backend had no channel left
+			this.voiceSounds[voice] = null;
+			this.drops++;
+			return NO_VOICE;
+		}
+
+		this.voiceSounds[voice] = sound;
+		this.voiceIds[voice] = id;
+		this.voicePriorities[voice] = effect.getPriority();
+		this.voiceEnds[voice] = looping ? Long.MAX_VALUE : now + (long) (effect.getDuration() * 1000);
+		this.voiceGenerations[voice]++;
+
+		this.plays++;
+		this.lastLatency = TimeUtils.nanoTime() - start;
+		this.maxLatency = Math.max(this.maxLatency, this.lastLatency);
+		this.totalLatency += this.lastLatency;
+
+		return ((long) this.voiceGenerations[voice] << 32) | voice;
+	}
+
+	/**
+	 *
+	 * @param priority
+	 * @param now
+	 * @return a free voice, the voice to steal or -1
+	 */
+	private int findVoice(int priority, long now)
+	{
+		int victim = -1;
+
+		for(int i = 0; i < this.voiceSounds.length; i++)
+		{
+			if(this.voiceSounds[i] == null || this.voiceEnds[i] <= now)
+			{
+				this.voiceSounds[i] = null;
+				return i;
+			}
+
+			if(this.voicePriorities[i] <= priority &&
+			   (victim == -1 ||
+				this.voicePriorities[i] < this.voicePriorities[victim] ||
+				(this.voicePriorities[i] == this.voicePriorities[victim] && this.voiceEnds[i] < this.voiceEnds[victim])))
+			{
+				victim = i;
+			}
+		}
+		return victim;
+	}
+
+	/**
+	 *
+	 * @param effect
+	 * @return
+	 */
+	private int pickVariant(SoundEffect effect)
+	{
+		int count = effect.getVariants().length;
+		int variant = MathUtils.random(count - 1);
+
+		if(count > 1 && variant == this.lastVariants[effect.getId()])
+		{
+			variant = (variant + 1) % count;
+		}
+
+		this.lastVariants[effect.getId()] = variant;
+		return variant;
+	}
+
+	/**
+	 *
+	 * @return nanoseconds from the last trigger to the sound being started
+	 */
+	public long getLastLatency()
+	{
+		return this.lastLatency;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public long getMaxLatency()
+	{
+		return this.maxLatency;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public long getAverageLatency()
+	{
+		return this.plays == 0 ? 0 : this.totalLatency / this.plays;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getPlays()
+	{
+		return this.plays;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getSteals()
+	{
+		return this.steals;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getDrops()
+	{
+		return this.drops;
+	}
+
+	/**
+	 *
+	 * @return the number of voices that are currently playing
+	 */
+	public int getActiveVoices()
+	{
+		long now = TimeUtils.millis();
+		int active = 0;
+
+		for(int i = 0; i < this.voiceSounds.length; i++)
+		{
+			if(this.voiceSounds[i] != null && this.voiceEnds[i] > now) active++;
+		}
+		return active;
+	}
+
+	/**
+	 * Stops every voice, the sounds stay loaded.
+	 */
+	public void stopAll()
+	{
+		for(int i = 0; i < this.voiceSounds.length; i++)
+		{
+			if(this.voiceSounds[i] != null)
+			{
+				this.voiceSounds[i].stop(this.voiceIds[i]);
+				this.voiceSounds[i] = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package de.lfstudios.game.core.debug;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.physics.box2d.Box2DDebugRenderer;
+import de.lfstudios.game.core.map.Map;
+import de.lfstudios.game.core.map.MapObjectGrid;
+import de.lfstudios.game.core.map.MapVisibility;
+
+/**
+ * Draws the physics world, the cells of the object grid and the culling
+ * rectangle on top of the map. Toggled with a three finger touch or F8.
+ * While switched off nothing is created, allocated or traversed.
+ *
+ * @author vwiebe
+ */
+public class DebugOverlay
+{
+	private boolean enabled;
+	private boolean toggleDown;
+	private boolean touchDown;
+	// a fourth finger made the touch one of the frame profiler
+	private boolean touchCancelled;
+
+	private Box2DDebugRenderer debugRenderer;
+	private ShapeRenderer shapeRenderer;
+	private Matrix4 physicsMatrix;
+
+	/**
+	 *
+	 * @param enabled
+	 */
+	public DebugOverlay(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Toggles the overlay on F8 or when a three finger touch ends. The
+	 * fingers land one after the other, so a touch that reached a fourth
+	 * finger belongs to the {@link FrameProfiler} and is ignored.
+	 */
+	public void checkInput()
+	{
+		boolean down = Gdx.input.isKeyPressed(Input.Keys.F8);
+
+		if(down && !this.toggleDown)
+		{
+			this.setEnabled(!this.enabled);
+		}
+		this.toggleDown = down;
+
+		boolean touch = Gdx.input.isTouched(2);
+
+		if(Gdx.input.isTouched(3))
+		{
+			this.touchCancelled = true;
+		}
+
+		if(!touch)
+		{
+			if(this.touchDown && !this.touchCancelled)
+			{
+				this.setEnabled(!this.enabled);
+			}
+			this.touchCancelled = false;
+		}
+		this.touchDown = touch;
+	}
+
+	/**
+	 *
+	 * @param camera
+	 * @param map
+	 */
+	public void render(OrthographicCamera camera, Map map)
+	{
+		if(!this.enabled) return;
+
+		if(this.debugRenderer == null)
+		{
+			this.debugRenderer = new Box2DDebugRenderer(true,   // drawBodies
+														false,  // drawJoints
+														false,  // drawAABBs
+														true,   // drawInactiveBodies
+														false,  // drawVelocities
+														false); // drawContacts
+			this.shapeRenderer = new ShapeRenderer();
+			this.physicsMatrix = new Matrix4();
+		}
+
+		this.physicsMatrix.set(camera.combined).scl(Map.getBoxToWorld());
+		this.debugRenderer.render(map.getWorld(), this.physicsMatrix);
+
+		this.shapeRenderer.setProjectionMatrix(camera.combined);
+		this.shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
+		this.drawGrid(map.getObjectGrid());
+		this.drawCulling(map.getVisibility(), camera);
+		this.shapeRenderer.end();
+	}
+
+	/**
+	 *
+	 * @param objectGrid
+	 */
+	private void drawGrid(MapObjectGrid objectGrid)
+	{
+		float cellSize = objectGrid.getCellSize();
+		float width = objectGrid.getColumns() * cellSize;
+		float height = objectGrid.getRows() * cellSize;
+
+		this.shapeRenderer.setColor(Color.DARK_GRAY);
+
+		for(int column = 0; column <= objectGrid.getColumns(); column++)
+		{
+			this.shapeRenderer.line(column * cellSize, 0, column * cellSize, height);
+		}
+
+		for(int row = 0; row <= objectGrid.getRows(); row++)
+		{
+			this.shapeRenderer.line(0, row * cellSize, width, row * cellSize);
+		}
+	}
+
+	/**
+	 *
+	 * @param visibility
+	 * @param camera
+	 */
+	private void drawCulling(MapVisibility visibility, OrthographicCamera camera)
+	{
+		// culling rectangle including the margin
+		this.shapeRenderer.setColor(Color.RED);
+		this.shapeRenderer.rect(visibility.getLeft(),
+								visibility.getBottom(),
+								visibility.getRight() - visibility.getLeft(),
+								visibility.getTop() - visibility.getBottom());
+
+		// actual camera view
+		this.shapeRenderer.setColor(Color.YELLOW);
+		this.shapeRenderer.rect(camera.position.x - camera.viewportWidth * camera.zoom / 2,
+								camera.position.y - camera.viewportHeight * camera.zoom / 2,
+								camera.viewportWidth * camera.zoom,
+								camera.viewportHeight * camera.zoom);
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public boolean isEnabled()
+	{
+		return this.enabled;
+	}
+
+	/**
+	 *
+	 * @param enabled
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	public void dispose()
+	{
+		if(this.debugRenderer != null)
+		{
+			this.debugRenderer.dispose();
+			this.shapeRenderer.dispose();
+		}
+	}
+}
@@ -0,0 +1,341 @@
+package de.lfstudios.game.core.debug;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.util.Arrays;
+
+/**
+ * Measures the sections of a frame in nanoseconds and keeps the last
+ * WINDOW frames, shown as percentiles in an overlay or dumped to a file.
+ * Along with the times it counts the GL draw calls and texture binds of
+ * the whole frame through the {@link GLProfiler}, and the allocations and
+ * garbage collections, guessed from the java heap growing and shrinking
+ * between frames.
+ *
+ * Toggled with a four finger touch or F9, F10 dumps the report. While
+ * switched off every call returns right away and the GLProfiler is off.
+ *
+ * @author vwiebe
+ */
+public class FrameProfiler
+{
+	private static final int WINDOW = 240;
+	private static final float REFRESH_INTERVAL = 0.5f;
+	private static final float TEXT_MARGIN = 10;
+	private static final float NANOS_PER_MILLI = 1000000f;
+
+	private boolean enabled;
+	private boolean toggleDown;
+	private boolean dumpDown;
+
+	private String[] sectionNames;
+	// section s of the frame in slot f at sectionTimes[s * WINDOW + f]
+	private long[] sectionTimes;
+	private long[] sectionStarts;
+
+	private long[] frameTimes = new long[WINDOW];
+	private int[] drawCalls = new int[WINDOW];
+	private int[] textureBindings = new int[WINDOW];
+	private long[] allocations = new long[WINDOW];
+	private int frames;
+	private int slot;
+	private long frameStart;
+
+	private int profilerDrawCalls;
+	private int profilerBindings;
+	private long lastHeap;
+	private int collections;
+
+	private SpriteBatch spriteBatch;
+	private BitmapFont font;
+	private String text = "";
+	private float refreshTime;
+	private long[] sortBuffer = new long[WINDOW];
+
+	/**
+	 *
+	 * @param sectionNames the sections are referred to by their index in here
+	 * @param enabled
+	 */
+	public FrameProfiler(String[] sectionNames, boolean enabled)
+	{
+		this.sectionNames = sectionNames;
+		this.sectionTimes = new long[sectionNames.length * WINDOW];
+		this.sectionStarts = new long[sectionNames.length];
+		this.setEnabled(enabled);
+	}
+
+	/**
+	 * Toggles the profiler on a four finger touch or F9, dumps on F10.
+	 */
+	public void checkInput()
+	{
+		boolean down = Gdx.input.isTouched(3) || Gdx.input.isKeyPressed(Input.Keys.F9);
+
+		if(down && !this.toggleDown)
+		{
+			this.setEnabled(!this.enabled);
+		}
+		this.toggleDown = down;
+
+		down = Gdx.input.isKeyPressed(Input.Keys.F10);
+
+		if(down && !this.dumpDown && this.enabled)
+		{
+			this.dump();
+		}
+		this.dumpDown = down;
+	}
+
+	/**
+	 * Called at the start of a frame, before any section.
+	 */
+	public void beginFrame()
+	{
+		if(!this.enabled) return;
+
+		this.slot = this.frames % WINDOW;
+
+		for(int section = 0; section < this.sectionNames.length; section++)
+		{
+			this.sectionTimes[section * WINDOW + this.slot] = 0;
+		}
+
+		this.profilerDrawCalls = GLProfiler.drawCalls;
+		this.profilerBindings = GLProfiler.textureBindings;
+		this.frameStart = TimeUtils.nanoTime();
+	}
+
+	/**
+	 *
+	 * @param section
+	 */
+	public void begin(int section)
+	{
+		if(!this.enabled) return;
+
+		this.sectionStarts[section] = TimeUtils.nanoTime();
+	}
+
+	/**
+	 * A section may be measured more than once per frame, the times add up.
+	 *
+	 * @param section
+	 */
+	public void end(int section)
+	{
+		if(!this.enabled) return;
+
+		this.sectionTimes[section * WINDOW + this.slot] += TimeUtils.nanoTime() - this.sectionStarts[section];
+	}
+
+	/**
+	 * Called at the end of a frame, before {@link #render()}.
+	 */
+	public void endFrame()
+	{
+		if(!this.enabled) return;
+
+		this.frameTimes[this.slot] = TimeUtils.nanoTime() - this.frameStart;
+		this.drawCalls[this.slot] = GLProfiler.drawCalls - this.profilerDrawCalls;
+		this.textureBindings[this.slot] = GLProfiler.textureBindings - this.profilerBindings;
+
+		// a shrinking heap means a collection, the allocations of that frame are lost
+		long heap = Gdx.app.getJavaHeap();
+
+		if(heap >= this.lastHeap)
+		{
+			this.allocations[this.slot] = heap - this.lastHeap;
+		}
+		else
+		{
+			this.allocations[this.slot] = 0;
+			this.collections++;
+		}
+		this.lastHeap = heap;
+		this.frames++;
+	}
+
+	/**
+	 * Draws the report on top of the screen, refreshed every
+	 * REFRESH_INTERVAL seconds.
+	 */
+	public void render()
+	{
+		if(!this.enabled) return;
+
+		if(this.spriteBatch == null)
+		{
+			this.spriteBatch = new SpriteBatch();
+			this.font = new BitmapFont();
+			this.font.setColor(Color.WHITE);
+		}
+
+		this.refreshTime -= Gdx.graphics.getDeltaTime();
+
+		if(this.refreshTime <= 0)
+		{
+			this.text = this.getReport();
+			this.refreshTime = REFRESH_INTERVAL;
+		}
+
+		this.spriteBatch.getProjectionMatrix().setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+		this.spriteBatch.begin();
+		this.font.drawMultiLine(this.spriteBatch, this.text, TEXT_MARGIN, Gdx.graphics.getHeight() - TEXT_MARGIN);
+		this.spriteBatch.end();
+	}
+
+	/**
+	 * Writes the report to a new file in the local storage.
+	 */
+	public void dump()
+	{
+		this.dump(Gdx.files.local("profile-" + TimeUtils.millis() + ".txt"));
+	}
+
+	/**
+	 *
+	 * @param file
+	 */
+	public void dump(FileHandle file)
+	{
+		file.writeString(this.getReport(), false);
+		Gdx.app.log("FrameProfiler", "dumped " + this.getFrameCount() + " frames to " + file.path());
+	}
+
+	/**
+	 *
+	 * @return the percentiles of every section and the counters over the window
+	 */
+	public String getReport()
+	{
+		int count = this.getFrameCount();
+		StringBuilder report = new StringBuilder();
+
+		report.append("last ").append(count).append(" frames, ms   p50   p95   p99   max\n");
+		this.appendTimes(report, "frame", this.frameTimes, 0, count);
+
+		for(int section = 0; section < this.sectionNames.length; section++)
+		{
+			this.appendTimes(report, this.sectionNames[section], this.sectionTimes, section * WINDOW, count);
+		}
+
+		long drawCallSum = 0;
+		long bindingSum = 0;
+		long allocationSum = 0;
+		int maxDrawCalls = 0;
+		int maxBindings = 0;
+
+		for(int i = 0; i < count; i++)
+		{
+			drawCallSum += this.drawCalls[i];
+			bindingSum += this.textureBindings[i];
+			allocationSum += this.allocations[i];
+			maxDrawCalls = Math.max(maxDrawCalls, this.drawCalls[i]);
+			maxBindings = Math.max(maxBindings, this.textureBindings[i]);
+		}
+
+		count = Math.max(1, count);
+		report.append("draw calls ").append(drawCallSum / count).append(" avg ").append(maxDrawCalls).append(" max\n");
+		report.append("texture binds ").append(bindingSum / count).append(" avg ").append(maxBindings).append(" max\n");
+		// guessed from the heap, a collection within a frame hides its allocations
+		report.append("estimated ~").append(allocationSum / count / 1024).append(" kb allocated per frame, ~");
+		report.append(this.collections).append(" gc, heap ").append(this.lastHeap / 1024 / 1024).append(" mb\n");
+		return report.toString();
+	}
+
+	/**
+	 *
+	 * @param report
+	 * @param name
+	 * @param times
+	 * @param offset
+	 * @param count
+	 */
+	private void appendTimes(StringBuilder report, String name, long[] times, int offset, int count)
+	{
+		System.arraycopy(times, offset, this.sortBuffer, 0, count);
+		Arrays.sort(this.sortBuffer, 0, count);
+
+		report.append(name);
+		this.appendPercentile(report, count, 0.5f);
+		this.appendPercentile(report, count, 0.95f);
+		this.appendPercentile(report, count, 0.99f);
+		this.appendPercentile(report, count, 1);
+		report.append('\n');
+	}
+
+	/**
+	 *
+	 * @param report
+	 * @param count of sorted times in the sort buffer
+	 * @param percentile
+	 */
+	private void appendPercentile(StringBuilder report, int count, float percentile)
+	{
+		long time = count == 0 ? 0 : this.sortBuffer[(int) (percentile * (count - 1))];
+		// two decimals without String.format
+		report.append(' ').append(Math.round(time / NANOS_PER_MILLI * 100) / 100f);
+	}
+
+	/**
+	 *
+	 * @return the number of frames in the window
+	 */
+	public int getFrameCount()
+	{
+		return Math.min(this.frames, WINDOW);
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public boolean isEnabled()
+	{
+		return this.enabled;
+	}
+
+	/**
+	 * Starts a new window when switched on.
+	 *
+	 * @param enabled
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		if(enabled == this.enabled) return;
+
+		this.enabled = enabled;
+
+		if(enabled)
+		{
+			GLProfiler.enable();
+			this.frames = 0;
+			this.collections = 0;
+			this.refreshTime = 0;
+			this.lastHeap = Gdx.app.getJavaHeap();
+		}
+		else
+		{
+			GLProfiler.disable();
+		}
+	}
+
+	public void dispose()
+	{
+		this.setEnabled(false);
+
+		if(this.spriteBatch != null)
+		{
+			this.spriteBatch.dispose();
+			this.font.dispose();
+		}
+	}
+}
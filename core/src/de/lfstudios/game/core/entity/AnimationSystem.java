@@ -0,0 +1,28 @@
+package de.lfstudios.game.core.entity;
+
+/**
+ * Advances the animations of all entities and picks the frame of their
+ * current direction.
+ *
+ * @author vwiebe
+ */
+public class AnimationSystem
+{
+	/**
+	 *
+	 * @param world
+	 * @param delta
+	 */
+	public void update(EntityWorld world, float delta)
+	{
+		for(int i = 0; i < world.size; i++)
+		{
+			if((world.components[i] & EntityWorld.ANIMATION) != 0)
+			{
+				world.stateTimes[i] += delta;
+				world.frames[i] = world.animations[i][world.directions[i] - 1].getKeyFrame(world.stateTimes[i],
+																						   world.looping[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package de.lfstudios.game.core.entity;
+
+/**
+ * Decides what an entity does, e.g. the player reading the touchpad. Run
+ * once per frame by the {@link InputSystem} before the entities are
+ * animated and moved.
+ *
+ * @author vwiebe
+ */
+public interface EntityController
+{
+	/**
+	 *
+	 * @param world
+	 * @param entity
+	 * @param delta
+	 */
+	void update(EntityWorld world, int entity, float delta);
+}
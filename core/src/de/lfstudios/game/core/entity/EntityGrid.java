@@ -0,0 +1,117 @@
+package de.lfstudios.game.core.entity;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the map that buckets the entities by the cell of their
+ * position. Entities move every frame, so the grid is rebuilt from scratch
+ * with a counting sort into flat arrays instead of being updated, which
+ * allocates nothing once the arrays are large enough.
+ *
+ * @author vwiebe
+ */
+public class EntityGrid
+{
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+
+	// entities of cell c are cellEntities[cellStarts[c]] to cellEntities[cellStarts[c + 1] - 1]
+	private final int[] cellStarts;
+	private int[] cellEntities = new int[64];
+	private int[] entityCells = new int[64];
+
+	/**
+	 *
+	 * @param mapPixelWidth
+	 * @param mapPixelHeight
+	 * @param cellSize
+	 */
+	public EntityGrid(int mapPixelWidth, int mapPixelHeight, float cellSize)
+	{
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (int) Math.ceil(mapPixelWidth / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil(mapPixelHeight / cellSize));
+		this.cellStarts = new int[this.columns * this.rows + 1];
+	}
+
+	/**
+	 * Called once per frame after the entities have moved.
+	 *
+	 * @param world
+	 */
+	public void rebuild(EntityWorld world)
+	{
+		if(world.size > this.cellEntities.length)
+		{
+			this.cellEntities = new int[world.size * 2];
+			this.entityCells = new int[world.size * 2];
+		}
+
+		int cells = this.columns * this.rows;
+		Arrays.fill(this.cellStarts, 0);
+
+		for(int i = 0; i < world.size; i++)
+		{
+			int cell = this.getRow(world.y[i]) * this.columns + this.getColumn(world.x[i]);
+			this.entityCells[i] = cell;
+			this.cellStarts[cell]++;
+		}
+
+		// running totals, cellStarts[c] is the end of cell c now
+		for(int cell = 1; cell < cells; cell++)
+		{
+			this.cellStarts[cell] += this.cellStarts[cell - 1];
+		}
+		this.cellStarts[cells] = world.size;
+
+		// fill every cell from its end, afterwards cellStarts[c] is the start of cell c
+		for(int i = world.size - 1; i >= 0; i--)
+		{
+			this.cellEntities[--this.cellStarts[this.entityCells[i]]] = world.ids[i];
+		}
+	}
+
+	/**
+	 * Adds every entity in the cells the rectangle overlaps, the caller
+	 * checks the exact distance.
+	 *
+	 * @param left
+	 * @param bottom
+	 * @param right
+	 * @param top
+	 * @param result
+	 */
+	public void query(float left, float bottom, float right, float top, IntArray result)
+	{
+		int firstColumn = this.getColumn(left);
+		int lastColumn = this.getColumn(right);
+		int firstRow = this.getRow(bottom);
+		int lastRow = this.getRow(top);
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				int cell = row * this.columns + column;
+
+				for(int i = this.cellStarts[cell]; i < this.cellStarts[cell + 1]; i++)
+				{
+					result.add(this.cellEntities[i]);
+				}
+			}
+		}
+	}
+
+	private int getColumn(float x)
+	{
+		return Math.min(this.columns - 1, Math.max(0, (int) (x / this.cellSize)));
+	}
+
+	private int getRow(float y)
+	{
+		return Math.min(this.rows - 1, Math.max(0, (int) (y / this.cellSize)));
+	}
+}
@@ -0,0 +1,418 @@
+package de.lfstudios.game.core.entity;
+
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Stores the components of all entities in packed arrays. An entity is an
+ * id, its components live at its index in the arrays. Destroying an entity
+ * moves the last one into its place, so the systems always iterate over
+ * 0 to size without gaps. Ids of destroyed entities are reused.
+ *
+ * Positions are in world pixels, velocities and bodies in box2d units.
+ *
+ * @author vwiebe
+ */
+public class EntityWorld
+{
+	public static final int POSITION = 1;
+	public static final int VELOCITY = 1 << 1;
+	public static final int BODY = 1 << 2;
+	public static final int ANIMATION = 1 << 3;
+	public static final int CONTROLLER = 1 << 4;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	int size;
+	int[] ids;
+	int[] components;
+
+	float[] x;
+	float[] y;
+	float[] velocityX;
+	float[] velocityY;
+
+	Body[] bodies;
+	float[] previousX;
+	float[] previousY;
+
+	// the animations of every direction, indexed by direction - 1
+	Animation[][] animations;
+	int[] directions;
+	float[] stateTimes;
+	boolean[] looping;
+	float[] scales;
+	TextureRegion[] frames;
+
+	EntityController[] controllers;
+
+	// 0 = neutral
+	int[] teams;
+
+	// index of an id or -1
+	private int[] indices = new int[INITIAL_CAPACITY];
+	private int nextId;
+	private IntArray freeIds = new IntArray();
+
+	public EntityWorld()
+	{
+		this.ids = new int[INITIAL_CAPACITY];
+		this.components = new int[INITIAL_CAPACITY];
+		this.x = new float[INITIAL_CAPACITY];
+		this.y = new float[INITIAL_CAPACITY];
+		this.velocityX = new float[INITIAL_CAPACITY];
+		this.velocityY = new float[INITIAL_CAPACITY];
+		this.bodies = new Body[INITIAL_CAPACITY];
+		this.previousX = new float[INITIAL_CAPACITY];
+		this.previousY = new float[INITIAL_CAPACITY];
+		this.animations = new Animation[INITIAL_CAPACITY][];
+		this.directions = new int[INITIAL_CAPACITY];
+		this.stateTimes = new float[INITIAL_CAPACITY];
+		this.looping = new boolean[INITIAL_CAPACITY];
+		this.scales = new float[INITIAL_CAPACITY];
+		this.frames = new TextureRegion[INITIAL_CAPACITY];
+		this.controllers = new EntityController[INITIAL_CAPACITY];
+		this.teams = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @param y
+	 * @return the id of the new entity
+	 */
+	public int create(float x, float y)
+	{
+		if(this.size == this.ids.length)
+		{
+			this.grow(this.size * 2);
+		}
+
+		int entity = this.freeIds.size > 0 ? this.freeIds.pop() : this.nextId++;
+
+		if(entity >= this.indices.length)
+		{
+			int[] newIndices = new int[this.indices.length * 2];
+			System.arraycopy(this.indices, 0, newIndices, 0, this.indices.length);
+			this.indices = newIndices;
+		}
+
+		int index = this.size++;
+		this.indices[entity] = index;
+		this.ids[index] = entity;
+		this.components[index] = POSITION;
+		this.x[index] = x;
+		this.y[index] = y;
+		this.directions[index] = 1;
+		this.teams[index] = 0;
+		return entity;
+	}
+
+	/**
+	 * The body is not destroyed, that is up to the owner of the box2d world.
+	 *
+	 * @param entity
+	 */
+	public void destroy(int entity)
+	{
+		int index = this.getIndex(entity);
+		int last = --this.size;
+
+		if(index != last)
+		{
+			this.ids[index] = this.ids[last];
+			this.components[index] = this.components[last];
+			this.x[index] = this.x[last];
+			this.y[index] = this.y[last];
+			this.velocityX[index] = this.velocityX[last];
+			this.velocityY[index] = this.velocityY[last];
+			this.bodies[index] = this.bodies[last];
+			this.previousX[index] = this.previousX[last];
+			this.previousY[index] = this.previousY[last];
+			this.animations[index] = this.animations[last];
+			this.directions[index] = this.directions[last];
+			this.stateTimes[index] = this.stateTimes[last];
+			this.looping[index] = this.looping[last];
+			this.scales[index] = this.scales[last];
+			this.frames[index] = this.frames[last];
+			this.controllers[index] = this.controllers[last];
+			this.teams[index] = this.teams[last];
+			this.indices[this.ids[index]] = index;
+		}
+
+		// drop the references of the moved slot
+		this.bodies[last] = null;
+		this.animations[last] = null;
+		this.frames[last] = null;
+		this.controllers[last] = null;
+
+		this.indices[entity] = -1;
+		this.freeIds.add(entity);
+	}
+
+	/**
+	 *
+	 * @param capacity
+	 */
+	private void grow(int capacity)
+	{
+		this.ids = copy(this.ids, capacity);
+		this.components = copy(this.components, capacity);
+		this.x = copy(this.x, capacity);
+		this.y = copy(this.y, capacity);
+		this.velocityX = copy(this.velocityX, capacity);
+		this.velocityY = copy(this.velocityY, capacity);
+		this.previousX = copy(this.previousX, capacity);
+		this.previousY = copy(this.previousY, capacity);
+		this.directions = copy(this.directions, capacity);
+		this.stateTimes = copy(this.stateTimes, capacity);
+		this.scales = copy(this.scales, capacity);
+		this.teams = copy(this.teams, capacity);
+
+		boolean[] newLooping = new boolean[capacity];
+		System.arraycopy(this.looping, 0, newLooping, 0, this.size);
+		this.looping = newLooping;
+
+		Body[] newBodies = new Body[capacity];
+		System.arraycopy(this.bodies, 0, newBodies, 0, this.size);
+		this.bodies = newBodies;
+
+		Animation[][] newAnimations = new Animation[capacity][];
+		System.arraycopy(this.animations, 0, newAnimations, 0, this.size);
+		this.animations = newAnimations;
+
+		TextureRegion[] newFrames = new TextureRegion[capacity];
+		System.arraycopy(this.frames, 0, newFrames, 0, this.size);
+		this.frames = newFrames;
+
+		EntityController[] newControllers = new EntityController[capacity];
+		System.arraycopy(this.controllers, 0, newControllers, 0, this.size);
+		this.controllers = newControllers;
+	}
+
+	private static int[] copy(int[] array, int capacity)
+	{
+		int[] newArray = new int[capacity];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	private static float[] copy(float[] array, int capacity)
+	{
+		float[] newArray = new float[capacity];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return
+	 */
+	int getIndex(int entity)
+	{
+		int index = entity < this.indices.length && entity < this.nextId ? this.indices[entity] : -1;
+
+		if(index == -1)
+		{
+			throw new IllegalArgumentException("entity " + entity + " does not exist");
+		}
+		return index;
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public boolean exists(int entity)
+	{
+		return entity >= 0 && entity < this.nextId && this.indices[entity] != -1;
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @param component
+	 * @return
+	 */
+	public boolean has(int entity, int component)
+	{
+		return (this.components[this.getIndex(entity)] & component) == component;
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @param velocityX
+	 * @param velocityY
+	 */
+	public void setVelocity(int entity, float velocityX, float velocityY)
+	{
+		int index = this.getIndex(entity);
+		this.components[index] |= VELOCITY;
+		this.velocityX[index] = velocityX;
+		this.velocityY[index] = velocityY;
+	}
+
+	/**
+	 * The position follows the body from now on.
+	 *
+	 * @param entity
+	 * @param body
+	 */
+	public void setBody(int entity, Body body)
+	{
+		int index = this.getIndex(entity);
+		this.components[index] |= BODY;
+		this.bodies[index] = body;
+		this.previousX[index] = body.getPosition().x;
+		this.previousY[index] = body.getPosition().y;
+	}
+
+	/**
+	 * Starts a new animation from its first frame.
+	 *
+	 * @param entity
+	 * @param animations indexed by direction - 1
+	 * @param looping
+	 * @param scale
+	 */
+	public void setAnimations(int entity, Animation[] animations, boolean looping, float scale)
+	{
+		int index = this.getIndex(entity);
+		this.components[index] |= ANIMATION;
+		this.animations[index] = animations;
+		this.looping[index] = looping;
+		this.scales[index] = scale;
+		this.stateTimes[index] = 0;
+		this.frames[index] = animations[this.directions[index] - 1].getKeyFrame(0, looping);
+	}
+
+	/**
+	 * The animation keeps its state time when the direction changes.
+	 *
+	 * @param entity
+	 * @param direction 1 to 8
+	 */
+	public void setDirection(int entity, int direction)
+	{
+		this.directions[this.getIndex(entity)] = direction;
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @param controller
+	 */
+	public void setController(int entity, EntityController controller)
+	{
+		int index = this.getIndex(entity);
+		this.components[index] |= CONTROLLER;
+		this.controllers[index] = controller;
+	}
+
+	/**
+	 * Entities of different teams are hostile, neutral entities are
+	 * ignored by everyone.
+	 *
+	 * @param entity
+	 * @param team
+	 */
+	public void setTeam(int entity, int team)
+	{
+		this.teams[this.getIndex(entity)] = team;
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public int getTeam(int entity)
+	{
+		return this.teams[this.getIndex(entity)];
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public float getX(int entity)
+	{
+		return this.x[this.getIndex(entity)];
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public float getY(int entity)
+	{
+		return this.y[this.getIndex(entity)];
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public Body getBody(int entity)
+	{
+		return this.bodies[this.getIndex(entity)];
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public int getDirection(int entity)
+	{
+		return this.directions[this.getIndex(entity)];
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public float getStateTime(int entity)
+	{
+		return this.stateTimes[this.getIndex(entity)];
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public boolean isAnimationFinished(int entity)
+	{
+		int index = this.getIndex(entity);
+		return this.animations[index][this.directions[index] - 1].isAnimationFinished(this.stateTimes[index]);
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return the frame picked by the last animation update
+	 */
+	public TextureRegion getFrame(int entity)
+	{
+		return this.frames[this.getIndex(entity)];
+	}
+
+	/**
+	 *
+	 * @return the number of entities
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+}
@@ -0,0 +1,26 @@
+package de.lfstudios.game.core.entity;
+
+/**
+ * Runs the controllers of all entities that have one.
+ *
+ * @author vwiebe
+ */
+public class InputSystem
+{
+	/**
+	 *
+	 * @param world
+	 * @param delta
+	 */
+	public void update(EntityWorld world, float delta)
+	{
+		for(int i = 0; i < world.size; i++)
+		{
+			if((world.components[i] & EntityWorld.CONTROLLER) != 0)
+			{
+				// a controller may not destroy entities, the indices would shift
+				world.controllers[i].update(world, world.ids[i], delta);
+			}
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package de.lfstudios.game.core.entity;
+
+import com.badlogic.gdx.physics.box2d.Filter;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Keeps the entities and their box2d bodies in sync. The velocities are
+ * handed to the bodies once per frame, the positions are interpolated
+ * between the last two physics steps.
+ *
+ * @author vwiebe
+ */
+public class PhysicsSystem
+{
+	private float boxToWorld;
+
+	/**
+	 *
+	 * @param boxToWorld
+	 */
+	public PhysicsSystem(float boxToWorld)
+	{
+		this.boxToWorld = boxToWorld;
+	}
+
+	/**
+	 * Called once per frame before the world is stepped.
+	 *
+	 * @param world
+	 */
+	public void applyVelocities(EntityWorld world)
+	{
+		int mask = EntityWorld.BODY | EntityWorld.VELOCITY;
+
+		for(int i = 0; i < world.size; i++)
+		{
+			if((world.components[i] & mask) == mask)
+			{
+				world.bodies[i].setLinearVelocity(world.velocityX[i], world.velocityY[i]);
+			}
+		}
+	}
+
+	/**
+	 * Called before every physics step.
+	 *
+	 * @param world
+	 */
+	public void savePositions(EntityWorld world)
+	{
+		for(int i = 0; i < world.size; i++)
+		{
+			if((world.components[i] & EntityWorld.BODY) != 0)
+			{
+				world.previousX[i] = world.bodies[i].getPosition().x;
+				world.previousY[i] = world.bodies[i].getPosition().y;
+			}
+		}
+	}
+
+	/**
+	 * Called once per frame after the physics steps.
+	 *
+	 * @param world
+	 * @param alpha how far the frame is between the last two steps
+	 */
+	public void interpolate(EntityWorld world, float alpha)
+	{
+		for(int i = 0; i < world.size; i++)
+		{
+			if((world.components[i] & EntityWorld.BODY) != 0)
+			{
+				float currentX = world.bodies[i].getPosition().x;
+				float currentY = world.bodies[i].getPosition().y;
+
+				world.x[i] = (world.previousX[i] + (currentX - world.previousX[i]) * alpha) * this.boxToWorld;
+				world.y[i] = (world.previousY[i] + (currentY - world.previousY[i]) * alpha) * this.boxToWorld;
+			}
+		}
+	}
+
+	/**
+	 * Sets the mask bits of every fixture of every body, box2d drops the
+	 * contacts that no longer collide in the next step.
+	 *
+	 * @param world
+	 * @param maskBits
+	 */
+	public void setCollisionMask(EntityWorld world, short maskBits)
+	{
+		for(int i = 0; i < world.size; i++)
+		{
+			if((world.components[i] & EntityWorld.BODY) == 0) continue;
+
+			Array<Fixture> fixtures = world.bodies[i].getFixtureList();
+
+			for(int f = 0; f < fixtures.size; f++)
+			{
+				Filter filter = fixtures.get(f).getFilterData();
+				filter.maskBits = maskBits;
+				fixtures.get(f).setFilterData(filter);
+			}
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package de.lfstudios.game.core.entity;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+/**
+ * Keeps the entities in view ordered by their y position, highest first,
+ * the same order the map draws its depth sorted objects in. The order of
+ * the last frame is kept, entities move little between frames, so an
+ * insertion sort restores it in close to linear time.
+ *
+ * @author vwiebe
+ */
+public class RenderSystem
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	// entity ids, not indices, these change when entities are destroyed
+	private int[] order = new int[INITIAL_CAPACITY];
+	private float[] keys = new float[INITIAL_CAPACITY];
+	private int size;
+
+	private int[] stamps = new int[INITIAL_CAPACITY];
+	private int stamp;
+
+	/**
+	 * Collects and sorts the entities overlapping the given rectangle.
+	 *
+	 * @param world
+	 * @param left
+	 * @param bottom
+	 * @param right
+	 * @param top
+	 */
+	public void update(EntityWorld world, float left, float bottom, float right, float top)
+	{
+		this.stamp++;
+		int count = 0;
+
+		// entities of the last frame first, they are already nearly sorted
+		for(int i = 0; i < this.size; i++)
+		{
+			int entity = this.order[i];
+
+			if(world.exists(entity))
+			{
+				int index = world.getIndex(entity);
+
+				if(this.isInView(world, index, left, bottom, right, top))
+				{
+					this.order[count] = entity;
+					this.keys[count] = world.y[index];
+					this.stamps[entity] = this.stamp;
+					count++;
+				}
+			}
+		}
+		this.size = count;
+
+		for(int i = 0; i < world.size; i++)
+		{
+			int entity = world.ids[i];
+
+			if((entity >= this.stamps.length || this.stamps[entity] != this.stamp) &&
+			   this.isInView(world, i, left, bottom, right, top))
+			{
+				this.append(entity, world.y[i]);
+			}
+		}
+
+		this.sort();
+	}
+
+	/**
+	 *
+	 * @param world
+	 * @param index
+	 * @param left
+	 * @param bottom
+	 * @param right
+	 * @param top
+	 * @return
+	 */
+	private boolean isInView(EntityWorld world, int index, float left, float bottom, float right, float top)
+	{
+		TextureRegion frame = world.frames[index];
+
+		if(frame == null) return false;
+
+		float x = world.x[index];
+		float y = world.y[index];
+
+		return x + frame.getRegionWidth() * world.scales[index] > left && x < right &&
+			   y + frame.getRegionHeight() * world.scales[index] > bottom && y < top;
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @param key
+	 */
+	private void append(int entity, float key)
+	{
+		if(this.size == this.order.length)
+		{
+			int[] newOrder = new int[this.size * 2];
+			float[] newKeys = new float[this.size * 2];
+			System.arraycopy(this.order, 0, newOrder, 0, this.size);
+			System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+			this.order = newOrder;
+			this.keys = newKeys;
+		}
+
+		if(entity >= this.stamps.length)
+		{
+			int[] newStamps = new int[Math.max(entity + 1, this.stamps.length * 2)];
+			System.arraycopy(this.stamps, 0, newStamps, 0, this.stamps.length);
+			this.stamps = newStamps;
+		}
+
+		this.order[this.size] = entity;
+		this.keys[this.size] = key;
+		this.stamps[entity] = this.stamp;
+		this.size++;
+	}
+
+	private void sort()
+	{
+		for(int i = 1; i < this.size; i++)
+		{
+			int entity = this.order[i];
+			float key = this.keys[i];
+			int j = i - 1;
+
+			while(j >= 0 && this.keys[j] < key)
+			{
+				this.order[j + 1] = this.order[j];
+				this.keys[j + 1] = this.keys[j];
+				j--;
+			}
+			this.order[j + 1] = entity;
+			this.keys[j + 1] = key;
+		}
+	}
+
+	/**
+	 * Must be called between spriteBatch.begin() and spriteBatch.end().
+	 *
+	 * @param spriteBatch
+	 * @param world
+	 * @param position in the order
+	 */
+	public void draw(SpriteBatch spriteBatch, EntityWorld world, int position)
+	{
+		int index = world.getIndex(this.order[position]);
+		TextureRegion frame = world.frames[index];
+
+		spriteBatch.draw(frame,
+						 world.x[index],
+						 world.y[index],
+						 frame.getRegionWidth() * world.scales[index],
+						 frame.getRegionHeight() * world.scales[index]);
+	}
+
+	/**
+	 *
+	 * @return the number of entities in view
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @param position
+	 * @return the y position of the entity at the given position of the order
+	 */
+	public float getKey(int position)
+	{
+		return this.keys[position];
+	}
+}
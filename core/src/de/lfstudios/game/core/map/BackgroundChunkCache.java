@@ -0,0 +1,435 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Renders the tile layers and the background objects of a chunk of the map
+ * into a {@link FrameBuffer} the first time the chunk comes near the view,
+ * a frame then draws one opaque quad per chunk in view instead of every
+ * cell and object. The chunks are baked at the resolution of the map
+ * images, which are drawn scaled up and filtered nearest, so the bake
+ * loses nothing and a chunk takes a scale² of the memory.
+ *
+ * The buffers are kept as long as they fit into the budget, the chunk used
+ * the longest time ago goes first. Chunks in view are always baked, the
+ * ones just around it at most PREBAKES_PER_FRAME per frame.
+ *
+ * @author vwiebe
+ */
+public class BackgroundChunkCache implements Disposable
+{
+	private static final long DEFAULT_BUDGET = 16 * 1024 * 1024;
+	private static final int PREBAKES_PER_FRAME = 1;
+	private static final int BYTES_PER_PIXEL = 4;
+
+	private Map map;
+	private MapObjectStore objectStore;
+	private MapObjectGrid objectGrid;
+
+	private float chunkSize;
+	private int textureSize;
+	private int columns;
+	private int rows;
+	// chunk c at c = row * columns + column
+	private FrameBuffer[] buffers;
+	private int[] lastUsed;
+	private int frame;
+
+	private long budget = DEFAULT_BUDGET;
+	private long usedMemory;
+
+	private int bakeCount;
+	private int evictionCount;
+	private int drawnChunks;
+
+	private SpriteBatch spriteBatch = new SpriteBatch();
+	private OrthographicCamera bakeCamera = new OrthographicCamera();
+	private IntArray objects = new IntArray();
+
+	/**
+	 *
+	 * @param map draws the tile layers
+	 * @param objectStore
+	 * @param objectGrid
+	 * @param mapPixelWidth
+	 * @param mapPixelHeight
+	 * @param chunkSize in world pixels
+	 * @param scale the map images are drawn with
+	 */
+	public BackgroundChunkCache(Map map,
+								MapObjectStore objectStore,
+								MapObjectGrid objectGrid,
+								int mapPixelWidth,
+								int mapPixelHeight,
+								float chunkSize,
+								float scale)
+	{
+		this.map = map;
+		this.objectStore = objectStore;
+		this.objectGrid = objectGrid;
+		this.chunkSize = chunkSize;
+		this.textureSize = MathUtils.ceil(chunkSize / scale);
+		this.columns = MathUtils.ceil(mapPixelWidth / chunkSize);
+		this.rows = MathUtils.ceil(mapPixelHeight / chunkSize);
+		this.buffers = new FrameBuffer[this.columns * this.rows];
+		this.lastUsed = new int[this.buffers.length];
+		this.bakeCamera.setToOrtho(false, chunkSize, chunkSize);
+	}
+
+	/**
+	 * Bakes what is missing and draws the chunks overlapping the camera,
+	 * called once per frame in place of the tile layers. Must not be called
+	 * between begin and end of another batch.
+	 *
+	 * @param camera
+	 */
+	public void render(OrthographicCamera camera)
+	{
+		this.frame++;
+
+		float halfWidth = camera.viewportWidth * camera.zoom / 2;
+		float halfHeight = camera.viewportHeight * camera.zoom / 2;
+		float left = camera.position.x - halfWidth;
+		float bottom = camera.position.y - halfHeight;
+		float right = camera.position.x + halfWidth;
+		float top = camera.position.y + halfHeight;
+
+		int firstColumn = this.getColumn(left);
+		int lastColumn = this.getColumn(right);
+		int firstRow = this.getRow(bottom);
+		int lastRow = this.getRow(top);
+
+		// mark the chunks in view first, so none of them is evicted for another
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				this.lastUsed[row * this.columns + column] = this.frame;
+			}
+		}
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				if(this.buffers[row * this.columns + column] == null) this.bake(column, row);
+			}
+		}
+
+		this.prebake(this.getColumn(left - this.chunkSize / 2),
+					 this.getRow(bottom - this.chunkSize / 2),
+					 this.getColumn(right + this.chunkSize / 2),
+					 this.getRow(top + this.chunkSize / 2));
+
+		this.drawnChunks = 0;
+		this.spriteBatch.setProjectionMatrix(camera.combined);
+		// the ground layer covers every chunk, nothing behind it shows through
+		this.spriteBatch.disableBlending();
+		this.spriteBatch.begin();
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				Texture texture = this.buffers[row * this.columns + column].getColorBufferTexture();
+
+				// the frame buffer is upside down
+				this.spriteBatch.draw(texture,
+									  column * this.chunkSize,
+									  row * this.chunkSize,
+									  this.chunkSize,
+									  this.chunkSize,
+									  0,
+									  0,
+									  this.textureSize,
+									  this.textureSize,
+									  false,
+									  true);
+				this.drawnChunks++;
+			}
+		}
+
+		this.spriteBatch.end();
+		this.spriteBatch.enableBlending();
+	}
+
+	/**
+	 * Keeps the chunks around the view and bakes the missing ones, a few
+	 * per frame.
+	 *
+	 * @param firstColumn
+	 * @param firstRow
+	 * @param lastColumn
+	 * @param lastRow
+	 */
+	private void prebake(int firstColumn, int firstRow, int lastColumn, int lastRow)
+	{
+		int bakes = 0;
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				int chunk = row * this.columns + column;
+
+				if(this.buffers[chunk] != null)
+				{
+					this.lastUsed[chunk] = this.frame;
+				}
+				else if(bakes < PREBAKES_PER_FRAME && this.fits())
+				{
+					this.lastUsed[chunk] = this.frame;
+					this.bake(column, row);
+					bakes++;
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return true if another chunk fits into the budget, evicting what is
+	 * not used this frame
+	 */
+	private boolean fits()
+	{
+		long chunkMemory = (long) this.textureSize * this.textureSize * BYTES_PER_PIXEL;
+
+		while(this.usedMemory + chunkMemory > this.budget)
+		{
+			if(!this.evict()) return false;
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return false if every baked chunk is used this frame
+	 */
+	private boolean evict()
+	{
+		int oldest = -1;
+
+		for(int chunk = 0; chunk < this.buffers.length; chunk++)
+		{
+			if(this.buffers[chunk] != null &&
+			   this.lastUsed[chunk] != this.frame &&
+			   (oldest == -1 || this.lastUsed[chunk] < this.lastUsed[oldest]))
+			{
+				oldest = chunk;
+			}
+		}
+
+		if(oldest == -1) return false;
+
+		this.release(oldest);
+		this.evictionCount++;
+		return true;
+	}
+
+	/**
+	 * The chunks in view are baked even if they exceed the budget.
+	 *
+	 * @param column
+	 * @param row
+	 */
+	private void bake(int column, int row)
+	{
+		this.fits();
+
+		FrameBuffer buffer = new FrameBuffer(Pixmap.Format.RGBA8888, this.textureSize, this.textureSize, false);
+		buffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+
+		float left = column * this.chunkSize;
+		float bottom = row * this.chunkSize;
+		this.bakeCamera.position.set(left + this.chunkSize / 2, bottom + this.chunkSize / 2, 0);
+		this.bakeCamera.update();
+
+		buffer.begin();
+		Gdx.gl.glClearColor(0, 0, 0, 1);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+		this.map.drawTileLayers(this.bakeCamera);
+
+		this.objects.clear();
+		this.objectGrid.query(left, bottom, left + this.chunkSize, bottom + this.chunkSize, this.objects);
+		this.sortBackgroundObjects();
+
+		this.spriteBatch.setProjectionMatrix(this.bakeCamera.combined);
+		this.spriteBatch.begin();
+
+		for(int i = 0; i < this.objects.size; i++)
+		{
+			int object = this.objects.get(i);
+
+			this.spriteBatch.draw(this.objectStore.getRegion(object),
+								  this.objectStore.getX(object),
+								  this.objectStore.getY(object),
+								  this.objectStore.getWidth(object),
+								  this.objectStore.getHeight(object));
+		}
+
+		this.spriteBatch.end();
+		buffer.end();
+
+		this.buffers[row * this.columns + column] = buffer;
+		this.usedMemory += (long) this.textureSize * this.textureSize * BYTES_PER_PIXEL;
+		this.bakeCount++;
+	}
+
+	/**
+	 * Drops all but the background objects and puts them into the order
+	 * {@link Map#draw} uses, top most first. Few objects, insertion sort.
+	 */
+	private void sortBackgroundObjects()
+	{
+		int size = 0;
+
+		for(int i = 0; i < this.objects.size; i++)
+		{
+			int object = this.objects.get(i);
+			if(!this.objectStore.isBackground(object)) continue;
+
+			float origin = this.objectStore.getOrigin(object);
+			int position = size++;
+
+			while(position > 0 && this.objectStore.getOrigin(this.objects.get(position - 1)) < origin)
+			{
+				this.objects.set(position, this.objects.get(position - 1));
+				position--;
+			}
+			this.objects.set(position, object);
+		}
+
+		this.objects.size = size;
+	}
+
+	/**
+	 *
+	 * @param chunk
+	 */
+	private void release(int chunk)
+	{
+		this.buffers[chunk].dispose();
+		this.buffers[chunk] = null;
+		this.usedMemory -= (long) this.textureSize * this.textureSize * BYTES_PER_PIXEL;
+	}
+
+	/**
+	 * Drops every baked chunk, e.g. after the visibility of a layer changed.
+	 */
+	public void invalidate()
+	{
+		for(int chunk = 0; chunk < this.buffers.length; chunk++)
+		{
+			if(this.buffers[chunk] != null) this.release(chunk);
+		}
+	}
+
+	/**
+	 * Drops the baked chunks overlapping the rectangle, e.g. where a region
+	 * of a streamed map was loaded.
+	 *
+	 * @param left
+	 * @param bottom
+	 * @param right
+	 * @param top
+	 */
+	public void invalidate(float left, float bottom, float right, float top)
+	{
+		for(int row = this.getRow(bottom); row <= this.getRow(top); row++)
+		{
+			for(int column = this.getColumn(left); column <= this.getColumn(right); column++)
+			{
+				if(this.buffers[row * this.columns + column] != null) this.release(row * this.columns + column);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @return
+	 */
+	private int getColumn(float x)
+	{
+		return MathUtils.clamp((int) (x / this.chunkSize), 0, this.columns - 1);
+	}
+
+	/**
+	 *
+	 * @param y
+	 * @return
+	 */
+	private int getRow(float y)
+	{
+		return MathUtils.clamp((int) (y / this.chunkSize), 0, this.rows - 1);
+	}
+
+	/**
+	 * Evicts right away if the new budget is smaller.
+	 *
+	 * @param budget in bytes of video memory
+	 */
+	public void setBudget(long budget)
+	{
+		this.budget = budget;
+
+		while(this.usedMemory > this.budget)
+		{
+			if(!this.evict()) break;
+		}
+	}
+
+	/**
+	 *
+	 * @return bytes of video memory held by the baked chunks
+	 */
+	public long getUsedMemory()
+	{
+		return this.usedMemory;
+	}
+
+	/**
+	 *
+	 * @return how many chunks were baked so far
+	 */
+	public int getBakeCount()
+	{
+		return this.bakeCount;
+	}
+
+	/**
+	 *
+	 * @return how many chunks were dropped for the budget so far
+	 */
+	public int getEvictionCount()
+	{
+		return this.evictionCount;
+	}
+
+	/**
+	 *
+	 * @return the chunks drawn by the last render
+	 */
+	public int getDrawnChunks()
+	{
+		return this.drawnChunks;
+	}
+
+	@Override
+	public void dispose()
+	{
+		this.invalidate();
+		this.spriteBatch.dispose();
+	}
+}
@@ -0,0 +1,262 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * Collects the static collision chains of a map and bakes them into one
+ * static body per square region instead of one body per polyline.
+ * Vertices closer than box2d's linear slop and collinear vertices are
+ * dropped, chains that end where they start become loops. Every chain
+ * keeps its own category bits, so chains of different categories can
+ * share a body.
+ *
+ * @author vwiebe
+ */
+public class CollisionBaker
+{
+	// box2d rejects chain vertices closer than b2_linearSlop (0.005)
+	private static final float MIN_VERTEX_DISTANCE = 0.01f;
+	private static final float COLLINEAR_TOLERANCE = 0.0005f;
+
+	private final float regionSize;
+	private final IntMap<Array<Chain>> regions = new IntMap<Array<Chain>>();
+
+	private int bodyCount;
+	private int fixtureCount;
+	private int edgeCount;
+	private int droppedVertices;
+	private int droppedChains;
+
+	/**
+	 *
+	 * @param regionSize edge length of a region in box2d units
+	 */
+	public CollisionBaker(float regionSize)
+	{
+		this.regionSize = regionSize;
+	}
+
+	/**
+	 *
+	 * @param vertices absolute positions in box2d units, x and y interleaved
+	 * @param categoryBits of the fixture
+	 */
+	public void add(float[] vertices, short categoryBits)
+	{
+		FloatArray cleaned = this.clean(vertices);
+		boolean loop = false;
+
+		// closed polyline
+		if(cleaned.size >= 8 && this.isClose(cleaned, 0, cleaned.size - 2))
+		{
+			cleaned.size -= 2;
+			this.droppedVertices++;
+			loop = true;
+		}
+
+		if(cleaned.size < 4)
+		{
+			this.droppedChains++;
+			return;
+		}
+
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+
+		for(int i = 0; i < cleaned.size; i += 2)
+		{
+			minX = Math.min(minX, cleaned.get(i));
+			maxX = Math.max(maxX, cleaned.get(i));
+			minY = Math.min(minY, cleaned.get(i + 1));
+			maxY = Math.max(maxY, cleaned.get(i + 1));
+		}
+
+		int regionX = (int) Math.floor((minX + maxX) / 2 / this.regionSize);
+		int regionY = (int) Math.floor((minY + maxY) / 2 / this.regionSize);
+		int key = (regionY << 16) ^ (regionX & 0xffff);
+
+		Array<Chain> chains = this.regions.get(key);
+
+		if(chains == null)
+		{
+			chains = new Array<Chain>();
+			this.regions.put(key, chains);
+		}
+		chains.add(new Chain(cleaned.toArray(), loop, categoryBits));
+	}
+
+	/**
+	 * Removes vertices that are too close to their predecessor or lie on
+	 * the line between their neighbours.
+	 *
+	 * @param vertices
+	 * @return
+	 */
+	private FloatArray clean(float[] vertices)
+	{
+		FloatArray cleaned = new FloatArray(vertices.length);
+
+		for(int i = 0; i + 1 < vertices.length; i += 2)
+		{
+			if(cleaned.size >= 2 && this.isClose(cleaned, cleaned.size - 2, vertices[i], vertices[i + 1]))
+			{
+				this.droppedVertices++;
+				continue;
+			}
+
+			if(cleaned.size >= 4 && this.isCollinear(cleaned, vertices[i], vertices[i + 1]))
+			{
+				cleaned.size -= 2;
+				this.droppedVertices++;
+			}
+
+			cleaned.add(vertices[i]);
+			cleaned.add(vertices[i + 1]);
+		}
+		return cleaned;
+	}
+
+	private boolean isClose(FloatArray vertices, int first, int second)
+	{
+		return this.isClose(vertices, first, vertices.get(second), vertices.get(second + 1));
+	}
+
+	private boolean isClose(FloatArray vertices, int index, float x, float y)
+	{
+		float dx = vertices.get(index) - x;
+		float dy = vertices.get(index + 1) - y;
+		return dx * dx + dy * dy < MIN_VERTEX_DISTANCE * MIN_VERTEX_DISTANCE;
+	}
+
+	/**
+	 *
+	 * @param vertices
+	 * @param x
+	 * @param y
+	 * @return true if the last vertex lies on the line from the one before it to x, y
+	 */
+	private boolean isCollinear(FloatArray vertices, float x, float y)
+	{
+		float ax = vertices.get(vertices.size - 4);
+		float ay = vertices.get(vertices.size - 3);
+		float bx = vertices.get(vertices.size - 2);
+		float by = vertices.get(vertices.size - 1);
+
+		float abX = bx - ax, abY = by - ay;
+		float bcX = x - bx, bcY = y - by;
+
+		// only straight continuations, not reversals
+		if(abX * bcX + abY * bcY <= 0) return false;
+
+		float cross = abX * bcY - abY * bcX;
+		return Math.abs(cross) < COLLINEAR_TOLERANCE * (float) Math.sqrt((abX * abX + abY * abY) * (bcX * bcX + bcY * bcY));
+	}
+
+	/**
+	 * Creates one static body per region with a chain fixture per added chain.
+	 *
+	 * @param world
+	 * @return the new bodies
+	 */
+	public Array<Body> bake(World world)
+	{
+		Array<Body> bodies = new Array<Body>(this.regions.size);
+		BodyDef bodyDef = new BodyDef();
+		bodyDef.type = BodyDef.BodyType.StaticBody;
+		FixtureDef fixtureDef = new FixtureDef();
+
+		for(Array<Chain> chains : this.regions.values())
+		{
+			Body body = world.createBody(bodyDef);
+			bodies.add(body);
+			this.bodyCount++;
+
+			for(Chain chain : chains)
+			{
+				ChainShape shape = new ChainShape();
+
+				if(chain.loop)
+				{
+					shape.createLoop(chain.vertices);
+				}
+				else
+				{
+					shape.createChain(chain.vertices);
+				}
+
+				fixtureDef.shape = shape;
+				fixtureDef.filter.categoryBits = chain.categoryBits;
+				body.createFixture(fixtureDef);
+				this.fixtureCount++;
+				this.edgeCount += shape.getVertexCount() - (chain.loop ? 0 : 1);
+				shape.dispose();
+			}
+		}
+		this.regions.clear();
+
+		Gdx.app.log("CollisionBaker", this.bodyCount + " bodies, " +
+									  this.fixtureCount + " fixtures, " +
+									  this.edgeCount + " edges, dropped " +
+									  this.droppedVertices + " vertices and " +
+									  this.droppedChains + " chains");
+		return bodies;
+	}
+
+	/**
+	 *
+	 * @return the edge length of a region in box2d units
+	 */
+	public float getRegionSize()
+	{
+		return this.regionSize;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBodyCount()
+	{
+		return this.bodyCount;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getFixtureCount()
+	{
+		return this.fixtureCount;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getEdgeCount()
+	{
+		return this.edgeCount;
+	}
+
+	private static class Chain
+	{
+		private final float[] vertices;
+		private final boolean loop;
+		private final short categoryBits;
+
+		private Chain(float[] vertices, boolean loop, short categoryBits)
+		{
+			this.vertices = vertices;
+			this.loop = loop;
+			this.categoryBits = categoryBits;
+		}
+	}
+}
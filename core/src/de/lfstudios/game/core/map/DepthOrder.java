@@ -0,0 +1,191 @@
+package de.lfstudios.game.core.map;
+
+/**
+ * Keeps a set of object indices ordered by a precomputed depth key, highest
+ * key (top most on screen) first. Objects are added and removed as they enter
+ * and leave the view, so the order stays nearly sorted between updates and
+ * an insertion sort restores it in close to linear time.
+ *
+ * @author vwiebe
+ */
+public class DepthOrder
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static final byte ABSENT = 0;
+	private static final byte PRESENT = 1;
+	private static final byte REMOVED = 2;
+
+	private int[] objects = new int[INITIAL_CAPACITY];
+	private float[] keys = new float[INITIAL_CAPACITY];
+	private int size;
+
+	private byte[] states = new byte[INITIAL_CAPACITY];
+	private int removed;
+	private boolean unsorted;
+
+	/**
+	 *
+	 * @param object
+	 * @param key
+	 */
+	public void add(int object, float key)
+	{
+		if(object >= this.states.length)
+		{
+			byte[] newStates = new byte[Math.max(object + 1, this.states.length * 2)];
+			System.arraycopy(this.states, 0, newStates, 0, this.states.length);
+			this.states = newStates;
+		}
+
+		if(this.states[object] == PRESENT) return;
+
+		// removed but not dropped yet, the entry is still in place, the
+		// index may belong to another object by now, so it takes the new key
+		if(this.states[object] == REMOVED)
+		{
+			for(int i = 0; i < this.size; i++)
+			{
+				if(this.objects[i] == object)
+				{
+					if(this.keys[i] != key)
+					{
+						this.keys[i] = key;
+						this.unsorted = true;
+					}
+					break;
+				}
+			}
+			this.states[object] = PRESENT;
+			this.removed--;
+			return;
+		}
+
+		if(this.size == this.objects.length)
+		{
+			int[] newObjects = new int[this.size * 2];
+			float[] newKeys = new float[this.size * 2];
+			System.arraycopy(this.objects, 0, newObjects, 0, this.size);
+			System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+			this.objects = newObjects;
+			this.keys = newKeys;
+		}
+
+		this.states[object] = PRESENT;
+		this.objects[this.size] = object;
+		this.keys[this.size] = key;
+		this.size++;
+		this.unsorted = true;
+	}
+
+	/**
+	 * The object is dropped from the order on the next call of {@link #sort()}.
+	 *
+	 * @param object
+	 */
+	public void remove(int object)
+	{
+		if(!this.contains(object)) return;
+
+		this.states[object] = REMOVED;
+		this.removed++;
+	}
+
+	/**
+	 *
+	 * @param object
+	 * @return
+	 */
+	public boolean contains(int object)
+	{
+		return object < this.states.length && this.states[object] == PRESENT;
+	}
+
+	/**
+	 * Drops removed objects and restores the order. Must be called after
+	 * adding or removing objects and before reading the order.
+	 */
+	public void sort()
+	{
+		if(this.removed > 0)
+		{
+			int count = 0;
+
+			for(int i = 0; i < this.size; i++)
+			{
+				if(this.states[this.objects[i]] == PRESENT)
+				{
+					this.objects[count] = this.objects[i];
+					this.keys[count] = this.keys[i];
+					count++;
+				}
+				else
+				{
+					this.states[this.objects[i]] = ABSENT;
+				}
+			}
+			this.size = count;
+			this.removed = 0;
+		}
+
+		if(!this.unsorted) return;
+
+		for(int i = 1; i < this.size; i++)
+		{
+			int object = this.objects[i];
+			float key = this.keys[i];
+			int j = i - 1;
+
+			while(j >= 0 && this.keys[j] < key)
+			{
+				this.objects[j + 1] = this.objects[j];
+				this.keys[j + 1] = this.keys[j];
+				j--;
+			}
+			this.objects[j + 1] = object;
+			this.keys[j + 1] = key;
+		}
+		this.unsorted = false;
+	}
+
+	public void clear()
+	{
+		for(int i = 0; i < this.size; i++)
+		{
+			this.states[this.objects[i]] = ABSENT;
+		}
+		this.size = 0;
+		this.removed = 0;
+		this.unsorted = false;
+	}
+
+	/**
+	 * Includes removed objects until {@link #sort()} is called.
+	 *
+	 * @return
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return the object at the given position of the order
+	 */
+	public int get(int index)
+	{
+		return this.objects[index];
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return the depth key at the given position of the order
+	 */
+	public float getKey(int index)
+	{
+		return this.keys[index];
+	}
+}
@@ -1,39 +1,62 @@
 package de.lfstudios.game.core.map;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.maps.MapLayer;
 import com.badlogic.gdx.maps.MapObject;
 import com.badlogic.gdx.maps.objects.PolylineMapObject;
 import com.badlogic.gdx.maps.tiled.*;
-import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
-import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Polyline;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
-import de.lfstudios.game.core.player.Player;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashSet;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.TimeUtils;
+import de.lfstudios.game.core.ai.AiScheduler;
+import de.lfstudios.game.core.ai.FlowField;
+import de.lfstudios.game.core.ai.NavigationGrid;
+import de.lfstudios.game.core.entity.AnimationSystem;
+import de.lfstudios.game.core.entity.EntityGrid;
+import de.lfstudios.game.core.entity.EntityWorld;
+import de.lfstudios.game.core.entity.InputSystem;
+import de.lfstudios.game.core.entity.PhysicsSystem;
+import de.lfstudios.game.core.entity.RenderSystem;
+import de.lfstudios.game.core.render.AtlasImageResolver;
+import de.lfstudios.game.core.render.RenderStatistics;
 
 /**
+ * Loaded by {@link MapLoader} through the asset manager. A map is either
+ * loaded whole or, for a world split by {@link RegionWriter}, streamed
+ * region by region around the camera by a {@link RegionStreamer}.
+ *
  * @author vwiebe
  */
-public class Map
+public class Map implements Disposable
 {
 	private World world;
-	private Box2DDebugRenderer debugRenderer;
 	private TiledMap tiledMap;
-	private OrthogonalTiledMapRenderer mapRenderer;
+	private TileLayerCache tileCache;
+	// one per phase, null unless the chunks are baked
+	private BackgroundChunkCache[] chunkCaches;
+	private BackgroundChunkCache chunkCache;
 	private int mapPixelWidth;
 	private int mapPixelHeight;
 
-	private final static int MAP_SCALE = 4;
-	private static final float WORLD_TO_BOX = 0.01f;
+	// read by MapCacheWriter, the map cache is baked with these scales
+	final static int MAP_SCALE = 4;
+	static final float WORLD_TO_BOX = 0.01f;
 	private static final float BOX_TO_WORLD = 100f;
 
+	private static final float TIME_STEP = 1 / 60f;
+	private static final int MAX_STEPS_PER_FRAME = 5;
+
+	public static final String MAP_FILE = "game/map/map.tmx";
+	public static final String WORLD_FILE = "game/map/world.bin";
+
 	private static final String MAP_DARK = "dark";
 	private static final String MAP_LIGHT = "light";
 	private static final String MAP_COLLISION_DARK = "collision_dark";
@@ -41,35 +64,116 @@ public class Map
 	private static final String MAP_HOLE_DARK = "hole_dark";
 	private static final String MAP_HOLE_LIGHT = "hole_light";
 
-	private HashSet<MapObject>[][] chunkSet = new HashSet[32][32];
+	private static final int GRID_CELL_TILES = 4;
+	private static final int COLLISION_REGION_TILES = 8;
+	private static final int NAVIGATION_CELLS_PER_TILE = 2;
+
+	private MapObjectStore objectStore = new MapObjectStore();
+	// the phase of every object in the store
+	private IntArray objectPhases = new IntArray();
+	private MapObjectGrid[] objectGrids = new MapObjectGrid[WorldPhase.COUNT];
+	private MapVisibility[] visibilities = new MapVisibility[WorldPhase.COUNT];
+	private MapObjectGrid objectGrid;
+	private MapVisibility visibility;
+
+	private MapCacheLoader mapCache;
+	// holds the chains of a prepared map until create bakes them
+	private CollisionBaker collisionBaker;
+	private AtlasImageResolver imageResolver;
+	private long prepareTime;
+	// null unless the map is streamed
+	private RegionStreamer regionStreamer;
+	// the center of the last drawn view, the regions are streamed around it
+	private float viewX;
+	private float viewY;
+
+	private RenderStatistics renderStatistics = new RenderStatistics();
+
+	private EntityWorld entities = new EntityWorld();
+	private InputSystem inputSystem = new InputSystem();
+	private AnimationSystem animationSystem = new AnimationSystem();
+	private PhysicsSystem physicsSystem = new PhysicsSystem(BOX_TO_WORLD);
+	private RenderSystem renderSystem = new RenderSystem();
+	private float physicsAccumulator;
+
+	private EntityGrid entityGrid;
+	private AiScheduler aiScheduler = new AiScheduler();
+	private NavigationGrid[] navigationGrids = new NavigationGrid[WorldPhase.COUNT];
+	private FlowField[] flowFields = new FlowField[WorldPhase.COUNT];
+	private NavigationGrid navigationGrid;
+	private FlowField flowField;
+	// the objects, walls, navigation and chunks above belong to this phase
+	private int phase = WorldPhase.LIGHT;
+	// the AI runs at full rate around this entity, -1 for none
+	private int focus = -1;
 
-	private HashSet<MapObject> objectSet = new HashSet<MapObject>();
 
-	private ArrayList<MapObject> backgroundObjectSet = new ArrayList<MapObject>();
-	private ArrayList<MapObject> visibleObjectSet = new ArrayList<MapObject>();
-
-	private Vector2 lastCameraPos;
+	/**
+	 *
+	 * @param assetManager holds the images of the map
+	 * @param mapCache the read map cache or null to parse MAP_FILE
+	 */
+	public Map(AssetManager assetManager, MapCacheLoader mapCache)
+	{
+		this(assetManager, mapCache, null);
+	}
 
+	/**
+	 *
+	 * @param assetManager holds the images of the map
+	 * @param mapCache the read map cache or world index, null to parse MAP_FILE
+	 * @param regionDirectory the regions of the world index, null to load the map whole
+	 */
+	public Map(AssetManager assetManager, MapCacheLoader mapCache, FileHandle regionDirectory)
+	{
+		this.setupMap(assetManager, mapCache, regionDirectory);
+		this.create();
+	}
 
-	public Map()
+	private Map()
 	{
-		this.world = new World(new Vector2(0, 0), true);
+	}
 
-		this.debugRenderer = new Box2DDebugRenderer(false,  // drawBodies
-													false,  // drawJoints
-													false,  // drawAABBs
-													false,  // drawInactiveBodies
-													false,  // drawVelocities
-													false); // drawContacts
-		this.setupMap();
+	/**
+	 * Does the part of the setup that needs neither GL nor box2d, off the
+	 * render thread: the object records, the collision chains, the
+	 * navigation grids and flow fields. {@link #create()} has to be called
+	 * on the render thread before the map is used.
+	 *
+	 * @param assetManager holds the images of the map, they must be loaded
+	 * @param mapCache the read map cache or world index
+	 * @param regionDirectory the regions of the world index, null to load the map whole
+	 * @return
+	 */
+	static Map prepare(AssetManager assetManager, MapCacheLoader mapCache, FileHandle regionDirectory)
+	{
+		Map map = new Map();
+		map.setupMap(assetManager, mapCache, regionDirectory);
+		return map;
 	}
 
-	private void setupMap()
+	/**
+	 *
+	 * @param assetManager
+	 * @param mapCache null to parse MAP_FILE, which may load textures and must run on the render thread
+	 * @param regionDirectory
+	 */
+	private void setupMap(AssetManager assetManager, MapCacheLoader mapCache, FileHandle regionDirectory)
 	{
-		this.tiledMap = new TmxMapLoader().load("game/map/map.tmx");
-		this.tiledMap.getLayers().get(this.MAP_DARK).setVisible(false);
-		this.tiledMap.getLayers().get(this.MAP_LIGHT).setVisible(true);
-		this.mapRenderer = new OrthogonalTiledMapRenderer(this.tiledMap, this.MAP_SCALE);
+		long start = TimeUtils.millis();
+		this.mapCache = mapCache;
+
+		if(this.mapCache != null)
+		{
+			this.tiledMap = this.mapCache.build();
+			this.imageResolver = this.mapCache.getImageResolver();
+		}
+		else
+		{
+			PackedTmxMapLoader mapLoader = new PackedTmxMapLoader(assetManager);
+			this.tiledMap = mapLoader.load(this.MAP_FILE);
+			this.imageResolver = mapLoader.getImageResolver();
+		}
 
 		this.mapPixelWidth = this.tiledMap.getProperties()
 										  .get("width", Integer.class) *
@@ -83,151 +187,517 @@ public class Map
 										   .get("tileheight", Integer.class) *
 							  this.MAP_SCALE;
 
-		this.setupCollision(this.MAP_COLLISION_LIGHT);
-		this.setupCollision(this.MAP_HOLE_LIGHT);
-		this.setupCollision("objects_light");
-		this.setupCollision("grass_light");
-		this.setupCollision("stream_light");
+		this.collisionBaker = new CollisionBaker(this.tiledMap.getProperties()
+															  .get("tilewidth", Integer.class) *
+												 this.COLLISION_REGION_TILES *
+												 this.MAP_SCALE *
+												 this.WORLD_TO_BOX);
+
+		for(int phase = 0; phase < WorldPhase.COUNT; phase++)
+		{
+			this.navigationGrids[phase] = new NavigationGrid(this.mapPixelWidth,
+															 this.mapPixelHeight,
+															 (float) this.tiledMap.getProperties()
+																				  .get("tilewidth", Integer.class) *
+															 this.MAP_SCALE /
+															 this.NAVIGATION_CELLS_PER_TILE);
+		}
+
+		// the walls and objects of both phases, only the current one is active
+		if(regionDirectory == null)
+		{
+			this.setupCollision(this.MAP_COLLISION_LIGHT, this.collisionBaker);
+			this.setupCollision(this.MAP_HOLE_LIGHT, this.collisionBaker);
+			this.setupCollision("objects_light", this.collisionBaker);
+			this.setupCollision("grass_light", this.collisionBaker);
+			this.setupCollision("stream_light", this.collisionBaker);
+			this.setupCollision(this.MAP_COLLISION_DARK, this.collisionBaker);
+			this.setupCollision(this.MAP_HOLE_DARK, this.collisionBaker);
+			this.setupCollision("objects_dark", this.collisionBaker);
+		}
+		else
+		{
+			// the regions bring their own layers, objects and walls
+			this.regionStreamer = new RegionStreamer(this,
+													 regionDirectory,
+													 this.mapPixelWidth,
+													 this.mapPixelHeight,
+													 RegionWriter.REGION_TILES *
+													 this.tiledMap.getProperties()
+																  .get("tilewidth", Integer.class) *
+													 this.MAP_SCALE,
+													 this.collisionBaker.getRegionSize());
+		}
+
+		for(int phase = 0; phase < WorldPhase.COUNT; phase++)
+		{
+			this.flowFields[phase] = new FlowField(this.navigationGrids[phase]);
+		}
 
 		this.generateChunks();
+		this.applyPhase();
+		// the records are in the store and the chains are in the baker
+		this.mapCache = null;
+		this.prepareTime = TimeUtils.millis() - start;
+	}
+
+	/**
+	 * Creates what needs GL or box2d on the render thread: the world with
+	 * the baked walls and the tile cache.
+	 */
+	void create()
+	{
+		long start = TimeUtils.millis();
+
+		this.world = new World(new Vector2(0, 0), true);
+
+		if(this.regionStreamer == null)
+		{
+			this.collisionBaker.bake(this.world);
+		}
+		this.collisionBaker = null;
+
+		this.tileCache = new TileLayerCache(this.tiledMap, this.MAP_SCALE);
+
+		Gdx.app.log("Map", this.objectStore.size() + " objects, " +
+						   this.imageResolver.getImageCount() + " tileset images on " +
+						   this.imageResolver.getTextureCount() + " textures, " +
+						   this.tileCache.getBlockCount() + " tile blocks, " +
+						   this.navigationGrid.getBlockedCount() + " of " +
+						   this.navigationGrid.getColumns() * this.navigationGrid.getRows() +
+						   " navigation cells blocked, prepared in " + this.prepareTime + " ms, created in " +
+						   (TimeUtils.millis() - start) + " ms");
+		this.imageResolver = null;
 	}
 
 	private void generateChunks()
 	{
-		int i, j;
+		int cellSize = this.tiledMap.getProperties()
+									.get("tilewidth", Integer.class) *
+					   this.GRID_CELL_TILES *
+					   this.MAP_SCALE;
 
-		for(i = 0; i < 32; i++)
+		for(int phase = 0; phase < WorldPhase.COUNT; phase++)
 		{
-			for(j = 0; j < 32; j++)
+			this.objectGrids[phase] = new MapObjectGrid(this.mapPixelWidth, this.mapPixelHeight, cellSize);
+
+			for(int object = 0; object < this.objectStore.size(); object++)
 			{
-				this.chunkSet[i][j] = new HashSet<MapObject>();
+				if(WorldPhase.contains(this.objectPhases.get(object), phase))
+				{
+					this.objectGrids[phase].add(this.objectStore, object);
+				}
 			}
+			this.visibilities[phase] = new MapVisibility(this.objectStore, this.objectGrids[phase]);
+		}
+
+		this.entityGrid = new EntityGrid(this.mapPixelWidth, this.mapPixelHeight, cellSize);
+	}
+
+	/**
+	 * Runs the AI and the controllers of the entities and advances their
+	 * animations, called once per frame before {@link #updatePhysics}.
+	 *
+	 * @param delta
+	 */
+	public void updateEntities(float delta)
+	{
+		this.entityGrid.rebuild(this.entities);
+
+		if(this.focus != -1 && this.entities.exists(this.focus))
+		{
+			this.flowField.update(this.entities.getX(this.focus), this.entities.getY(this.focus));
+			this.aiScheduler.update(this.entities,
+									this.entities.getX(this.focus),
+									this.entities.getY(this.focus),
+									delta);
+		}
+		else
+		{
+			// without a focus every entity is far
+			this.aiScheduler.update(this.entities, Float.MAX_VALUE, Float.MAX_VALUE, delta);
+		}
+
+		this.inputSystem.update(this.entities, delta);
+		this.animationSystem.update(this.entities, delta);
+	}
+
+	/**
+	 * Advances the world in fixed steps of TIME_STEP, however long the frame
+	 * took. The remaining time is used to interpolate the entities between
+	 * the last two steps. If a frame is too slow for MAX_STEPS_PER_FRAME steps
+	 * the backlog is dropped instead of slowing down the following frames.
+	 *
+	 * @param delta
+	 */
+	public void updatePhysics(float delta)
+	{
+		// bodies must not be created or destroyed during a step
+		if(this.regionStreamer != null)
+		{
+			this.regionStreamer.update(this.viewX, this.viewY);
+		}
+
+		this.physicsAccumulator += delta;
+		this.physicsSystem.applyVelocities(this.entities);
+
+		int steps = 0;
+		while(this.physicsAccumulator >= TIME_STEP && steps < MAX_STEPS_PER_FRAME)
+		{
+			this.physicsSystem.savePositions(this.entities);
+
+			this.world.step(TIME_STEP, 6, 2);
+			this.physicsAccumulator -= TIME_STEP;
+			steps++;
+		}
+
+		if(steps == MAX_STEPS_PER_FRAME && this.physicsAccumulator >= TIME_STEP)
+		{
+			this.physicsAccumulator = this.physicsAccumulator % TIME_STEP;
+		}
+
+		this.physicsSystem.interpolate(this.entities, this.physicsAccumulator / TIME_STEP);
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public void dispose()
+	{
+		if(this.regionStreamer != null)
+		{
+			this.regionStreamer.dispose();
 		}
 
-		for(MapObject object : this.objectSet)
+		this.getTiledMap().dispose();
+		this.tileCache.dispose();
+		this.setChunkBaking(false);
+	}
+
+	/**
+	 * Blocks until the regions around the position are loaded, e.g. where
+	 * the player starts. Does nothing if the map is loaded whole.
+	 *
+	 * @param x in world pixels
+	 * @param y in world pixels
+	 */
+	public void finishLoading(float x, float y)
+	{
+		if(this.regionStreamer == null) return;
+
+		this.viewX = x;
+		this.viewY = y;
+		this.regionStreamer.finishLoading(x, y);
+	}
+
+	/**
+	 * Creates the tiles, objects and bodies of a region read by the
+	 * streamer, on the physics thread.
+	 *
+	 * @param region
+	 * @param addNavigation false if the walls of the region are in the navigation grids already
+	 */
+	void addRegion(Region region, boolean addNavigation)
+	{
+		MapCacheLoader cache = region.getCache();
+		TiledMapTileSets tileSets = this.tiledMap.getTileSets();
+		Array<TiledMapTileLayer> layers = cache.buildTileLayers(tileSets);
+
+		for(TiledMapTileLayer layer : layers)
 		{
-			int chunkX = (int) (Float.parseFloat(object.getProperties().get("x").toString()) / 128);
-			int chunkY = (int) (Float.parseFloat(object.getProperties().get("y").toString()) / 128);
+			this.applyPhase(layer);
+		}
+
+		IntArray objects = region.getObjects();
+
+		for(String layerName : cache.getObjectLayerNames())
+		{
+			int phase = WorldPhase.ofLayer(layerName);
+			int first = objects.size;
+			cache.addObjects(layerName, this.objectStore, tileSets, this.MAP_SCALE, objects);
+
+			for(int i = first; i < objects.size; i++)
+			{
+				int object = objects.get(i);
+				this.setObjectPhase(object, phase);
+
+				for(int gridPhase = 0; gridPhase < WorldPhase.COUNT; gridPhase++)
+				{
+					if(WorldPhase.contains(phase, gridPhase))
+					{
+						this.objectGrids[gridPhase].add(this.objectStore, object);
+						this.visibilities[gridPhase].add(object);
+					}
+				}
+			}
 
-			this.chunkSet[chunkX][chunkY].add(object);
+			if(addNavigation && this.blocksNavigation(layerName))
+			{
+				for(float[] vertices : cache.getChains(layerName))
+				{
+					this.addNavigationChain(vertices, phase);
+				}
+			}
 		}
+
+		TiledMapTileLayer[] regionLayers = layers.toArray(TiledMapTileLayer.class);
+		region.activate(new TileLayerCache(regionLayers,
+										   region.getLeft(),
+										   region.getBottom(),
+										   this.MAP_SCALE,
+										   this.regionStreamer.obtainSpriteCache(TileLayerCache.getCellCount(regionLayers))),
+						region.getCollisionBaker().bake(this.world));
+
+		this.invalidateChunks(region.getLeft(),
+							  region.getBottom(),
+							  region.getLeft() + region.getSize(),
+							  region.getBottom() + region.getSize());
 	}
 
 	/**
+	 * Destroys the objects and bodies of a region, on the physics thread.
+	 * The walls stay in the navigation grids, they are sized to the world.
 	 *
-	 * @param cameraPosition
+	 * @param region
 	 */
-	private HashSet<MapObject> getCurrentObjectSet(Vector2 cameraPosition)
+	void removeRegion(Region region)
 	{
-		HashSet<MapObject> currentObjectSet = new HashSet<MapObject>();
+		IntArray objects = region.getObjects();
 
-		int cameraPosX = (int) cameraPosition.x / 512;
-		int cameraPosY = (int) cameraPosition.y / 512;
+		for(int i = 0; i < objects.size; i++)
+		{
+			int object = objects.get(i);
 
-		currentObjectSet = this.chunkSet[cameraPosX][cameraPosY];
+			for(int gridPhase = 0; gridPhase < WorldPhase.COUNT; gridPhase++)
+			{
+				if(WorldPhase.contains(this.objectPhases.get(object), gridPhase))
+				{
+					this.visibilities[gridPhase].remove(object);
+					this.objectGrids[gridPhase].remove(this.objectStore, object);
+				}
+			}
+			this.objectStore.remove(object);
+		}
+		objects.clear();
+
+		for(Body body : region.getBodies())
+		{
+			this.world.destroyBody(body);
+		}
 
-//		System.out.println("CURRENT CAM POS:" + cameraPosX + " " + cameraPosY);
+		this.invalidateChunks(region.getLeft(),
+							  region.getBottom(),
+							  region.getLeft() + region.getSize(),
+							  region.getBottom() + region.getSize());
+	}
+
+	/**
+	 *
+	 * @param left
+	 * @param bottom
+	 * @param right
+	 * @param top
+	 */
+	private void invalidateChunks(float left, float bottom, float right, float top)
+	{
+		if(this.chunkCaches == null) return;
 
+		for(BackgroundChunkCache chunkCache : this.chunkCaches)
+		{
+			chunkCache.invalidate(left, bottom, right, top);
+		}
+	}
 
-//		return currentObjectSet;
+	/**
+	 * Drops the baked chunks of every phase, they are baked again when
+	 * drawn. Needed after the GL context was lost, the frame buffers come
+	 * back empty.
+	 */
+	public void invalidateChunks()
+	{
+		if(this.chunkCaches == null) return;
 
-		return this.objectSet;
+		for(BackgroundChunkCache chunkCache : this.chunkCaches)
+		{
+			chunkCache.invalidate();
+		}
 	}
 
 	/**
+	 * Switches to the light or dark world: the tile layers, objects, walls,
+	 * navigation and baked chunks of the phase are all prepared, only
+	 * references and the collision masks of the entities change.
 	 *
-	 * @param camera
+	 * @param phase
 	 */
-	public void updatePhysics(OrthographicCamera camera)
+	public void setPhase(int phase)
 	{
-		Matrix4 cameraCopy = camera.combined.cpy();
-		this.debugRenderer.render(this.world,
-								  cameraCopy.scl(this.BOX_TO_WORLD));
-		this.world.step(1 / 60f, 6, 2);
+		if(phase == this.phase) return;
+
+		this.phase = phase;
+		this.applyPhase();
+	}
+
+	private void applyPhase()
+	{
+		for(MapLayer layer : this.tiledMap.getLayers())
+		{
+			if(layer instanceof TiledMapTileLayer) this.applyPhase((TiledMapTileLayer) layer);
+		}
+
+		if(this.regionStreamer != null)
+		{
+			for(Region region : this.regionStreamer.getActiveRegions())
+			{
+				for(TiledMapTileLayer layer : region.getTileCache().getLayers())
+				{
+					this.applyPhase(layer);
+				}
+			}
+		}
+
+		this.objectGrid = this.objectGrids[this.phase];
+		this.visibility = this.visibilities[this.phase];
+		this.navigationGrid = this.navigationGrids[this.phase];
+		this.flowField = this.flowFields[this.phase];
+
+		if(this.chunkCaches != null)
+		{
+			this.chunkCache = this.chunkCaches[this.phase];
+		}
+
+		this.physicsSystem.setCollisionMask(this.entities, WorldPhase.getEntityMask(this.phase));
 	}
 
 	/**
+	 * Shows the layer if it is part of the current phase.
 	 *
+	 * @param layer
 	 */
-	public void dispose()
+	private void applyPhase(TiledMapTileLayer layer)
 	{
-		this.getTiledMap().dispose();
-		this.getMapRenderer().dispose();
+		int layerPhase = WorldPhase.ofLayer(layer.getName());
+
+		if(layerPhase != WorldPhase.BOTH)
+		{
+			layer.setVisible(layerPhase == this.phase);
+		}
 	}
 
 	/**
 	 *
-	 * @param player
+	 * @return the current phase of the world
 	 */
-	public void add(Player player)
+	public int getPhase()
 	{
-		player.getBodyDef().position.set(new Vector2(player.getPosX() * this.getWorldToBox(),
-													 (player.getPosY() + 300) * this.getWorldToBox()));
-		player.setBody(this.getWorld().createBody(player.getBodyDef()));
+		return this.phase;
+	}
 
-		CircleShape playerShape = new CircleShape();
-		playerShape.setRadius(0.2f);
-		playerShape.setPosition(new Vector2(0.65f, 0.1f));
-		player.getBody().createFixture(playerShape, 0f);
+	/**
+	 * Creates an entity with a dynamic body, a circle of the given radius
+	 * at the given offset from the position.
+	 *
+	 * @param x in world pixels
+	 * @param y in world pixels
+	 * @param radius in box2d units
+	 * @param offsetX in box2d units
+	 * @param offsetY in box2d units
+	 * @return the new entity
+	 */
+	public int spawn(float x, float y, float radius, float offsetX, float offsetY)
+	{
+		BodyDef bodyDef = new BodyDef();
+		bodyDef.type = BodyDef.BodyType.DynamicBody;
+		bodyDef.position.set(x * this.getWorldToBox(), y * this.getWorldToBox());
+		Body body = this.getWorld().createBody(bodyDef);
+
+		CircleShape shape = new CircleShape();
+		shape.setRadius(radius);
+		shape.setPosition(new Vector2(offsetX, offsetY));
+
+		FixtureDef fixtureDef = new FixtureDef();
+		fixtureDef.shape = shape;
+		fixtureDef.filter.categoryBits = WorldPhase.ENTITY_CATEGORY;
+		fixtureDef.filter.maskBits = WorldPhase.getEntityMask(this.phase);
+		body.createFixture(fixtureDef);
+		shape.dispose();
+
+		int entity = this.entities.create(x, y);
+		this.entities.setBody(entity, body);
+		return entity;
+	}
 
-//		FixtureDef fixtureDef = new FixtureDef();
-//		fixtureDef.shape = playerShape;
-//		fixtureDef.density = 0.5f;
-//		fixtureDef.friction = 0.4f;
-//		fixtureDef.restitution = 0.6f;
+	/**
+	 *
+	 * @param entity
+	 */
+	public void remove(int entity)
+	{
+		this.aiScheduler.remove(entity);
 
-		playerShape.dispose();
+		if(this.entities.has(entity, EntityWorld.BODY))
+		{
+			this.getWorld().destroyBody(this.entities.getBody(entity));
+		}
+		this.entities.destroy(entity);
 	}
 
 	/**
 	 *
 	 * @param layerName
+	 * @param collisionBaker
 	 */
-	private void setupCollision(String layerName)
+	private void setupCollision(String layerName, CollisionBaker collisionBaker)
 	{
 		MapLayer layer = this.tiledMap.getLayers().get(layerName);
 
+		// a map may leave out layers, e.g. the light world has no holes
 		if(layer == null)
 		{
-			System.out.println("layer: " + layerName + " does not exist!");
+			Gdx.app.debug("Map", "layer " + layerName + " does not exist");
 			return;
 		}
 
-		int i = 0;
+		int phase = WorldPhase.ofLayer(layerName);
+		boolean blocksNavigation = this.blocksNavigation(layerName);
+		IntArray objects = new IntArray();
+
+		// baked objects and chains, the cached layer itself is empty
+		if(this.mapCache != null)
+		{
+			this.mapCache.addObjects(layerName, this.objectStore, this.tiledMap.getTileSets(), this.MAP_SCALE, objects);
+			this.setObjectPhases(objects, phase);
+
+			for(float[] vertices : this.mapCache.getChains(layerName))
+			{
+				this.addChain(vertices, collisionBaker, blocksNavigation, phase);
+			}
+			return;
+		}
 
 		for(MapObject object : layer.getObjects())
 		{
-			i++;
 			// polyline collision
 			if(object instanceof PolylineMapObject)
 			{
-				BodyDef groundDef;
-				Body groundBody;
+				Polyline polyline = ((PolylineMapObject) object).getPolyline();
+				float[] localVertices = polyline.getVertices();
+				float[] vertices = new float[localVertices.length];
 
-				groundDef = new BodyDef();
-				groundDef.type = BodyDef.BodyType.StaticBody;
-
-				groundDef.position.set(((PolylineMapObject) object).getPolyline().getX() * this.getWorldToBox() * this.getMapScale(),
-									   ((PolylineMapObject) object).getPolyline().getY() * this.getWorldToBox() * this.getMapScale());
-
-				groundBody = world.createBody(groundDef);
-
-				float[] vertices = ((PolylineMapObject) object).getPolyline().getVertices();
-
-				for(int j  = 0; j < vertices.length; j++)
+				for(int j = 0; j < vertices.length; j += 2)
 				{
-					vertices[j] = vertices[j] * this.getWorldToBox() * this.getMapScale();
+					vertices[j] = (polyline.getX() + localVertices[j]) * this.getWorldToBox() * this.getMapScale();
+					vertices[j + 1] = (polyline.getY() + localVertices[j + 1]) * this.getWorldToBox() * this.getMapScale();
 				}
 
-				ChainShape chain = new ChainShape();
-				chain.createChain(vertices);
-				groundBody.createFixture(chain, 0f);
-				chain.dispose();
+				this.addChain(vertices, collisionBaker, blocksNavigation, phase);
 			}
 			// objects
 			else
 			{
-				this.objectSet.add(object);
+				int index = this.objectStore.add(object, this.tiledMap.getTileSets(), this.MAP_SCALE);
+				if(index != -1) objects.add(index);
 //
 //				BodyDef groundDef;
 //				Body groundBody;
@@ -250,175 +720,343 @@ public class Map
 
 			}
 		}
+		this.setObjectPhases(objects, phase);
 	}
 
 	/**
 	 *
-	 * @param spriteBatch
+	 * @param layerName
+	 * @return true if the chains of the layer are walls for the navigation grid
 	 */
-	public void draw(SpriteBatch spriteBatch, Player player, Vector2 cameraPosition)
+	private boolean blocksNavigation(String layerName)
 	{
-		if(this.lastCameraPos == null)
+		return layerName.startsWith("collision") || layerName.startsWith("hole");
+	}
+
+	/**
+	 * Assigns the phase of a layer to the objects just added from it.
+	 *
+	 * @param objects
+	 * @param phase
+	 */
+	private void setObjectPhases(IntArray objects, int phase)
+	{
+		for(int i = 0; i < objects.size; i++)
 		{
-			this.lastCameraPos = cameraPosition;
-			calculateVisibleObjects(cameraPosition);
+			this.setObjectPhase(objects.get(i), phase);
 		}
+	}
 
-		if(lastCameraPos.dst(cameraPosition) > 200)
+	/**
+	 *
+	 * @param object
+	 * @param phase
+	 */
+	private void setObjectPhase(int object, int phase)
+	{
+		while(this.objectPhases.size <= object)
 		{
-			lastCameraPos = cameraPosition;
-			this.calculateVisibleObjects(cameraPosition);
+			this.objectPhases.add(WorldPhase.BOTH);
 		}
+		this.objectPhases.set(object, phase);
+	}
+
+	/**
+	 *
+	 * @param vertices absolute positions in box2d units, x and y interleaved
+	 * @param collisionBaker
+	 * @param blocksNavigation
+	 * @param phase of the layer
+	 */
+	private void addChain(float[] vertices, CollisionBaker collisionBaker, boolean blocksNavigation, int phase)
+	{
+		collisionBaker.add(vertices, WorldPhase.getCategory(phase));
 
-		// draw background objects
-		for(MapObject object : this.backgroundObjectSet)
+		if(blocksNavigation)
 		{
-			spriteBatch.begin();
-			spriteBatch.draw(tiledMap.getTileSets()
-									 .getTile(Integer.parseInt(object.getProperties().get("gid").toString()))
-									 .getTextureRegion(),
-							 Float.parseFloat(object.getProperties().get("x").toString()) * this.getMapScale(),
-							 Float.parseFloat(object.getProperties().get("y").toString()) * this.getMapScale(),
-							 tiledMap.getTileSets().getTile(Integer.parseInt(object.getProperties()
-																				   .get("gid")
-																				   .toString())).getTextureRegion().getRegionWidth() *
-							 this.getMapScale(),
-							 tiledMap.getTileSets().getTile(Integer.parseInt(object.getProperties()
-																				   .get("gid")
-																				   .toString())).getTextureRegion().getRegionHeight() *
-							 this.getMapScale());
-			spriteBatch.end();
+			this.addNavigationChain(vertices, phase);
 		}
+	}
+
+	/**
+	 *
+	 * @param vertices absolute positions in box2d units, x and y interleaved
+	 * @param phase of the layer
+	 */
+	private void addNavigationChain(float[] vertices, int phase)
+	{
+		float[] worldVertices = new float[vertices.length];
 
-		// draw everything else
-		boolean playerIsDrawn = false;
-		for(MapObject object : this.visibleObjectSet)
+		for(int i = 0; i < vertices.length; i++)
 		{
-			float objOrigin = Float.parseFloat(object.getProperties().get("y").toString()) * this.getMapScale();
+			worldVertices[i] = vertices[i] * BOX_TO_WORLD;
+		}
 
-			if(object.getProperties().get("originOffset") != null)
+		for(int gridPhase = 0; gridPhase < WorldPhase.COUNT; gridPhase++)
+		{
+			if(WorldPhase.contains(phase, gridPhase))
 			{
-				objOrigin = objOrigin + Float.parseFloat(object.getProperties().get("originOffset").toString()) * this.getMapScale();
+				this.navigationGrids[gridPhase].addChain(worldVertices);
 			}
+		}
+	}
 
-			if(player.getPosY() > objOrigin && !playerIsDrawn)
-			{
-				player.draw(spriteBatch);
-				playerIsDrawn = true;
-			}
+	/**
+	 * Draws the visible tile layers, or the baked chunks with the
+	 * background objects, called before {@link #draw}.
+	 *
+	 * @param camera
+	 */
+	public void drawTiles(OrthographicCamera camera)
+	{
+		this.viewX = camera.position.x;
+		this.viewY = camera.position.y;
 
-			spriteBatch.begin();
-			spriteBatch.draw(tiledMap.getTileSets()
-									 .getTile(Integer.parseInt(object.getProperties().get("gid").toString()))
-									 .getTextureRegion(),
-							 Float.parseFloat(object.getProperties().get("x").toString()) * this.getMapScale(),
-							 Float.parseFloat(object.getProperties().get("y").toString()) * this.getMapScale(),
-							 tiledMap.getTileSets().getTile(Integer.parseInt(object.getProperties()
-																				   .get("gid")
-																				   .toString())).getTextureRegion().getRegionWidth() *
-							 this.getMapScale(),
-							 tiledMap.getTileSets().getTile(Integer.parseInt(object.getProperties()
-																				   .get("gid")
-																				   .toString())).getTextureRegion().getRegionHeight() *
-							 this.getMapScale());
-			spriteBatch.end();
+		if(this.chunkCache != null)
+		{
+			this.chunkCache.render(camera);
+		}
+		else
+		{
+			this.drawTileLayers(camera);
 		}
 	}
 
 	/**
+	 * Draws the visible tile layers of the map and of the streamed regions.
 	 *
-	 * @param cameraPosition
+	 * @param camera
 	 */
-	private void calculateVisibleObjects(Vector2 cameraPosition)
+	void drawTileLayers(OrthographicCamera camera)
 	{
-		this.visibleObjectSet.clear();
-		this.backgroundObjectSet.clear();
-		System.out.print("Recalculating visible objects...");
-		for (MapObject object : this.getCurrentObjectSet(cameraPosition)) // TODO: HEAVYY!!!!!!!!!!
+		this.tileCache.render(camera);
+
+		if(this.regionStreamer != null)
 		{
-			float objX = Float.parseFloat(object.getProperties().get("x").toString()) * this.getMapScale();
-			float objY = Float.parseFloat(object.getProperties().get("y").toString()) * this.getMapScale();
-			float objWidth = (tiledMap.getTileSets().getTile(Integer.parseInt(object.getProperties().get("gid").toString())).getTextureRegion().getRegionWidth()) * this.getMapScale();
-			float objHeight = (tiledMap.getTileSets().getTile(Integer.parseInt(object.getProperties().get("gid").toString())).getTextureRegion().getRegionHeight()) * this.getMapScale();
+			this.regionStreamer.render(camera);
+		}
+	}
 
-			float left = cameraPosition.x - (Gdx.graphics.getWidth() / 2);
-			float top = cameraPosition.y + (Gdx.graphics.getHeight() / 2);
-			float right = cameraPosition.x + (Gdx.graphics.getWidth() / 2);
-			float bottom = cameraPosition.y - (Gdx.graphics.getHeight() / 2);
+	/**
+	 * Bakes the tile layers and background objects into a texture per
+	 * chunk of the object grid, see {@link BackgroundChunkCache}. Each phase
+	 * keeps its own chunks, so switching back and forth bakes nothing.
+	 *
+	 * @param enabled
+	 */
+	public void setChunkBaking(boolean enabled)
+	{
+		if(enabled == (this.chunkCaches != null)) return;
 
+		if(enabled)
+		{
+			this.chunkCaches = new BackgroundChunkCache[WorldPhase.COUNT];
 
-			if(object.getProperties().get("isBackground") != null)
+			for(int phase = 0; phase < WorldPhase.COUNT; phase++)
 			{
-				// background objects
-				if (((objX + objWidth) > left -200 && objX < right +200) && (objY < top +200 && (objY + objHeight) > bottom - 200))
-				{
-					if (!this.backgroundObjectSet.contains(object))
-					{
-						this.backgroundObjectSet.add(object);
-					}
-				}
-				else
-				{
-					this.backgroundObjectSet.remove(object);
-				}
+				this.chunkCaches[phase] = new BackgroundChunkCache(this,
+																   this.objectStore,
+																   this.objectGrids[phase],
+																   this.mapPixelWidth,
+																   this.mapPixelHeight,
+																   this.objectGrids[phase].getCellSize(),
+																   this.MAP_SCALE);
 			}
-			else
+			this.chunkCache = this.chunkCaches[this.phase];
+		}
+		else
+		{
+			for(BackgroundChunkCache chunkCache : this.chunkCaches)
 			{
-				// non background objects
-				if (((objX + objWidth) > left -200 && objX < right +200) && (objY < top +200 && (objY + objHeight) > bottom - 200))
-				{
-					if (!this.visibleObjectSet.contains(object))
-					{
-						this.visibleObjectSet.add(object);
-					}
-				}
-				else
-				{
-					this.visibleObjectSet.remove(object);
-				}
+				chunkCache.dispose();
+			}
+			this.chunkCaches = null;
+			this.chunkCache = null;
+		}
+	}
 
+	/**
+	 *
+	 * @return the streamer of the regions, null if the map is loaded whole
+	 */
+	public RegionStreamer getRegionStreamer()
+	{
+		return this.regionStreamer;
+	}
+
+	/**
+	 *
+	 * @return the baked chunks of the current phase, null if chunk baking is off
+	 */
+	public BackgroundChunkCache getChunkCache()
+	{
+		return this.chunkCache;
+	}
+
+	/**
+	 * Draws background objects, then the depth sorted objects merged with
+	 * the entities in view in a single batch pass.
+	 *
+	 * @param spriteBatch
+	 * @param camera
+	 */
+	public void draw(SpriteBatch spriteBatch, OrthographicCamera camera)
+	{
+		this.visibility.update(camera);
+		DepthOrder backgroundObjectSet = this.visibility.getBackgroundObjects();
+		DepthOrder visibleObjectSet = this.visibility.getVisibleObjects();
+		this.renderSystem.update(this.entities,
+								 this.visibility.getLeft(),
+								 this.visibility.getBottom(),
+								 this.visibility.getRight(),
+								 this.visibility.getTop());
+
+		this.renderStatistics.beginFrame();
+		spriteBatch.setProjectionMatrix(camera.combined);
+		spriteBatch.begin();
+
+		// draw background objects, unless they are baked into the chunks
+		if(this.chunkCache == null)
+		{
+			for(int i = 0; i < backgroundObjectSet.size(); i++)
+			{
+				this.drawObject(spriteBatch, backgroundObjectSet.get(i));
 			}
 		}
-		System.out.println(this.visibleObjectSet.size() + this.backgroundObjectSet.size());
 
-		Collections.sort(this.visibleObjectSet, new Comparator<MapObject>()
+		// draw everything else, both orders are sorted by y from the top
+		int entity = 0;
+		for(int i = 0; i < visibleObjectSet.size(); i++)
 		{
-			@Override
-			public int compare(MapObject o1, MapObject o2)
+			while(entity < this.renderSystem.size() && this.renderSystem.getKey(entity) > visibleObjectSet.getKey(i))
 			{
-				float o1Origin = Float.parseFloat(o1.getProperties().get("y").toString());
-				float o2Origin = Float.parseFloat(o2.getProperties().get("y").toString());
+				this.drawEntity(spriteBatch, entity++);
+			}
 
-				if(o1.getProperties().get("originOffset") != null)
-				{
-					o1Origin = o1Origin +
-							   Float.parseFloat(o1.getProperties()
-												  .get("originOffset")
-												  .toString());
-				}
+			this.drawObject(spriteBatch, visibleObjectSet.get(i));
+		}
 
-				if(o2.getProperties().get("originOffset") != null)
-				{
-					o2Origin = o2Origin +
-							   Float.parseFloat(o2.getProperties()
-												  .get("originOffset")
-												  .toString());
-				}
+		// these stand behind every visible object
+		while(entity < this.renderSystem.size())
+		{
+			this.drawEntity(spriteBatch, entity++);
+		}
 
-				if (o1Origin < o2Origin)
-				{
-					return 1;
-				}
-				else if (o1Origin > o2Origin)
-				{
-					return -1;
-				}
-				else
-				{
-					return 0;
-				}
-			}
-		});
+		spriteBatch.end();
+		this.renderStatistics.countPass(spriteBatch);
+	}
+
+	/**
+	 *
+	 * @param spriteBatch
+	 * @param position in the order of the render system
+	 */
+	private void drawEntity(SpriteBatch spriteBatch, int position)
+	{
+		this.renderSystem.draw(spriteBatch, this.entities, position);
+		this.renderStatistics.countSprite();
+	}
+
+	/**
+	 *
+	 * @param spriteBatch
+	 * @param object
+	 */
+	private void drawObject(SpriteBatch spriteBatch, int object)
+	{
+		spriteBatch.draw(this.objectStore.getRegion(object),
+						 this.objectStore.getX(object),
+						 this.objectStore.getY(object),
+						 this.objectStore.getWidth(object),
+						 this.objectStore.getHeight(object));
+		this.renderStatistics.countSprite();
+	}
+
+	/**
+	 *
+	 * @return the counters of the last drawn frame
+	 */
+	public RenderStatistics getRenderStatistics()
+	{
+		return this.renderStatistics;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public EntityWorld getEntities()
+	{
+		return this.entities;
+	}
+
+	/**
+	 * Adds the entities near the given rectangle as of the start of the
+	 * frame, the caller checks the exact distance.
+	 *
+	 * @param left
+	 * @param bottom
+	 * @param right
+	 * @param top
+	 * @param result
+	 */
+	public void queryEntities(float left, float bottom, float right, float top, IntArray result)
+	{
+		this.entityGrid.query(left, bottom, right, top, result);
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public AiScheduler getAiScheduler()
+	{
+		return this.aiScheduler;
+	}
+
+	/**
+	 *
+	 * @return the walkability of the current phase for path queries
+	 */
+	public NavigationGrid getNavigationGrid()
+	{
+		return this.navigationGrid;
+	}
+
+	/**
+	 *
+	 * @return the flow field of the current phase towards the focus
+	 */
+	public FlowField getFlowField()
+	{
+		return this.flowField;
+	}
+
+	/**
+	 *
+	 * @param focus the entity the AI runs at full rate around, usually the player's
+	 */
+	public void setFocus(int focus)
+	{
+		this.focus = focus;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public MapObjectGrid getObjectGrid()
+	{
+		return this.objectGrid;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public MapVisibility getVisibility()
+	{
+		return this.visibility;
 	}
 
 	/**
@@ -461,9 +1099,9 @@ public class Map
 	 *
 	 * @return
 	 */
-	public OrthogonalTiledMapRenderer getMapRenderer()
+	public TileLayerCache getTileCache()
 	{
-		return this.mapRenderer;
+		return this.tileCache;
 	}
 
 	/**
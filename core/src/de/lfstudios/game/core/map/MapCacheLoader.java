@@ -0,0 +1,698 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapProperties;
+import com.badlogic.gdx.maps.tiled.*;
+import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.*;
+import de.lfstudios.game.core.render.AtlasImageResolver;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Loads a map baked by {@link MapCacheWriter}. The file is memory mapped
+ * where it exists on the file system, otherwise (e.g. inside an apk) it is
+ * read into a buffer at once. Tile layers are built into a TiledMap, object
+ * records and collision chains are kept per layer and handed to the map
+ * while its layers are set up.
+ *
+ * Loading is split in {@link #read} which only parses the file and may run
+ * on any thread, and {@link #build} which creates the tiles and must run on
+ * the render thread once the images are loaded.
+ *
+ * @author vwiebe
+ */
+public class MapCacheLoader
+{
+	private static final int FLIP_HORIZONTALLY = 0x80000000;
+	private static final int FLIP_VERTICALLY = 0x40000000;
+	private static final int FLIP_DIAGONALLY = 0x20000000;
+	private static final int TILE_ID_MASK = 0x1fffffff;
+
+	private AssetManager assetManager;
+	private AtlasImageResolver imageResolver;
+
+	private int width;
+	private int height;
+	private int tileWidth;
+	private int tileHeight;
+	private String atlasPath;
+	private Array<TileSetData> tileSets = new Array<TileSetData>();
+	private Array<TileLayerData> tileLayers = new Array<TileLayerData>();
+	private Array<String> objectLayerNames = new Array<String>();
+	private ObjectMap<String, ObjectLayer> objectLayers = new ObjectMap<String, ObjectLayer>();
+
+	public MapCacheLoader()
+	{
+		this(null);
+	}
+
+	/**
+	 *
+	 * @param assetManager images loaded by it are used instead of loading them again, may be null
+	 */
+	public MapCacheLoader(AssetManager assetManager)
+	{
+		this.assetManager = assetManager;
+	}
+
+	/**
+	 *
+	 * @param cacheFile
+	 * @param tmxFile the map the cache was baked from, null or missing (e.g. a packaged build) to skip the check
+	 * @return false if the cache is missing, outdated or was baked with other scales
+	 */
+	public static boolean isValid(FileHandle cacheFile, FileHandle tmxFile)
+	{
+		if(!cacheFile.exists())
+		{
+			return false;
+		}
+
+		DataInputStream in = new DataInputStream(cacheFile.read());
+
+		try
+		{
+			if(in.readInt() != MapCacheWriter.MAGIC || in.readInt() != MapCacheWriter.VERSION)
+			{
+				return false;
+			}
+
+			long tmxChecksum = in.readLong();
+
+			return (tmxFile == null || !tmxFile.exists() || MapCacheWriter.checksum(tmxFile) == tmxChecksum) &&
+				   in.readFloat() == Map.MAP_SCALE &&
+				   in.readFloat() == Map.MAP_SCALE * Map.WORLD_TO_BOX;
+		}
+		catch(IOException e)
+		{
+			return false;
+		}
+		finally
+		{
+			StreamUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * For caches without a tmx next to them, e.g. the world index and
+	 * regions of {@link RegionWriter}.
+	 *
+	 * @param cacheFile
+	 * @return false if the cache is missing, outdated or was baked with other scales
+	 */
+	public static boolean isValid(FileHandle cacheFile)
+	{
+		return isValid(cacheFile, null);
+	}
+
+	/**
+	 *
+	 * @param fileName
+	 * @return
+	 */
+	public TiledMap load(String fileName)
+	{
+		this.read(Gdx.files.internal(fileName));
+		return this.build();
+	}
+
+	/**
+	 * Parses the cache without touching any GL resources.
+	 *
+	 * @param cacheFile
+	 */
+	public void read(FileHandle cacheFile)
+	{
+		ByteBuffer buffer = this.map(cacheFile);
+
+		if(buffer.getInt() != MapCacheWriter.MAGIC || buffer.getInt() != MapCacheWriter.VERSION)
+		{
+			throw new GdxRuntimeException(cacheFile.path() + " is not a map cache of version " + MapCacheWriter.VERSION);
+		}
+
+		// tmx checksum and scales are checked by isValid
+		buffer.position(buffer.position() + 16);
+
+		this.width = buffer.getInt();
+		this.height = buffer.getInt();
+		this.tileWidth = buffer.getInt();
+		this.tileHeight = buffer.getInt();
+
+		String atlasSource = this.getString(buffer);
+		this.atlasPath = atlasSource.length() == 0 ? null : this.resolve(cacheFile, atlasSource).path();
+
+		this.readTileSets(buffer, cacheFile);
+		this.readTileLayers(buffer);
+		this.readObjectLayers(buffer);
+	}
+
+	/**
+	 *
+	 * @return the path of the texture atlas of the map or null
+	 */
+	public String getAtlasPath()
+	{
+		return this.atlasPath;
+	}
+
+	/**
+	 *
+	 * @return the paths of all tileset images
+	 */
+	public Array<String> getImagePaths()
+	{
+		Array<String> imagePaths = new Array<String>();
+
+		for(TileSetData tileSet : this.tileSets)
+		{
+			if(tileSet.imagePath != null) imagePaths.add(tileSet.imagePath);
+			imagePaths.addAll(tileSet.tileImagePaths);
+		}
+		return imagePaths;
+	}
+
+	/**
+	 * Creates the TiledMap from the data of the last {@link #read}.
+	 *
+	 * @return
+	 */
+	public TiledMap build()
+	{
+		if(this.atlasPath == null)
+		{
+			this.imageResolver = new AtlasImageResolver(this.assetManager);
+		}
+		else
+		{
+			this.imageResolver = new AtlasImageResolver(this.assetManager, this.atlasPath);
+		}
+
+		TiledMap map = new TiledMap();
+		MapProperties properties = map.getProperties();
+		properties.put("width", this.width);
+		properties.put("height", this.height);
+		properties.put("tilewidth", this.tileWidth);
+		properties.put("tileheight", this.tileHeight);
+
+		this.buildTileSets(map);
+
+		for(TiledMapTileLayer layer : this.buildTileLayers(map.getTileSets()))
+		{
+			map.getLayers().add(layer);
+		}
+
+		// the records of object layers are handed out by addObjects and addChains
+		for(String name : this.objectLayerNames)
+		{
+			MapLayer layer = new MapLayer();
+			layer.setName(name);
+			map.getLayers().add(layer);
+		}
+
+		Array<AtlasImageResolver> resources = new Array<AtlasImageResolver>();
+		resources.add(this.imageResolver);
+		map.setOwnedResources(resources);
+		return map;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return the content of the file in big endian order
+	 */
+	private ByteBuffer map(FileHandle file)
+	{
+		File systemFile = file.file();
+
+		if(systemFile.exists())
+		{
+			try
+			{
+				RandomAccessFile randomAccessFile = new RandomAccessFile(systemFile, "r");
+
+				try
+				{
+					FileChannel channel = randomAccessFile.getChannel();
+					return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				}
+				finally
+				{
+					// the mapping stays valid after the file is closed
+					randomAccessFile.close();
+				}
+			}
+			catch(IOException e)
+			{
+				Gdx.app.log("MapCacheLoader", "could not map " + file.path() + ", reading it instead: " + e.getMessage());
+			}
+		}
+		return ByteBuffer.wrap(file.readBytes());
+	}
+
+	/**
+	 *
+	 * @param buffer
+	 * @param cacheFile
+	 */
+	private void readTileSets(ByteBuffer buffer, FileHandle cacheFile)
+	{
+		int tileSetCount = buffer.getInt();
+
+		for(int i = 0; i < tileSetCount; i++)
+		{
+			TileSetData tileSet = new TileSetData();
+			tileSet.name = this.getString(buffer);
+			tileSet.firstGid = buffer.getInt();
+			tileSet.tileWidth = buffer.getInt();
+			tileSet.tileHeight = buffer.getInt();
+			tileSet.spacing = buffer.getInt();
+			tileSet.margin = buffer.getInt();
+			tileSet.offsetX = buffer.getInt();
+			tileSet.offsetY = buffer.getInt();
+			tileSet.imageSource = this.getString(buffer);
+
+			if(tileSet.imageSource.length() > 0)
+			{
+				tileSet.imagePath = this.resolve(cacheFile, tileSet.imageSource).path();
+			}
+
+			int imageCount = buffer.getInt();
+
+			for(int j = 0; j < imageCount; j++)
+			{
+				tileSet.tileImageIds.add(buffer.getInt());
+				tileSet.tileImagePaths.add(this.resolve(cacheFile, this.getString(buffer)).path());
+			}
+
+			int animationCount = buffer.getInt();
+
+			for(int j = 0; j < animationCount; j++)
+			{
+				tileSet.animatedIds.add(buffer.getInt());
+
+				int[] frames = new int[buffer.getInt() * 2];
+				buffer.asIntBuffer().get(frames);
+				buffer.position(buffer.position() + frames.length * 4);
+				tileSet.animations.add(frames);
+			}
+
+			this.tileSets.add(tileSet);
+		}
+	}
+
+	/**
+	 *
+	 * @param buffer
+	 */
+	private void readTileLayers(ByteBuffer buffer)
+	{
+		int layerCount = buffer.getInt();
+
+		for(int i = 0; i < layerCount; i++)
+		{
+			TileLayerData layer = new TileLayerData();
+			layer.name = this.getString(buffer);
+			layer.visible = buffer.get() != 0;
+			layer.opacity = buffer.getFloat();
+			layer.width = buffer.getInt();
+			layer.height = buffer.getInt();
+
+			layer.ids = new int[layer.width * layer.height];
+			buffer.asIntBuffer().get(layer.ids);
+			buffer.position(buffer.position() + layer.ids.length * 4);
+
+			this.tileLayers.add(layer);
+		}
+	}
+
+	/**
+	 *
+	 * @param buffer
+	 */
+	private void readObjectLayers(ByteBuffer buffer)
+	{
+		int layerCount = buffer.getInt();
+
+		for(int i = 0; i < layerCount; i++)
+		{
+			String name = this.getString(buffer);
+
+			ObjectLayer objectLayer = new ObjectLayer();
+			int objectCount = buffer.getInt();
+			objectLayer.gids = new int[objectCount];
+			objectLayer.objects = new float[objectCount * ObjectLayer.STRIDE];
+
+			for(int j = 0; j < objectCount; j++)
+			{
+				objectLayer.gids[j] = buffer.getInt();
+				buffer.asFloatBuffer().get(objectLayer.objects, j * ObjectLayer.STRIDE, 3);
+				buffer.position(buffer.position() + 12);
+				objectLayer.objects[j * ObjectLayer.STRIDE + 3] = buffer.getInt();
+			}
+
+			int chainCount = buffer.getInt();
+			objectLayer.chains = new float[chainCount][];
+
+			for(int j = 0; j < chainCount; j++)
+			{
+				float[] vertices = new float[buffer.getInt()];
+				buffer.asFloatBuffer().get(vertices);
+				buffer.position(buffer.position() + vertices.length * 4);
+				objectLayer.chains[j] = vertices;
+			}
+
+			this.objectLayerNames.add(name);
+			this.objectLayers.put(name, objectLayer);
+		}
+	}
+
+	/**
+	 * Cuts the tileset images into tiles the same way TmxMapLoader does.
+	 *
+	 * @param map
+	 */
+	private void buildTileSets(TiledMap map)
+	{
+		for(TileSetData data : this.tileSets)
+		{
+			TiledMapTileSet tileSet = new TiledMapTileSet();
+			tileSet.setName(data.name);
+
+			MapProperties properties = tileSet.getProperties();
+			properties.put("firstgid", data.firstGid);
+
+			if(data.imagePath != null)
+			{
+				TextureRegion image = this.imageResolver.getImage(data.imagePath);
+
+				properties.put("imagesource", data.imageSource);
+				properties.put("imagewidth", image.getRegionWidth());
+				properties.put("imageheight", image.getRegionHeight());
+				properties.put("tilewidth", data.tileWidth);
+				properties.put("tileheight", data.tileHeight);
+				properties.put("margin", data.margin);
+				properties.put("spacing", data.spacing);
+
+				int id = data.firstGid;
+
+				for(int y = data.margin; y <= image.getRegionHeight() - data.tileHeight; y += data.tileHeight + data.spacing)
+				{
+					for(int x = data.margin; x <= image.getRegionWidth() - data.tileWidth; x += data.tileWidth + data.spacing)
+					{
+						this.putTile(tileSet, id++, new TextureRegion(image, x, y, data.tileWidth, data.tileHeight), data);
+					}
+				}
+			}
+
+			for(int i = 0; i < data.tileImageIds.size; i++)
+			{
+				this.putTile(tileSet,
+							 data.firstGid + data.tileImageIds.get(i),
+							 this.imageResolver.getImage(data.tileImagePaths.get(i)),
+							 data);
+			}
+
+			// frames may refer to animated tiles, replace them after all animations are built
+			Array<AnimatedTiledMapTile> animatedTiles = new Array<AnimatedTiledMapTile>(data.animations.size);
+
+			for(int i = 0; i < data.animations.size; i++)
+			{
+				int[] frames = data.animations.get(i);
+				Array<StaticTiledMapTile> staticTiles = new Array<StaticTiledMapTile>(frames.length / 2);
+				IntArray intervals = new IntArray(frames.length / 2);
+
+				for(int j = 0; j < frames.length; j += 2)
+				{
+					staticTiles.add((StaticTiledMapTile) tileSet.getTile(data.firstGid + frames[j]));
+					intervals.add(frames[j + 1]);
+				}
+
+				AnimatedTiledMapTile animatedTile = new AnimatedTiledMapTile(intervals, staticTiles);
+				animatedTile.setId(data.firstGid + data.animatedIds.get(i));
+				animatedTiles.add(animatedTile);
+			}
+
+			for(AnimatedTiledMapTile animatedTile : animatedTiles)
+			{
+				tileSet.putTile(animatedTile.getId(), animatedTile);
+			}
+
+			map.getTileSets().addTileSet(tileSet);
+		}
+	}
+
+	/**
+	 *
+	 * @param tileSet
+	 * @param id
+	 * @param region
+	 * @param data
+	 */
+	private void putTile(TiledMapTileSet tileSet, int id, TextureRegion region, TileSetData data)
+	{
+		StaticTiledMapTile tile = new StaticTiledMapTile(region);
+		tile.setId(id);
+		tile.setOffsetX(data.offsetX);
+		tile.setOffsetY(-data.offsetY);
+		tileSet.putTile(id, tile);
+	}
+
+	/**
+	 * Creates the tile layers of the last {@link #read} from the given
+	 * tilesets, e.g. those of another cache for a region.
+	 *
+	 * @param tileSets
+	 * @return
+	 */
+	public Array<TiledMapTileLayer> buildTileLayers(TiledMapTileSets tileSets)
+	{
+		Array<TiledMapTileLayer> layers = new Array<TiledMapTileLayer>(this.tileLayers.size);
+
+		for(TileLayerData data : this.tileLayers)
+		{
+			TiledMapTileLayer layer = new TiledMapTileLayer(data.width, data.height, this.tileWidth, this.tileHeight);
+			layer.setName(data.name);
+			layer.setVisible(data.visible);
+			layer.setOpacity(data.opacity);
+
+			for(int y = 0; y < data.height; y++)
+			{
+				for(int x = 0; x < data.width; x++)
+				{
+					int id = data.ids[y * data.width + x];
+					TiledMapTile tile = tileSets.getTile(id & TILE_ID_MASK);
+
+					if(tile == null) continue;
+
+					TiledMapTileLayer.Cell cell = this.createCell((id & FLIP_HORIZONTALLY) != 0,
+																  (id & FLIP_VERTICALLY) != 0,
+																  (id & FLIP_DIAGONALLY) != 0);
+					cell.setTile(tile);
+					layer.setCell(x, y, cell);
+				}
+			}
+
+			layers.add(layer);
+		}
+		return layers;
+	}
+
+	/**
+	 * Same as TmxMapLoader.createTileLayerCell.
+	 *
+	 * @param flipHorizontally
+	 * @param flipVertically
+	 * @param flipDiagonally
+	 * @return
+	 */
+	private TiledMapTileLayer.Cell createCell(boolean flipHorizontally, boolean flipVertically, boolean flipDiagonally)
+	{
+		TiledMapTileLayer.Cell cell = new TiledMapTileLayer.Cell();
+
+		if(flipDiagonally)
+		{
+			if(flipHorizontally && flipVertically)
+			{
+				cell.setFlipHorizontally(true);
+				cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+			}
+			else if(flipHorizontally)
+			{
+				cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+			}
+			else if(flipVertically)
+			{
+				cell.setRotation(TiledMapTileLayer.Cell.ROTATE_90);
+			}
+			else
+			{
+				cell.setFlipVertically(true);
+				cell.setRotation(TiledMapTileLayer.Cell.ROTATE_270);
+			}
+		}
+		else
+		{
+			cell.setFlipHorizontally(flipHorizontally);
+			cell.setFlipVertically(flipVertically);
+		}
+		return cell;
+	}
+
+	/**
+	 *
+	 * @param layerName
+	 * @param objectStore
+	 * @param tileSets
+	 * @param scale
+	 * @param result the indices of the added objects are added to it
+	 */
+	public void addObjects(String layerName, MapObjectStore objectStore, TiledMapTileSets tileSets, float scale, IntArray result)
+	{
+		ObjectLayer objectLayer = this.objectLayers.get(layerName);
+
+		if(objectLayer == null) return;
+
+		for(int i = 0; i < objectLayer.gids.length; i++)
+		{
+			TiledMapTile tile = tileSets.getTile(objectLayer.gids[i]);
+
+			if(tile == null) continue;
+
+			int offset = i * ObjectLayer.STRIDE;
+			result.add(objectStore.add(objectLayer.objects[offset],
+									   objectLayer.objects[offset + 1],
+									   objectLayer.objects[offset + 2],
+									   objectLayer.objects[offset + 3] != 0,
+									   tile.getTextureRegion(),
+									   scale));
+		}
+	}
+
+	/**
+	 *
+	 * @return the names of the object layers in the order of the map
+	 */
+	public Array<String> getObjectLayerNames()
+	{
+		return this.objectLayerNames;
+	}
+
+	/**
+	 *
+	 * @param layerName
+	 * @return the collision chains of the layer in box2d units, empty if it has none
+	 */
+	public float[][] getChains(String layerName)
+	{
+		ObjectLayer objectLayer = this.objectLayers.get(layerName);
+
+		if(objectLayer == null) return new float[0][];
+
+		return objectLayer.chains;
+	}
+
+	/**
+	 * Reads a string written by DataOutputStream.writeUTF.
+	 *
+	 * @param buffer
+	 * @return
+	 */
+	private String getString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getShort() & 0xffff];
+		buffer.get(bytes);
+
+		try
+		{
+			return new String(bytes, "UTF-8");
+		}
+		catch(UnsupportedEncodingException e)
+		{
+			throw new GdxRuntimeException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param path relative to the directory of file
+	 * @return
+	 */
+	private FileHandle resolve(FileHandle file, String path)
+	{
+		FileHandle result = file.parent();
+
+		for(String token : path.split("/"))
+		{
+			if(token.equals(".."))
+			{
+				result = result.parent();
+			}
+			else if(!token.equals("."))
+			{
+				result = result.child(token);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return the resolver of the last built map
+	 */
+	public AtlasImageResolver getImageResolver()
+	{
+		return this.imageResolver;
+	}
+
+	private static class TileSetData
+	{
+		private String name;
+		private int firstGid;
+		private int tileWidth;
+		private int tileHeight;
+		private int spacing;
+		private int margin;
+		private int offsetX;
+		private int offsetY;
+		private String imageSource;
+		private String imagePath;
+		private IntArray tileImageIds = new IntArray();
+		private Array<String> tileImagePaths = new Array<String>();
+		private IntArray animatedIds = new IntArray();
+		// tile id and duration of every frame
+		private Array<int[]> animations = new Array<int[]>();
+	}
+
+	private static class TileLayerData
+	{
+		private String name;
+		private boolean visible;
+		private float opacity;
+		private int width;
+		private int height;
+		private int[] ids;
+	}
+
+	private static class ObjectLayer
+	{
+		// x, y, origin offset, background
+		private static final int STRIDE = 4;
+
+		private int[] gids;
+		private float[] objects;
+		private float[][] chains;
+	}
+}
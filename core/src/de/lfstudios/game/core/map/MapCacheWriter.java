@@ -0,0 +1,463 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.BaseTmxMapLoader;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.XmlReader;
+
+import java.io.*;
+import java.util.zip.CRC32;
+
+/**
+ * Bakes a TMX map into the binary map cache read by {@link MapCacheLoader}.
+ * Tile layers are stored decoded, tile objects as records in scaled world
+ * coordinates and polylines as collision chains in scaled box2d coordinates.
+ * Run by the bakeMap task of the core module, it only needs a plain JVM.
+ *
+ * A cache may hold only a rectangle of the map, the regions written by
+ * {@link RegionWriter}: the tile layers are cut to the rectangle, objects
+ * are kept by the tile of their anchor and chains by the tile of the
+ * center of their bounds, both in map coordinates.
+ *
+ * The file is big endian:
+ * header (magic, version, tmx checksum, map scale, world to box scale),
+ * map size, atlas path, tilesets, tile layers, object layers.
+ *
+ * @author vwiebe
+ */
+public class MapCacheWriter
+{
+	public static final int MAGIC = 0x444d4150;
+	public static final int VERSION = 2;
+
+	private static final int OBJECT_BACKGROUND = 1;
+
+	private XmlReader.Element root;
+	private long tmxChecksum;
+	private int mapHeightInPixels;
+	private int tileWidth;
+	private int tileHeight;
+	private float mapScale;
+	private float boxScale;
+
+	// the written rectangle in tiles, rows bottom up
+	private int firstX;
+	private int firstY;
+	private int width;
+	private int height;
+
+	private int objectCount;
+	private int chainCount;
+
+	/**
+	 *
+	 * @param args tmx file and output file
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length != 2)
+		{
+			System.out.println("usage: MapCacheWriter <map.tmx> <map.bin>");
+			System.exit(1);
+		}
+
+		FileHandle tmxFile = new FileHandle(args[0]);
+		FileHandle cacheFile = new FileHandle(args[1]);
+
+		MapCacheWriter writer = new MapCacheWriter();
+		writer.write(tmxFile, cacheFile);
+
+		System.out.println("baked " + tmxFile.name() + " into " + cacheFile.name() + ": " +
+						   writer.getObjectCount() + " objects, " +
+						   writer.getChainCount() + " collision chains, " +
+						   cacheFile.length() + " bytes");
+	}
+
+	/**
+	 *
+	 * @param tmxFile
+	 * @param cacheFile
+	 * @throws IOException
+	 */
+	public void write(FileHandle tmxFile, FileHandle cacheFile) throws IOException
+	{
+		this.parse(tmxFile);
+		this.write(cacheFile, 0, 0, this.getWidth(), this.getHeight(), true);
+	}
+
+	/**
+	 *
+	 * @param tmxFile
+	 * @throws IOException
+	 */
+	public void parse(FileHandle tmxFile) throws IOException
+	{
+		this.root = new XmlReader().parse(tmxFile);
+		this.tmxChecksum = checksum(tmxFile);
+		this.tileWidth = this.root.getIntAttribute("tilewidth");
+		this.tileHeight = this.root.getIntAttribute("tileheight");
+		this.mapHeightInPixels = this.getHeight() * this.tileHeight;
+		this.mapScale = Map.MAP_SCALE;
+		this.boxScale = Map.MAP_SCALE * Map.WORLD_TO_BOX;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return the CRC32 of the content, a cache is outdated once the tmx changes
+	 */
+	public static long checksum(FileHandle file)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(file.readBytes());
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes a rectangle of the last parsed map. A cache without tilesets
+	 * only makes sense next to one with them, an empty rectangle writes
+	 * no layers at all.
+	 *
+	 * @param cacheFile
+	 * @param firstX first tile column
+	 * @param firstY first tile row from the bottom
+	 * @param width in tiles
+	 * @param height in tiles
+	 * @param tileSets false to leave out the tilesets
+	 * @throws IOException
+	 */
+	public void write(FileHandle cacheFile, int firstX, int firstY, int width, int height, boolean tileSets) throws IOException
+	{
+		this.firstX = firstX;
+		this.firstY = firstY;
+		this.width = width;
+		this.height = height;
+		this.objectCount = 0;
+		this.chainCount = 0;
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(cacheFile.write(false)));
+
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(this.tmxChecksum);
+			out.writeFloat(this.mapScale);
+			out.writeFloat(this.boxScale);
+
+			out.writeInt(this.getWidth());
+			out.writeInt(this.getHeight());
+			out.writeInt(this.tileWidth);
+			out.writeInt(this.tileHeight);
+			out.writeUTF(this.getProperty(this.root, "atlas", ""));
+
+			if(tileSets)
+			{
+				this.writeTileSets(out);
+			}
+			else
+			{
+				out.writeInt(0);
+			}
+
+			if(width > 0 && height > 0)
+			{
+				this.writeTileLayers(out);
+				this.writeObjectLayers(out);
+			}
+			else
+			{
+				out.writeInt(0);
+				out.writeInt(0);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeTileSets(DataOutputStream out) throws IOException
+	{
+		Array<XmlReader.Element> tileSets = this.root.getChildrenByName("tileset");
+		out.writeInt(tileSets.size);
+
+		for(XmlReader.Element tileSet : tileSets)
+		{
+			if(tileSet.getAttribute("source", null) != null)
+			{
+				throw new GdxRuntimeException("external tileset " + tileSet.getAttribute("source") + " is not supported");
+			}
+
+			XmlReader.Element image = tileSet.getChildByName("image");
+			XmlReader.Element offset = tileSet.getChildByName("tileoffset");
+
+			out.writeUTF(tileSet.getAttribute("name", ""));
+			out.writeInt(tileSet.getIntAttribute("firstgid", 1));
+			out.writeInt(tileSet.getIntAttribute("tilewidth", 0));
+			out.writeInt(tileSet.getIntAttribute("tileheight", 0));
+			out.writeInt(tileSet.getIntAttribute("spacing", 0));
+			out.writeInt(tileSet.getIntAttribute("margin", 0));
+			out.writeInt(offset == null ? 0 : offset.getIntAttribute("x", 0));
+			out.writeInt(offset == null ? 0 : offset.getIntAttribute("y", 0));
+			// a tileset is either one image cut into tiles or a collection of images
+			out.writeUTF(image == null ? "" : image.getAttribute("source"));
+
+			Array<XmlReader.Element> images = new Array<XmlReader.Element>();
+			Array<XmlReader.Element> animations = new Array<XmlReader.Element>();
+
+			for(XmlReader.Element tile : tileSet.getChildrenByName("tile"))
+			{
+				if(image == null && tile.getChildByName("image") != null)
+				{
+					images.add(tile);
+				}
+
+				if(tile.getChildByName("animation") != null)
+				{
+					animations.add(tile);
+				}
+			}
+
+			out.writeInt(images.size);
+
+			for(XmlReader.Element tile : images)
+			{
+				out.writeInt(tile.getIntAttribute("id"));
+				out.writeUTF(tile.getChildByName("image").getAttribute("source"));
+			}
+
+			out.writeInt(animations.size);
+
+			for(XmlReader.Element tile : animations)
+			{
+				Array<XmlReader.Element> frames = tile.getChildByName("animation").getChildrenByName("frame");
+
+				out.writeInt(tile.getIntAttribute("id"));
+				out.writeInt(frames.size);
+
+				for(XmlReader.Element frame : frames)
+				{
+					out.writeInt(frame.getIntAttribute("tileid"));
+					out.writeInt(frame.getIntAttribute("duration"));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tile ids are written bottom row first, the order of TiledMapTileLayer.
+	 * Cells outside the map are empty.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeTileLayers(DataOutputStream out) throws IOException
+	{
+		Array<XmlReader.Element> layers = this.root.getChildrenByName("layer");
+		out.writeInt(layers.size);
+
+		for(XmlReader.Element layer : layers)
+		{
+			int width = layer.getIntAttribute("width");
+			int height = layer.getIntAttribute("height");
+			int[] ids = BaseTmxMapLoader.getTileIds(layer, width, height);
+
+			out.writeUTF(layer.getAttribute("name", ""));
+			out.writeBoolean(layer.getIntAttribute("visible", 1) == 1);
+			out.writeFloat(layer.getFloatAttribute("opacity", 1));
+			out.writeInt(this.width);
+			out.writeInt(this.height);
+
+			for(int y = this.firstY; y < this.firstY + this.height; y++)
+			{
+				for(int x = this.firstX; x < this.firstX + this.width; x++)
+				{
+					// tmx rows are top down
+					int row = height - 1 - y;
+					out.writeInt(x < width && row >= 0 ? ids[row * width + x] : 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Objects with a gid become object records, polylines become collision
+	 * chains, everything else is skipped like in Map.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeObjectLayers(DataOutputStream out) throws IOException
+	{
+		Array<XmlReader.Element> layers = this.root.getChildrenByName("objectgroup");
+		out.writeInt(layers.size);
+
+		for(XmlReader.Element layer : layers)
+		{
+			Array<XmlReader.Element> objects = new Array<XmlReader.Element>();
+			Array<XmlReader.Element> chains = new Array<XmlReader.Element>();
+
+			for(XmlReader.Element object : layer.getChildrenByName("object"))
+			{
+				if(object.getChildByName("polyline") != null)
+				{
+					if(this.containsChain(object)) chains.add(object);
+				}
+				else if(object.getIntAttribute("gid", -1) != -1)
+				{
+					// tile objects are anchored at their bottom left corner
+					if(this.contains(object.getFloatAttribute("x", 0),
+									 this.mapHeightInPixels - object.getFloatAttribute("y", 0)))
+					{
+						objects.add(object);
+					}
+				}
+			}
+
+			out.writeUTF(layer.getAttribute("name", ""));
+			out.writeInt(objects.size);
+
+			for(XmlReader.Element object : objects)
+			{
+				float y = this.mapHeightInPixels - object.getFloatAttribute("y", 0) - object.getFloatAttribute("height", 0);
+
+				out.writeInt(object.getIntAttribute("gid"));
+				out.writeFloat(object.getFloatAttribute("x", 0) * this.mapScale);
+				out.writeFloat(y * this.mapScale);
+				out.writeFloat(Float.parseFloat(this.getProperty(object, "originOffset", "0")) * this.mapScale);
+				out.writeInt(this.getProperty(object, "isBackground", null) != null ? OBJECT_BACKGROUND : 0);
+			}
+
+			out.writeInt(chains.size);
+
+			for(XmlReader.Element object : chains)
+			{
+				float x = object.getFloatAttribute("x", 0);
+				float y = this.mapHeightInPixels - object.getFloatAttribute("y", 0);
+				String[] points = object.getChildByName("polyline").getAttribute("points").split(" ");
+
+				out.writeInt(points.length * 2);
+
+				for(String point : points)
+				{
+					String[] coordinates = point.split(",");
+					out.writeFloat((x + Float.parseFloat(coordinates[0])) * this.boxScale);
+					out.writeFloat((y - Float.parseFloat(coordinates[1])) * this.boxScale);
+				}
+			}
+
+			this.objectCount += objects.size;
+			this.chainCount += chains.size;
+		}
+	}
+
+	/**
+	 *
+	 * @param object a polyline
+	 * @return true if the center of its bounds lies in the written rectangle
+	 */
+	private boolean containsChain(XmlReader.Element object)
+	{
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+
+		for(String point : object.getChildByName("polyline").getAttribute("points").split(" "))
+		{
+			String[] coordinates = point.split(",");
+			minX = Math.min(minX, Float.parseFloat(coordinates[0]));
+			maxX = Math.max(maxX, Float.parseFloat(coordinates[0]));
+			minY = Math.min(minY, Float.parseFloat(coordinates[1]));
+			maxY = Math.max(maxY, Float.parseFloat(coordinates[1]));
+		}
+
+		return this.contains(object.getFloatAttribute("x", 0) + (minX + maxX) / 2,
+							 this.mapHeightInPixels - object.getFloatAttribute("y", 0) - (minY + maxY) / 2);
+	}
+
+	/**
+	 * Positions off the map count to the tile at its edge, so every object
+	 * ends up in exactly one rectangle.
+	 *
+	 * @param x in tmx pixels
+	 * @param y in tmx pixels from the bottom
+	 * @return true if the tile at the position lies in the written rectangle
+	 */
+	private boolean contains(float x, float y)
+	{
+		int tileX = Math.max(0, Math.min((int) Math.floor(x / this.tileWidth), this.getWidth() - 1));
+		int tileY = Math.max(0, Math.min((int) Math.floor(y / this.tileHeight), this.getHeight() - 1));
+
+		return tileX >= this.firstX && tileX < this.firstX + this.width &&
+			   tileY >= this.firstY && tileY < this.firstY + this.height;
+	}
+
+	/**
+	 *
+	 * @return the width of the parsed map in tiles
+	 */
+	public int getWidth()
+	{
+		return this.root.getIntAttribute("width");
+	}
+
+	/**
+	 *
+	 * @return the height of the parsed map in tiles
+	 */
+	public int getHeight()
+	{
+		return this.root.getIntAttribute("height");
+	}
+
+	/**
+	 *
+	 * @return objects in the last written cache
+	 */
+	public int getObjectCount()
+	{
+		return this.objectCount;
+	}
+
+	/**
+	 *
+	 * @return collision chains in the last written cache
+	 */
+	public int getChainCount()
+	{
+		return this.chainCount;
+	}
+
+	/**
+	 *
+	 * @param element
+	 * @param name
+	 * @param defaultValue
+	 * @return the value of the named property of the element
+	 */
+	private String getProperty(XmlReader.Element element, String name, String defaultValue)
+	{
+		XmlReader.Element properties = element.getChildByName("properties");
+
+		if(properties == null)
+		{
+			return defaultValue;
+		}
+
+		for(XmlReader.Element property : properties.getChildrenByName("property"))
+		{
+			if(name.equals(property.getAttribute("name", null)))
+			{
+				return property.getAttribute("value", "");
+			}
+		}
+		return defaultValue;
+	}
+}
@@ -0,0 +1,191 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectSet;
+import de.lfstudios.game.core.render.TextureDecoder;
+
+/**
+ * Loads a {@link Map} through the asset manager. The baked map cache next
+ * to the tmx file is parsed off the render thread while the atlas and the
+ * tileset images that are not packed into it are loaded as dependencies.
+ * The object records, collision chains and navigation grids are prepared
+ * off the render thread too, only the tile cache and the box2d bodies are
+ * created on it. Without a valid cache the tmx is parsed there instead.
+ * With a {@link TextureDecoder} the tileset images are decoded on its
+ * workers while the atlas loads.
+ *
+ * A .bin file is the index of a world split by {@link RegionWriter}, the
+ * map is streamed from the regions next to it then.
+ *
+ * @author vwiebe
+ */
+public class MapLoader extends AsynchronousAssetLoader<Map, MapLoader.MapParameters>
+{
+	private MapCacheLoader mapCache;
+	private Map map;
+	private TextureDecoder decoder;
+
+	/**
+	 *
+	 * @param resolver
+	 */
+	public MapLoader(FileHandleResolver resolver)
+	{
+		this(resolver, null);
+	}
+
+	/**
+	 *
+	 * @param resolver
+	 * @param decoder starts decoding the tileset images with the dependencies, may be null
+	 */
+	public MapLoader(FileHandleResolver resolver, TextureDecoder decoder)
+	{
+		super(resolver);
+		this.decoder = decoder;
+	}
+
+	/**
+	 *
+	 * @param fileName
+	 * @param file
+	 * @param parameter
+	 * @return
+	 */
+	@Override
+	public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, MapParameters parameter)
+	{
+		Array<AssetDescriptor> dependencies = new Array<AssetDescriptor>();
+		FileHandle cacheFile = file.sibling(file.nameWithoutExtension() + ".bin");
+
+		if(this.isWorld(file))
+		{
+			if(!MapCacheLoader.isValid(file))
+			{
+				throw new GdxRuntimeException(file.path() + " is missing or outdated, run the bakeWorld task");
+			}
+			cacheFile = file;
+		}
+		else if(!MapCacheLoader.isValid(cacheFile, file))
+		{
+			Gdx.app.log("MapLoader", cacheFile.path() + " is missing or outdated, run the bakeMap task");
+			this.mapCache = null;
+			return dependencies;
+		}
+
+		this.mapCache = new MapCacheLoader();
+		this.mapCache.read(cacheFile);
+
+		ObjectSet<String> packedImages = new ObjectSet<String>();
+
+		if(this.mapCache.getAtlasPath() != null)
+		{
+			FileHandle atlasFile = this.resolve(this.mapCache.getAtlasPath());
+			TextureAtlas.TextureAtlasData atlasData = new TextureAtlas.TextureAtlasData(atlasFile, atlasFile.parent(), false);
+
+			for(TextureAtlas.TextureAtlasData.Region region : atlasData.getRegions())
+			{
+				packedImages.add(region.name);
+			}
+
+			dependencies.add(new AssetDescriptor<TextureAtlas>(atlasFile, TextureAtlas.class));
+		}
+
+		TextureLoader.TextureParameter textureParameter = new TextureLoader.TextureParameter();
+		textureParameter.minFilter = Texture.TextureFilter.Nearest;
+		textureParameter.magFilter = Texture.TextureFilter.Nearest;
+
+		for(String imagePath : this.mapCache.getImagePaths())
+		{
+			if(!packedImages.contains(this.resolve(imagePath).nameWithoutExtension()))
+			{
+				dependencies.add(new AssetDescriptor<Texture>(imagePath, Texture.class, textureParameter));
+			}
+		}
+
+		if(this.decoder != null) this.decoder.prefetch(dependencies);
+
+		return dependencies;
+	}
+
+	/**
+	 * The cache was already read while collecting the dependencies, the
+	 * map is prepared from it here. Parsing the tmx may load textures, it
+	 * is left to loadSync.
+	 *
+	 * @param manager
+	 * @param fileName
+	 * @param file
+	 * @param parameter
+	 */
+	@Override
+	public void loadAsync(AssetManager manager, String fileName, FileHandle file, MapParameters parameter)
+	{
+		if(this.mapCache != null)
+		{
+			this.map = Map.prepare(manager, this.mapCache, this.getRegionDirectory(file));
+		}
+	}
+
+	/**
+	 *
+	 * @param manager
+	 * @param fileName
+	 * @param file
+	 * @param parameter
+	 * @return
+	 */
+	@Override
+	public Map loadSync(AssetManager manager, String fileName, FileHandle file, MapParameters parameter)
+	{
+		Map map = this.map;
+
+		if(map != null)
+		{
+			map.create();
+		}
+		else
+		{
+			map = new Map(manager, null, this.getRegionDirectory(file));
+		}
+
+		this.mapCache = null;
+		this.map = null;
+		return map;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return the regions of a world index, null for a map loaded whole
+	 */
+	private FileHandle getRegionDirectory(FileHandle file)
+	{
+		return this.isWorld(file) ? RegionWriter.getRegionDirectory(file) : null;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return true for the index of a world split into regions
+	 */
+	private boolean isWorld(FileHandle file)
+	{
+		return file.extension().equals("bin");
+	}
+
+	public static class MapParameters extends AssetLoaderParameters<Map>
+	{
+	}
+}
@@ -0,0 +1,188 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Uniform grid over the map that buckets the records of a {@link MapObjectStore}
+ * by the cells their bounds overlap. The grid is sized from the map dimensions,
+ * cells are only allocated once an object is put into them.
+ *
+ * @author vwiebe
+ */
+public class MapObjectGrid
+{
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+	private final IntArray[] cells;
+
+	private int[] queryStamps = new int[0];
+	private int queryStamp;
+
+	/**
+	 *
+	 * @param mapPixelWidth
+	 * @param mapPixelHeight
+	 * @param cellSize
+	 */
+	public MapObjectGrid(int mapPixelWidth, int mapPixelHeight, float cellSize)
+	{
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (int) Math.ceil(mapPixelWidth / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil(mapPixelHeight / cellSize));
+		this.cells = new IntArray[this.columns * this.rows];
+	}
+
+	/**
+	 * Puts a record of the store into all cells its bounds overlap.
+	 *
+	 * @param store
+	 * @param object
+	 */
+	public void add(MapObjectStore store, int object)
+	{
+		int firstColumn = this.getColumn(store.getX(object));
+		int lastColumn = this.getColumn(store.getX(object) + store.getWidth(object));
+		int firstRow = this.getRow(store.getY(object));
+		int lastRow = this.getRow(store.getY(object) + store.getHeight(object));
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				int cell = row * this.columns + column;
+
+				if(this.cells[cell] == null)
+				{
+					this.cells[cell] = new IntArray();
+				}
+				this.cells[cell].add(object);
+			}
+		}
+
+		if(object >= this.queryStamps.length)
+		{
+			int[] stamps = new int[Math.max(object + 1, this.queryStamps.length * 2)];
+			System.arraycopy(this.queryStamps, 0, stamps, 0, this.queryStamps.length);
+			this.queryStamps = stamps;
+		}
+	}
+
+	/**
+	 * Must be called before the object is removed from the store, its
+	 * bounds tell the cells it is in.
+	 *
+	 * @param store
+	 * @param object
+	 */
+	public void remove(MapObjectStore store, int object)
+	{
+		int firstColumn = this.getColumn(store.getX(object));
+		int lastColumn = this.getColumn(store.getX(object) + store.getWidth(object));
+		int firstRow = this.getRow(store.getY(object));
+		int lastRow = this.getRow(store.getY(object) + store.getHeight(object));
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				IntArray cell = this.cells[row * this.columns + column];
+
+				if(cell != null)
+				{
+					cell.removeValue(object);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects every object stored in a cell overlapped by the given rectangle.
+	 * Each object is added only once, even if it spans several of these cells.
+	 *
+	 * @param left
+	 * @param bottom
+	 * @param right
+	 * @param top
+	 * @param result
+	 */
+	public void query(float left, float bottom, float right, float top, IntArray result)
+	{
+		int firstColumn = this.getColumn(left);
+		int lastColumn = this.getColumn(right);
+		int firstRow = this.getRow(bottom);
+		int lastRow = this.getRow(top);
+
+		this.queryStamp++;
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				IntArray cell = this.cells[row * this.columns + column];
+
+				if(cell == null) continue;
+
+				for(int i = 0; i < cell.size; i++)
+				{
+					int object = cell.get(i);
+
+					if(this.queryStamps[object] != this.queryStamp)
+					{
+						this.queryStamps[object] = this.queryStamp;
+						result.add(object);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @return the clamped column containing x
+	 */
+	public int getColumn(float x)
+	{
+		int column = (int) Math.floor(x / this.cellSize);
+		return Math.max(0, Math.min(this.columns - 1, column));
+	}
+
+	/**
+	 *
+	 * @param y
+	 * @return the clamped row containing y
+	 */
+	public int getRow(float y)
+	{
+		int row = (int) Math.floor(y / this.cellSize);
+		return Math.max(0, Math.min(this.rows - 1, row));
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getCellSize()
+	{
+		return this.cellSize;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getColumns()
+	{
+		return this.columns;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getRows()
+	{
+		return this.rows;
+	}
+}
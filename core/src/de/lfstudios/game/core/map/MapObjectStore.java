@@ -0,0 +1,245 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.MapProperties;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSets;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Compact storage of all drawable map objects. Every object is compiled
+ * once while the map is set up, afterwards it is only referenced by its index.
+ * Objects of streamed regions come and go, the index of a removed object is
+ * reused by the next one added.
+ *
+ * @author vwiebe
+ */
+public class MapObjectStore
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int size;
+	private float[] x;
+	private float[] y;
+	private float[] width;
+	private float[] height;
+	private float[] origin;
+	private boolean[] background;
+	private TextureRegion[] region;
+	private IntArray freeIndices = new IntArray();
+
+	public MapObjectStore()
+	{
+		this.x = new float[INITIAL_CAPACITY];
+		this.y = new float[INITIAL_CAPACITY];
+		this.width = new float[INITIAL_CAPACITY];
+		this.height = new float[INITIAL_CAPACITY];
+		this.origin = new float[INITIAL_CAPACITY];
+		this.background = new boolean[INITIAL_CAPACITY];
+		this.region = new TextureRegion[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Parses the properties of a tile object and stores the result.
+	 *
+	 * @param object
+	 * @param tileSets
+	 * @param scale
+	 * @return the index of the new record or -1 if the object has no tile
+	 */
+	public int add(MapObject object, TiledMapTileSets tileSets, float scale)
+	{
+		MapProperties properties = object.getProperties();
+
+		if(properties.get("gid") == null)
+		{
+			return -1;
+		}
+
+		TiledMapTile tile = tileSets.getTile(Integer.parseInt(properties.get("gid").toString()));
+
+		if(tile == null)
+		{
+			return -1;
+		}
+
+		float objX = Float.parseFloat(properties.get("x").toString()) * scale;
+		float objY = Float.parseFloat(properties.get("y").toString()) * scale;
+		float originOffset = 0;
+
+		if(properties.get("originOffset") != null)
+		{
+			originOffset = Float.parseFloat(properties.get("originOffset").toString()) * scale;
+		}
+
+		return this.add(objX,
+						objY,
+						originOffset,
+						properties.get("isBackground") != null,
+						tile.getTextureRegion(),
+						scale);
+	}
+
+	/**
+	 *
+	 * @param objX
+	 * @param objY
+	 * @param originOffset
+	 * @param isBackground
+	 * @param textureRegion
+	 * @param scale
+	 * @return the index of the new record
+	 */
+	public int add(float objX,
+				   float objY,
+				   float originOffset,
+				   boolean isBackground,
+				   TextureRegion textureRegion,
+				   float scale)
+	{
+		int index;
+
+		if(this.freeIndices.size > 0)
+		{
+			index = this.freeIndices.pop();
+		}
+		else
+		{
+			if(this.size == this.x.length)
+			{
+				this.resize(this.size * 2);
+			}
+			index = this.size++;
+		}
+
+		this.x[index] = objX;
+		this.y[index] = objY;
+		this.width[index] = textureRegion.getRegionWidth() * scale;
+		this.height[index] = textureRegion.getRegionHeight() * scale;
+		this.origin[index] = objY + originOffset;
+		this.background[index] = isBackground;
+		this.region[index] = textureRegion;
+
+		return index;
+	}
+
+	private void resize(int capacity)
+	{
+		float[] newX = new float[capacity];
+		float[] newY = new float[capacity];
+		float[] newWidth = new float[capacity];
+		float[] newHeight = new float[capacity];
+		float[] newOrigin = new float[capacity];
+		boolean[] newBackground = new boolean[capacity];
+		TextureRegion[] newRegion = new TextureRegion[capacity];
+
+		System.arraycopy(this.x, 0, newX, 0, this.size);
+		System.arraycopy(this.y, 0, newY, 0, this.size);
+		System.arraycopy(this.width, 0, newWidth, 0, this.size);
+		System.arraycopy(this.height, 0, newHeight, 0, this.size);
+		System.arraycopy(this.origin, 0, newOrigin, 0, this.size);
+		System.arraycopy(this.background, 0, newBackground, 0, this.size);
+		System.arraycopy(this.region, 0, newRegion, 0, this.size);
+
+		this.x = newX;
+		this.y = newY;
+		this.width = newWidth;
+		this.height = newHeight;
+		this.origin = newOrigin;
+		this.background = newBackground;
+		this.region = newRegion;
+	}
+
+	/**
+	 * The index is handed out again by the next add, the object must be
+	 * removed from the grids and visibilities first.
+	 *
+	 * @param index
+	 */
+	public void remove(int index)
+	{
+		this.region[index] = null;
+		this.freeIndices.add(index);
+	}
+
+	/**
+	 *
+	 * @return the number of indices in use, removed ones included
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return
+	 */
+	public float getX(int index)
+	{
+		return this.x[index];
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return
+	 */
+	public float getY(int index)
+	{
+		return this.y[index];
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return
+	 */
+	public float getWidth(int index)
+	{
+		return this.width[index];
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return
+	 */
+	public float getHeight(int index)
+	{
+		return this.height[index];
+	}
+
+	/**
+	 * The y coordinate the object is depth sorted by (y + originOffset).
+	 *
+	 * @param index
+	 * @return
+	 */
+	public float getOrigin(int index)
+	{
+		return this.origin[index];
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return
+	 */
+	public boolean isBackground(int index)
+	{
+		return this.background[index];
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return
+	 */
+	public TextureRegion getRegion(int index)
+	{
+		return this.region[index];
+	}
+}
@@ -0,0 +1,378 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Streams the visible objects of a map while the camera moves. Every frame
+ * only the strips between the last and the current view rectangle are
+ * looked up in the grid, the objects found there are queued and evaluated
+ * against the current view with a fixed budget per frame.
+ *
+ * An object is queued whenever its visibility might have changed, so
+ * evaluating it later against the then current view is always correct.
+ * The grid returns whole cells, so the same objects are found again while
+ * the view moves along them. An object is only queued once until it has
+ * been evaluated, otherwise the queue outgrows the budget at high speeds.
+ *
+ * @author vwiebe
+ */
+public class MapVisibility
+{
+	private static final float VISIBILITY_MARGIN = 200;
+	private static final int EVALUATIONS_PER_FRAME = 96;
+
+	private MapObjectStore objectStore;
+	private MapObjectGrid objectGrid;
+
+	private DepthOrder backgroundObjectSet = new DepthOrder();
+	private DepthOrder visibleObjectSet = new DepthOrder();
+
+	private IntArray pendingObjects = new IntArray();
+	private int pendingHead;
+	private boolean[] queued;
+
+	private boolean hasView;
+	private float left;
+	private float bottom;
+	private float right;
+	private float top;
+
+	private long frameCost;
+	private int frameEvaluations;
+
+	/**
+	 *
+	 * @param objectStore
+	 * @param objectGrid
+	 */
+	public MapVisibility(MapObjectStore objectStore, MapObjectGrid objectGrid)
+	{
+		this.objectStore = objectStore;
+		this.objectGrid = objectGrid;
+		this.queued = new boolean[objectStore.size()];
+	}
+
+	/**
+	 * Called once per frame before the visible objects are drawn.
+	 *
+	 * @param camera
+	 */
+	public void update(OrthographicCamera camera)
+	{
+		long start = TimeUtils.nanoTime();
+
+		float newLeft = camera.position.x - (camera.viewportWidth * camera.zoom / 2) - VISIBILITY_MARGIN;
+		float newTop = camera.position.y + (camera.viewportHeight * camera.zoom / 2) + VISIBILITY_MARGIN;
+		float newRight = camera.position.x + (camera.viewportWidth * camera.zoom / 2) + VISIBILITY_MARGIN;
+		float newBottom = camera.position.y - (camera.viewportHeight * camera.zoom / 2) - VISIBILITY_MARGIN;
+
+		int budget = EVALUATIONS_PER_FRAME;
+
+		if(!this.hasView)
+		{
+			// nothing is on screen yet, fill the whole view at once
+			this.queue(newLeft, newBottom, newRight, newTop);
+			budget = Integer.MAX_VALUE;
+			this.hasView = true;
+		}
+		else if(newLeft != this.left || newBottom != this.bottom || newRight != this.right || newTop != this.top)
+		{
+			this.queueStrips(newLeft, newBottom, newRight, newTop);
+		}
+
+		this.left = newLeft;
+		this.bottom = newBottom;
+		this.right = newRight;
+		this.top = newTop;
+
+		this.frameEvaluations = this.evaluatePending(budget);
+
+		this.backgroundObjectSet.sort();
+		this.visibleObjectSet.sort();
+
+		this.frameCost = TimeUtils.nanoTime() - start;
+	}
+
+	/**
+	 * Queues an object added to the grid after the view was filled, e.g.
+	 * by a streamed region.
+	 *
+	 * @param object
+	 */
+	public void add(int object)
+	{
+		if(!this.hasView) return;
+
+		this.growQueued(object);
+
+		if(!this.queued[object])
+		{
+			this.queued[object] = true;
+			this.pendingObjects.add(object);
+		}
+	}
+
+	/**
+	 * Drops an object that is about to be removed from the store.
+	 *
+	 * @param object
+	 */
+	public void remove(int object)
+	{
+		this.backgroundObjectSet.remove(object);
+		this.visibleObjectSet.remove(object);
+
+		// the index may be reused by an object of another phase before it is evaluated
+		if(object < this.queued.length && this.queued[object])
+		{
+			for(int i = this.pendingHead; i < this.pendingObjects.size; i++)
+			{
+				if(this.pendingObjects.get(i) == object)
+				{
+					this.pendingObjects.removeIndex(i);
+					break;
+				}
+			}
+			this.queued[object] = false;
+		}
+	}
+
+	/**
+	 * Queues every object that overlaps the area covered by only one of the
+	 * old and the new view rectangle.
+	 *
+	 * @param newLeft
+	 * @param newBottom
+	 * @param newRight
+	 * @param newTop
+	 */
+	private void queueStrips(float newLeft, float newBottom, float newRight, float newTop)
+	{
+		float innerLeft = Math.max(this.left, newLeft);
+		float innerBottom = Math.max(this.bottom, newBottom);
+		float innerRight = Math.min(this.right, newRight);
+		float innerTop = Math.min(this.top, newTop);
+
+		if(innerLeft >= innerRight || innerBottom >= innerTop)
+		{
+			// the views do not overlap, e.g. after a teleport
+			this.queue(this.left, this.bottom, this.right, this.top);
+			this.queue(newLeft, newBottom, newRight, newTop);
+			return;
+		}
+
+		float outerLeft = Math.min(this.left, newLeft);
+		float outerBottom = Math.min(this.bottom, newBottom);
+		float outerRight = Math.max(this.right, newRight);
+		float outerTop = Math.max(this.top, newTop);
+
+		if(outerLeft < innerLeft)
+		{
+			this.queue(outerLeft, outerBottom, innerLeft, outerTop);
+		}
+
+		if(innerRight < outerRight)
+		{
+			this.queue(innerRight, outerBottom, outerRight, outerTop);
+		}
+
+		if(outerBottom < innerBottom)
+		{
+			this.queue(innerLeft, outerBottom, innerRight, innerBottom);
+		}
+
+		if(innerTop < outerTop)
+		{
+			this.queue(innerLeft, innerTop, innerRight, outerTop);
+		}
+	}
+
+	/**
+	 * Queues the objects of the grid cells overlapping the rectangle that
+	 * are not queued yet.
+	 *
+	 * @param left
+	 * @param bottom
+	 * @param right
+	 * @param top
+	 */
+	private void queue(float left, float bottom, float right, float top)
+	{
+		int start = this.pendingObjects.size;
+		this.objectGrid.query(left, bottom, right, top, this.pendingObjects);
+
+		int end = start;
+		for(int i = start; i < this.pendingObjects.size; i++)
+		{
+			int object = this.pendingObjects.get(i);
+			this.growQueued(object);
+
+			if(!this.queued[object])
+			{
+				this.queued[object] = true;
+				this.pendingObjects.set(end++, object);
+			}
+		}
+		this.pendingObjects.size = end;
+	}
+
+	/**
+	 *
+	 * @param object
+	 */
+	private void growQueued(int object)
+	{
+		if(object >= this.queued.length)
+		{
+			boolean[] newQueued = new boolean[Math.max(object + 1, this.queued.length * 2)];
+			System.arraycopy(this.queued, 0, newQueued, 0, this.queued.length);
+			this.queued = newQueued;
+		}
+	}
+
+	/**
+	 *
+	 * @param budget
+	 * @return the number of evaluated objects
+	 */
+	private int evaluatePending(int budget)
+	{
+		int evaluations = 0;
+
+		while(this.pendingHead < this.pendingObjects.size && evaluations < budget)
+		{
+			int object = this.pendingObjects.get(this.pendingHead++);
+			this.queued[object] = false;
+			this.evaluate(object);
+			evaluations++;
+		}
+
+		if(this.pendingHead == this.pendingObjects.size)
+		{
+			this.pendingObjects.clear();
+			this.pendingHead = 0;
+		}
+		else if(this.pendingHead > this.pendingObjects.size / 2)
+		{
+			this.pendingObjects.removeRange(0, this.pendingHead - 1);
+			this.pendingHead = 0;
+		}
+
+		return evaluations;
+	}
+
+	/**
+	 *
+	 * @param object
+	 */
+	private void evaluate(int object)
+	{
+		DepthOrder objectSet = this.objectStore.isBackground(object) ? this.backgroundObjectSet : this.visibleObjectSet;
+
+		if(this.isObjectInView(object))
+		{
+			objectSet.add(object, this.objectStore.getOrigin(object));
+		}
+		else
+		{
+			objectSet.remove(object);
+		}
+	}
+
+	/**
+	 *
+	 * @param object
+	 * @return
+	 */
+	private boolean isObjectInView(int object)
+	{
+		float objX = this.objectStore.getX(object);
+		float objY = this.objectStore.getY(object);
+
+		return ((objX + this.objectStore.getWidth(object)) > this.left && objX < this.right) &&
+			   (objY < this.top && (objY + this.objectStore.getHeight(object)) > this.bottom);
+	}
+
+	/**
+	 *
+	 * @return the background objects in view
+	 */
+	public DepthOrder getBackgroundObjects()
+	{
+		return this.backgroundObjectSet;
+	}
+
+	/**
+	 *
+	 * @return the depth sorted objects in view
+	 */
+	public DepthOrder getVisibleObjects()
+	{
+		return this.visibleObjectSet;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getLeft()
+	{
+		return this.left;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getBottom()
+	{
+		return this.bottom;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getRight()
+	{
+		return this.right;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getTop()
+	{
+		return this.top;
+	}
+
+	/**
+	 *
+	 * @return nanoseconds spent in the last update
+	 */
+	public long getFrameCost()
+	{
+		return this.frameCost;
+	}
+
+	/**
+	 *
+	 * @return objects evaluated in the last update
+	 */
+	public int getFrameEvaluations()
+	{
+		return this.frameEvaluations;
+	}
+
+	/**
+	 *
+	 * @return objects still waiting for evaluation
+	 */
+	public int getPendingObjects()
+	{
+		return this.pendingObjects.size - this.pendingHead;
+	}
+}
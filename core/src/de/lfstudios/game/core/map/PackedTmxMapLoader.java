@@ -0,0 +1,109 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.XmlReader;
+import de.lfstudios.game.core.render.AtlasImageResolver;
+
+import java.io.IOException;
+
+/**
+ * Loads a TMX map and resolves its tileset images against the texture atlas
+ * named by the "atlas" map property, so map props share atlas pages
+ * instead of one texture per tileset.
+ *
+ * @author vwiebe
+ */
+public class PackedTmxMapLoader extends TmxMapLoader
+{
+	private AssetManager assetManager;
+	private AtlasImageResolver imageResolver;
+
+	public PackedTmxMapLoader()
+	{
+		this(null);
+	}
+
+	/**
+	 *
+	 * @param assetManager images loaded by it are used instead of loading them again, may be null
+	 */
+	public PackedTmxMapLoader(AssetManager assetManager)
+	{
+		this.assetManager = assetManager;
+	}
+
+	/**
+	 *
+	 * @param fileName
+	 * @return
+	 */
+	@Override
+	public TiledMap load(String fileName)
+	{
+		try
+		{
+			FileHandle tmxFile = this.resolve(fileName);
+			this.convertObjectToTileSpace = false;
+			this.root = this.xml.parse(tmxFile);
+
+			String atlasPath = this.getAtlasPath(this.root);
+
+			if(atlasPath == null)
+			{
+				this.imageResolver = new AtlasImageResolver(this.assetManager);
+			}
+			else
+			{
+				this.imageResolver = new AtlasImageResolver(this.assetManager, getRelativeFileHandle(tmxFile, atlasPath).path());
+			}
+
+			TiledMap map = this.loadTilemap(this.root, tmxFile, this.imageResolver);
+			Array<AtlasImageResolver> resources = new Array<AtlasImageResolver>();
+			resources.add(this.imageResolver);
+			map.setOwnedResources(resources);
+			return map;
+		}
+		catch(IOException e)
+		{
+			throw new GdxRuntimeException("Couldn't load tilemap '" + fileName + "'", e);
+		}
+	}
+
+	/**
+	 *
+	 * @param root
+	 * @return the value of the atlas map property or null
+	 */
+	private String getAtlasPath(XmlReader.Element root)
+	{
+		XmlReader.Element properties = root.getChildByName("properties");
+
+		if(properties == null)
+		{
+			return null;
+		}
+
+		for(XmlReader.Element property : properties.getChildrenByName("property"))
+		{
+			if("atlas".equals(property.getAttribute("name", null)))
+			{
+				return property.getAttribute("value", null);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @return the resolver of the last loaded map
+	 */
+	public AtlasImageResolver getImageResolver()
+	{
+		return this.imageResolver;
+	}
+}
@@ -0,0 +1,267 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.async.AsyncResult;
+
+/**
+ * One square of a streamed world, see {@link RegionStreamer}. The file is
+ * read and the collision chains are cleaned on the loader thread, the
+ * tiles, objects and bodies are created by {@link Map#addRegion} on the
+ * physics thread and dropped again by {@link Map#removeRegion}.
+ *
+ * @author vwiebe
+ */
+public class Region implements Disposable
+{
+	static final int LOADING = 0;
+	static final int READ = 1;
+	static final int ACTIVE = 2;
+
+	// sprite cache vertices, 4 vertices of 5 floats per cell
+	private static final int BYTES_PER_TILE = 80;
+	// a record in the object store and its grid entries
+	private static final int BYTES_PER_OBJECT = 48;
+	// box2d keeps a vertex and an edge per chain segment
+	private static final int BYTES_PER_EDGE = 64;
+
+	private final int column;
+	private final int row;
+	private final float left;
+	private final float bottom;
+	private final float size;
+
+	private int state = LOADING;
+	private AsyncResult<Void> result;
+
+	// the read file, until the region is added to the map
+	private MapCacheLoader cache;
+	private CollisionBaker collisionBaker;
+
+	private TileLayerCache tileCache;
+	private IntArray objects = new IntArray();
+	private Array<Body> bodies;
+	private long memory;
+
+	/**
+	 *
+	 * @param column
+	 * @param row from the bottom
+	 * @param size in world pixels
+	 */
+	public Region(int column, int row, float size)
+	{
+		this.column = column;
+		this.row = row;
+		this.size = size;
+		this.left = column * size;
+		this.bottom = row * size;
+	}
+
+	/**
+	 * Runs on the loader thread, touches neither GL nor box2d. A missing
+	 * file is an empty region.
+	 *
+	 * @param regionFile
+	 * @param collisionRegionSize in box2d units
+	 */
+	void read(FileHandle regionFile, float collisionRegionSize)
+	{
+		this.cache = new MapCacheLoader();
+		this.collisionBaker = new CollisionBaker(collisionRegionSize);
+
+		if(!regionFile.exists()) return;
+
+		this.cache.read(regionFile);
+
+		for(String layerName : this.cache.getObjectLayerNames())
+		{
+			short categoryBits = WorldPhase.getCategory(WorldPhase.ofLayer(layerName));
+
+			for(float[] vertices : this.cache.getChains(layerName))
+			{
+				this.collisionBaker.add(vertices, categoryBits);
+			}
+		}
+	}
+
+	/**
+	 * Called by the map once everything is created, the read file is not
+	 * needed any more.
+	 *
+	 * @param tileCache
+	 * @param bodies
+	 */
+	void activate(TileLayerCache tileCache, Array<Body> bodies)
+	{
+		this.tileCache = tileCache;
+		this.bodies = bodies;
+		this.memory = (long) TileLayerCache.getCellCount(tileCache.getLayers()) * BYTES_PER_TILE +
+					  (long) this.objects.size * BYTES_PER_OBJECT +
+					  (long) this.collisionBaker.getEdgeCount() * BYTES_PER_EDGE;
+		this.cache = null;
+		this.collisionBaker = null;
+		this.state = ACTIVE;
+	}
+
+	/**
+	 *
+	 * @param x in world pixels
+	 * @param y in world pixels
+	 * @return the distance of the point to the region, 0 inside
+	 */
+	public float distance(float x, float y)
+	{
+		float dx = Math.max(0, Math.max(this.left - x, x - (this.left + this.size)));
+		float dy = Math.max(0, Math.max(this.bottom - y, y - (this.bottom + this.size)));
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	int getState()
+	{
+		return this.state;
+	}
+
+	/**
+	 *
+	 * @param state
+	 */
+	void setState(int state)
+	{
+		this.state = state;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	AsyncResult<Void> getResult()
+	{
+		return this.result;
+	}
+
+	/**
+	 *
+	 * @param result
+	 */
+	void setResult(AsyncResult<Void> result)
+	{
+		this.result = result;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	MapCacheLoader getCache()
+	{
+		return this.cache;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	CollisionBaker getCollisionBaker()
+	{
+		return this.collisionBaker;
+	}
+
+	/**
+	 *
+	 * @return the objects of the region in the store of the map
+	 */
+	IntArray getObjects()
+	{
+		return this.objects;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	Array<Body> getBodies()
+	{
+		return this.bodies;
+	}
+
+	/**
+	 *
+	 * @return the tile layers, null until the region is active
+	 */
+	public TileLayerCache getTileCache()
+	{
+		return this.tileCache;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getColumn()
+	{
+		return this.column;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getRow()
+	{
+		return this.row;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getLeft()
+	{
+		return this.left;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getBottom()
+	{
+		return this.bottom;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getSize()
+	{
+		return this.size;
+	}
+
+	/**
+	 *
+	 * @return estimated bytes held by the active region
+	 */
+	public long getMemory()
+	{
+		return this.memory;
+	}
+
+	@Override
+	public void dispose()
+	{
+		if(this.tileCache != null)
+		{
+			this.tileCache.dispose();
+			this.tileCache = null;
+		}
+	}
+}
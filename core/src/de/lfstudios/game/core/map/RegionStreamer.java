@@ -0,0 +1,397 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncTask;
+
+/**
+ * Pages the regions of a world baked by {@link RegionWriter} in and out
+ * around the camera. A region coming closer than LOAD_DISTANCE is read on
+ * the loader thread, the next update on the physics thread adds its tiles,
+ * objects and bodies to the map, at most ACTIVATIONS_PER_FRAME per frame.
+ * Regions farther than UNLOAD_DISTANCE are removed again, so only the
+ * regions around the camera are held however far it travels.
+ *
+ * The budget bounds the estimated memory of the active regions, over it
+ * the farthest regions out of load distance go first. The sprite caches of
+ * unloaded regions are kept for the next ones, a region costs no new mesh
+ * or shader.
+ *
+ * @author vwiebe
+ */
+public class RegionStreamer implements Disposable
+{
+	private static final long DEFAULT_BUDGET = 8 * 1024 * 1024;
+	private static final int ACTIVATIONS_PER_FRAME = 1;
+
+	private Map map;
+	private FileHandle regionDirectory;
+	private float regionSize;
+	private float collisionRegionSize;
+	private float loadDistance;
+	private float unloadDistance;
+	private int columns;
+	private int rows;
+
+	// region r at r = row * columns + column, null while it is not loaded
+	private Region[] regions;
+	// loading, read or active, in the order they were requested
+	private Array<Region> loadedRegions = new Array<Region>();
+	private Array<Region> activeRegions = new Array<Region>();
+	// the walls of a region stay in the navigation grids once added
+	private boolean[] navigationAdded;
+
+	// with the number of sprites each one takes
+	private Array<SpriteCache> freeSpriteCaches = new Array<SpriteCache>();
+	private IntArray freeSpriteCacheSizes = new IntArray();
+
+	private AsyncExecutor executor = new AsyncExecutor(1);
+
+	private long budget = DEFAULT_BUDGET;
+	private long usedMemory;
+	// the position of the last update
+	private float x;
+	private float y;
+
+	private int loadCount;
+	private int unloadCount;
+
+	/**
+	 *
+	 * @param map
+	 * @param regionDirectory
+	 * @param mapPixelWidth
+	 * @param mapPixelHeight
+	 * @param regionSize in world pixels
+	 * @param collisionRegionSize in box2d units
+	 */
+	public RegionStreamer(Map map,
+						  FileHandle regionDirectory,
+						  int mapPixelWidth,
+						  int mapPixelHeight,
+						  float regionSize,
+						  float collisionRegionSize)
+	{
+		this.map = map;
+		this.regionDirectory = regionDirectory;
+		this.regionSize = regionSize;
+		this.collisionRegionSize = collisionRegionSize;
+		this.loadDistance = regionSize / 2;
+		this.unloadDistance = regionSize;
+		this.columns = MathUtils.ceil(mapPixelWidth / regionSize);
+		this.rows = MathUtils.ceil(mapPixelHeight / regionSize);
+		this.regions = new Region[this.columns * this.rows];
+		this.navigationAdded = new boolean[this.regions.length];
+	}
+
+	/**
+	 * Called once per frame on the physics thread, outside of a step.
+	 *
+	 * @param x of the camera in world pixels
+	 * @param y of the camera in world pixels
+	 */
+	public void update(float x, float y)
+	{
+		this.x = x;
+		this.y = y;
+		this.requestRegions(x, y);
+		this.activateRegions(x, y, ACTIVATIONS_PER_FRAME);
+		this.unloadRegions(x, y);
+	}
+
+	/**
+	 * Loads the regions around a position and blocks until they are
+	 * active, e.g. before the first frame.
+	 *
+	 * @param x in world pixels
+	 * @param y in world pixels
+	 */
+	public void finishLoading(float x, float y)
+	{
+		this.x = x;
+		this.y = y;
+		this.requestRegions(x, y);
+
+		for(Region region : this.loadedRegions)
+		{
+			if(region.getState() == Region.LOADING) region.getResult().get();
+		}
+
+		this.activateRegions(x, y, Integer.MAX_VALUE);
+		this.unloadRegions(x, y);
+	}
+
+	/**
+	 * Starts reading the regions in load distance that are not loaded yet.
+	 *
+	 * @param x
+	 * @param y
+	 */
+	private void requestRegions(float x, float y)
+	{
+		int firstColumn = Math.max(0, MathUtils.floor((x - this.loadDistance) / this.regionSize));
+		int lastColumn = Math.min(this.columns - 1, MathUtils.floor((x + this.loadDistance) / this.regionSize));
+		int firstRow = Math.max(0, MathUtils.floor((y - this.loadDistance) / this.regionSize));
+		int lastRow = Math.min(this.rows - 1, MathUtils.floor((y + this.loadDistance) / this.regionSize));
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				int index = row * this.columns + column;
+				if(this.regions[index] != null) continue;
+
+				final Region region = new Region(column, row, this.regionSize);
+				if(region.distance(x, y) > this.loadDistance) continue;
+
+				final FileHandle regionFile = RegionWriter.getRegionFile(this.regionDirectory, column, row);
+
+				region.setResult(this.executor.submit(new AsyncTask<Void>()
+				{
+					@Override
+					public Void call() throws Exception
+					{
+						region.read(regionFile, RegionStreamer.this.collisionRegionSize);
+						return null;
+					}
+				}));
+
+				this.regions[index] = region;
+				this.loadedRegions.add(region);
+			}
+		}
+	}
+
+	/**
+	 * Adds the read regions to the map, nearest first.
+	 *
+	 * @param x
+	 * @param y
+	 * @param limit
+	 */
+	private void activateRegions(float x, float y, int limit)
+	{
+		int activations = 0;
+
+		while(activations < limit)
+		{
+			Region nearest = null;
+
+			for(Region region : this.loadedRegions)
+			{
+				if(region.getState() == Region.LOADING && region.getResult().isDone())
+				{
+					// rethrows what went wrong on the loader thread
+					region.getResult().get();
+					region.setState(Region.READ);
+				}
+
+				if(region.getState() == Region.READ && (nearest == null || region.distance(x, y) < nearest.distance(x, y)))
+				{
+					nearest = region;
+				}
+			}
+
+			if(nearest == null) break;
+
+			int index = nearest.getRow() * this.columns + nearest.getColumn();
+			this.map.addRegion(nearest, !this.navigationAdded[index]);
+			this.navigationAdded[index] = true;
+
+			this.activeRegions.add(nearest);
+			this.usedMemory += nearest.getMemory();
+			this.loadCount++;
+			activations++;
+		}
+
+		this.fit(x, y);
+	}
+
+	/**
+	 * Drops the regions out of unload distance, loading ones once they are read.
+	 *
+	 * @param x
+	 * @param y
+	 */
+	private void unloadRegions(float x, float y)
+	{
+		for(int i = this.loadedRegions.size - 1; i >= 0; i--)
+		{
+			Region region = this.loadedRegions.get(i);
+
+			if(region.getState() != Region.LOADING && region.distance(x, y) > this.unloadDistance)
+			{
+				this.unload(region);
+			}
+		}
+	}
+
+	/**
+	 * Unloads the farthest regions out of load distance until the active
+	 * ones fit into the budget.
+	 *
+	 * @param x
+	 * @param y
+	 */
+	private void fit(float x, float y)
+	{
+		while(this.usedMemory > this.budget)
+		{
+			Region farthest = null;
+
+			for(Region region : this.activeRegions)
+			{
+				if(region.distance(x, y) > this.loadDistance &&
+				   (farthest == null || region.distance(x, y) > farthest.distance(x, y)))
+				{
+					farthest = region;
+				}
+			}
+
+			if(farthest == null) return;
+
+			this.unload(farthest);
+		}
+	}
+
+	/**
+	 *
+	 * @param region
+	 */
+	private void unload(Region region)
+	{
+		if(region.getState() == Region.ACTIVE)
+		{
+			this.map.removeRegion(region);
+			this.freeSpriteCache(region.getTileCache());
+			this.activeRegions.removeValue(region, true);
+			this.usedMemory -= region.getMemory();
+			this.unloadCount++;
+		}
+
+		region.dispose();
+		this.loadedRegions.removeValue(region, true);
+		this.regions[region.getRow() * this.columns + region.getColumn()] = null;
+	}
+
+	/**
+	 *
+	 * @param size the most sprites that will be baked into it
+	 * @return a sprite cache of an unloaded region or a new one
+	 */
+	SpriteCache obtainSpriteCache(int size)
+	{
+		for(int i = 0; i < this.freeSpriteCaches.size; i++)
+		{
+			if(this.freeSpriteCacheSizes.get(i) >= size)
+			{
+				this.freeSpriteCacheSizes.removeIndex(i);
+				return this.freeSpriteCaches.removeIndex(i);
+			}
+		}
+		return TileLayerCache.createSpriteCache(size);
+	}
+
+	/**
+	 *
+	 * @param tileCache of a region
+	 */
+	private void freeSpriteCache(TileLayerCache tileCache)
+	{
+		this.freeSpriteCaches.add(tileCache.getSpriteCache());
+		this.freeSpriteCacheSizes.add(TileLayerCache.getCellCount(tileCache.getLayers()));
+	}
+
+	/**
+	 * Draws the tile layers of the active regions.
+	 *
+	 * @param camera
+	 */
+	public void render(OrthographicCamera camera)
+	{
+		for(Region region : this.activeRegions)
+		{
+			region.getTileCache().render(camera);
+		}
+	}
+
+	/**
+	 * Unloads right away if the new budget is smaller.
+	 *
+	 * @param budget in bytes
+	 */
+	public void setBudget(long budget)
+	{
+		this.budget = budget;
+		this.fit(this.x, this.y);
+	}
+
+	/**
+	 *
+	 * @return the regions whose tiles, objects and bodies are in the map
+	 */
+	public Array<Region> getActiveRegions()
+	{
+		return this.activeRegions;
+	}
+
+	/**
+	 *
+	 * @return estimated bytes held by the active regions
+	 */
+	public long getUsedMemory()
+	{
+		return this.usedMemory;
+	}
+
+	/**
+	 *
+	 * @return how many regions were added to the map so far
+	 */
+	public int getLoadCount()
+	{
+		return this.loadCount;
+	}
+
+	/**
+	 *
+	 * @return how many regions were removed from the map so far
+	 */
+	public int getUnloadCount()
+	{
+		return this.unloadCount;
+	}
+
+	@Override
+	public void dispose()
+	{
+		// waits for the region being read
+		this.executor.dispose();
+
+		for(Region region : this.activeRegions)
+		{
+			this.freeSpriteCache(region.getTileCache());
+		}
+
+		for(Region region : this.loadedRegions)
+		{
+			region.dispose();
+		}
+
+		for(SpriteCache spriteCache : this.freeSpriteCaches)
+		{
+			spriteCache.dispose();
+		}
+
+		this.loadedRegions.clear();
+		this.activeRegions.clear();
+		this.freeSpriteCaches.clear();
+		this.freeSpriteCacheSizes.clear();
+	}
+}
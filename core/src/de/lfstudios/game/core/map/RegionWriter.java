@@ -0,0 +1,91 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.IOException;
+
+/**
+ * Splits a TMX map into the region files streamed by {@link RegionStreamer}.
+ * The world index holds the header and the tilesets only, every region of
+ * REGION_TILES x REGION_TILES tiles gets a map cache of its own next to it
+ * with the cut tile layers, objects and collision chains but no tilesets.
+ * Run by the bakeWorld task of the core module, it only needs a plain JVM.
+ *
+ * @author vwiebe
+ */
+public class RegionWriter
+{
+	public static final int REGION_TILES = 16;
+
+	/**
+	 *
+	 * @param args tmx file and world index
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length != 2)
+		{
+			System.out.println("usage: RegionWriter <map.tmx> <world.bin>");
+			System.exit(1);
+		}
+
+		FileHandle tmxFile = new FileHandle(args[0]);
+		FileHandle indexFile = new FileHandle(args[1]);
+		FileHandle regionDirectory = getRegionDirectory(indexFile);
+
+		MapCacheWriter writer = new MapCacheWriter();
+		writer.parse(tmxFile);
+		writer.write(indexFile, 0, 0, 0, 0, true);
+
+		regionDirectory.deleteDirectory();
+		regionDirectory.mkdirs();
+
+		int columns = (writer.getWidth() + REGION_TILES - 1) / REGION_TILES;
+		int rows = (writer.getHeight() + REGION_TILES - 1) / REGION_TILES;
+		int objects = 0;
+		int chains = 0;
+		long bytes = 0;
+
+		for(int row = 0; row < rows; row++)
+		{
+			for(int column = 0; column < columns; column++)
+			{
+				FileHandle regionFile = getRegionFile(regionDirectory, column, row);
+				writer.write(regionFile, column * REGION_TILES, row * REGION_TILES, REGION_TILES, REGION_TILES, false);
+
+				objects += writer.getObjectCount();
+				chains += writer.getChainCount();
+				bytes += regionFile.length();
+			}
+		}
+
+		System.out.println("baked " + tmxFile.name() + " into " + columns * rows + " regions of " +
+						   REGION_TILES + "x" + REGION_TILES + " tiles: " +
+						   objects + " objects, " +
+						   chains + " collision chains, " +
+						   bytes + " bytes");
+	}
+
+	/**
+	 *
+	 * @param indexFile
+	 * @return the directory of the region files, named like the index
+	 */
+	public static FileHandle getRegionDirectory(FileHandle indexFile)
+	{
+		return indexFile.sibling(indexFile.nameWithoutExtension());
+	}
+
+	/**
+	 *
+	 * @param regionDirectory
+	 * @param column
+	 * @param row from the bottom
+	 * @return
+	 */
+	public static FileHandle getRegionFile(FileHandle regionDirectory, int column, int row)
+	{
+		return regionDirectory.child("region_" + column + "_" + row + ".bin");
+	}
+}
@@ -0,0 +1,386 @@
+package de.lfstudios.game.core.map;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Draws the tile layers of a map from a {@link SpriteCache}. The cells are
+ * baked once, in blocks of BLOCK_TILES x BLOCK_TILES per layer, into
+ * vertices that stay on the GPU. A frame only picks the blocks overlapping
+ * the camera, nothing is computed or uploaded per tile.
+ *
+ * All tile layers are baked, hidden ones included, so switching the
+ * visibility of a layer is free. Animated tiles would stay on their first
+ * frame, the map has none.
+ *
+ * A cache may hold the layers of one region of a streamed world, they are
+ * placed at the origin of the region then and baked into a sprite cache
+ * handed over by the streamer, which reuses it for the next region.
+ *
+ * @author vwiebe
+ */
+public class TileLayerCache implements Disposable
+{
+	private static final int BLOCK_TILES = 16;
+	// more sprites need 32 bit indices, the cache draws without indices then
+	private static final int MAX_INDEXED_SPRITES = 5460;
+
+	private SpriteCache spriteCache;
+	private boolean ownsSpriteCache;
+	private TiledMapTileLayer[] layers;
+	// cache id of block b of layer l at cacheIds[l][b], -1 if the block is empty
+	private int[][] cacheIds;
+
+	private float originX;
+	private float originY;
+	private int blockColumns;
+	private int blockRows;
+	private float blockWidth;
+	private float blockHeight;
+	// how far tiles bigger than a cell reach into the next block
+	private float overhang;
+
+	private int spriteCount;
+	private int drawnBlocks;
+	private int renderCalls;
+
+	/**
+	 *
+	 * @param tiledMap
+	 * @param scale
+	 */
+	public TileLayerCache(TiledMap tiledMap, float scale)
+	{
+		this(tiledMap.getLayers().getByType(TiledMapTileLayer.class).toArray(TiledMapTileLayer.class), 0, 0, scale);
+	}
+
+	/**
+	 *
+	 * @param layers
+	 * @param originX where cell 0, 0 is drawn, in world pixels
+	 * @param originY where cell 0, 0 is drawn, in world pixels
+	 * @param scale
+	 */
+	public TileLayerCache(TiledMapTileLayer[] layers, float originX, float originY, float scale)
+	{
+		this(layers, originX, originY, scale, null);
+	}
+
+	/**
+	 *
+	 * @param layers
+	 * @param originX where cell 0, 0 is drawn, in world pixels
+	 * @param originY where cell 0, 0 is drawn, in world pixels
+	 * @param scale
+	 * @param spriteCache to bake into, at least getCellCount(layers) big, or null to create one.
+	 *                    It is cleared first and not disposed with this cache.
+	 */
+	public TileLayerCache(TiledMapTileLayer[] layers, float originX, float originY, float scale, SpriteCache spriteCache)
+	{
+		this.layers = layers;
+		this.originX = originX;
+		this.originY = originY;
+		this.cacheIds = new int[this.layers.length][];
+
+		int sprites = 0;
+		int columns = 0;
+		int rows = 0;
+
+		for(TiledMapTileLayer layer : this.layers)
+		{
+			sprites += this.countCells(layer);
+			columns = Math.max(columns, layer.getWidth());
+			rows = Math.max(rows, layer.getHeight());
+		}
+
+		this.blockColumns = (columns + BLOCK_TILES - 1) / BLOCK_TILES;
+		this.blockRows = (rows + BLOCK_TILES - 1) / BLOCK_TILES;
+		this.spriteCount = sprites;
+
+		if(spriteCache == null)
+		{
+			this.spriteCache = createSpriteCache(sprites);
+			this.ownsSpriteCache = true;
+		}
+		else
+		{
+			spriteCache.clear();
+			this.spriteCache = spriteCache;
+		}
+
+		for(int l = 0; l < this.layers.length; l++)
+		{
+			TiledMapTileLayer layer = this.layers[l];
+			float tileWidth = layer.getTileWidth() * scale;
+			float tileHeight = layer.getTileHeight() * scale;
+
+			this.blockWidth = Math.max(this.blockWidth, BLOCK_TILES * tileWidth);
+			this.blockHeight = Math.max(this.blockHeight, BLOCK_TILES * tileHeight);
+			this.cacheIds[l] = new int[this.blockColumns * this.blockRows];
+
+			for(int b = 0; b < this.cacheIds[l].length; b++)
+			{
+				this.cacheIds[l][b] = this.bakeBlock(layer,
+													 b % this.blockColumns * BLOCK_TILES,
+													 b / this.blockColumns * BLOCK_TILES,
+													 tileWidth,
+													 tileHeight,
+													 scale);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param size the most sprites that will be baked into it
+	 * @return
+	 */
+	public static SpriteCache createSpriteCache(int size)
+	{
+		return new SpriteCache(Math.max(1, size), size <= MAX_INDEXED_SPRITES);
+	}
+
+	/**
+	 *
+	 * @param layers
+	 * @return the cells of the layers, empty ones included, the most sprites a cache of them takes
+	 */
+	public static int getCellCount(TiledMapTileLayer[] layers)
+	{
+		int count = 0;
+
+		for(TiledMapTileLayer layer : layers)
+		{
+			count += layer.getWidth() * layer.getHeight();
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @param layer
+	 * @return
+	 */
+	private int countCells(TiledMapTileLayer layer)
+	{
+		int count = 0;
+
+		for(int y = 0; y < layer.getHeight(); y++)
+		{
+			for(int x = 0; x < layer.getWidth(); x++)
+			{
+				if(this.getRegion(layer, x, y) != null) count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the cells of a block texture by texture, so a block costs one
+	 * draw call per texture instead of one per change of texture.
+	 *
+	 * @param layer
+	 * @param firstX first cell column of the block
+	 * @param firstY first cell row of the block
+	 * @param tileWidth in world pixels
+	 * @param tileHeight in world pixels
+	 * @param scale
+	 * @return the cache id, -1 if the block has no cells
+	 */
+	private int bakeBlock(TiledMapTileLayer layer, int firstX, int firstY, float tileWidth, float tileHeight, float scale)
+	{
+		int lastX = Math.min(firstX + BLOCK_TILES, layer.getWidth());
+		int lastY = Math.min(firstY + BLOCK_TILES, layer.getHeight());
+		Array<Texture> textures = new Array<Texture>();
+
+		for(int y = firstY; y < lastY; y++)
+		{
+			for(int x = firstX; x < lastX; x++)
+			{
+				TextureRegion region = this.getRegion(layer, x, y);
+
+				if(region != null && !textures.contains(region.getTexture(), true))
+				{
+					textures.add(region.getTexture());
+				}
+			}
+		}
+
+		if(textures.size == 0) return -1;
+
+		this.spriteCache.beginCache();
+
+		for(Texture texture : textures)
+		{
+			for(int y = firstY; y < lastY; y++)
+			{
+				for(int x = firstX; x < lastX; x++)
+				{
+					TextureRegion region = this.getRegion(layer, x, y);
+					if(region == null || region.getTexture() != texture) continue;
+
+					TiledMapTileLayer.Cell cell = layer.getCell(x, y);
+					float width = region.getRegionWidth() * scale;
+					float height = region.getRegionHeight() * scale;
+					this.overhang = Math.max(this.overhang, Math.max(width - tileWidth, height - tileHeight));
+
+					this.spriteCache.add(texture,
+										 this.originX + x * tileWidth,
+										 this.originY + y * tileHeight,
+										 width / 2,
+										 height / 2,
+										 width,
+										 height,
+										 1,
+										 1,
+										 cell.getRotation() * 90,
+										 region.getRegionX(),
+										 region.getRegionY(),
+										 region.getRegionWidth(),
+										 region.getRegionHeight(),
+										 cell.getFlipHorizontally(),
+										 cell.getFlipVertically());
+				}
+			}
+		}
+
+		return this.spriteCache.endCache();
+	}
+
+	/**
+	 *
+	 * @param layer
+	 * @param x
+	 * @param y
+	 * @return the region of the cell, null for an empty cell
+	 */
+	private TextureRegion getRegion(TiledMapTileLayer layer, int x, int y)
+	{
+		TiledMapTileLayer.Cell cell = layer.getCell(x, y);
+
+		if(cell == null || cell.getTile() == null) return null;
+
+		return cell.getTile().getTextureRegion();
+	}
+
+	/**
+	 * Draws the blocks of the visible layers overlapping the camera, the
+	 * camera must not be rotated.
+	 *
+	 * @param camera
+	 */
+	public void render(OrthographicCamera camera)
+	{
+		float halfWidth = camera.viewportWidth * camera.zoom / 2 + this.overhang;
+		float halfHeight = camera.viewportHeight * camera.zoom / 2 + this.overhang;
+
+		int firstColumn = MathUtils.floor((camera.position.x - halfWidth - this.originX) / this.blockWidth);
+		int lastColumn = MathUtils.floor((camera.position.x + halfWidth - this.originX) / this.blockWidth);
+		int firstRow = MathUtils.floor((camera.position.y - halfHeight - this.originY) / this.blockHeight);
+		int lastRow = MathUtils.floor((camera.position.y + halfHeight - this.originY) / this.blockHeight);
+
+		this.drawnBlocks = 0;
+		this.renderCalls = 0;
+
+		// the view misses the layers, e.g. of a region far away
+		if(lastColumn < 0 || firstColumn >= this.blockColumns || lastRow < 0 || firstRow >= this.blockRows) return;
+
+		firstColumn = Math.max(firstColumn, 0);
+		lastColumn = Math.min(lastColumn, this.blockColumns - 1);
+		firstRow = Math.max(firstRow, 0);
+		lastRow = Math.min(lastRow, this.blockRows - 1);
+
+		this.spriteCache.setProjectionMatrix(camera.combined);
+		this.spriteCache.begin();
+
+		for(int l = 0; l < this.layers.length; l++)
+		{
+			if(!this.layers[l].isVisible()) continue;
+
+			for(int row = firstRow; row <= lastRow; row++)
+			{
+				for(int column = firstColumn; column <= lastColumn; column++)
+				{
+					int cacheId = this.cacheIds[l][row * this.blockColumns + column];
+					if(cacheId == -1) continue;
+
+					this.spriteCache.draw(cacheId);
+					this.drawnBlocks++;
+				}
+			}
+		}
+
+		this.spriteCache.end();
+		this.renderCalls = this.spriteCache.renderCalls;
+	}
+
+	/**
+	 *
+	 * @return the blocks drawn by the last render
+	 */
+	public int getDrawnBlocks()
+	{
+		return this.drawnBlocks;
+	}
+
+	/**
+	 *
+	 * @return the GL draw calls of the last render
+	 */
+	public int getRenderCalls()
+	{
+		return this.renderCalls;
+	}
+
+	/**
+	 *
+	 * @return the layers, in the order they are drawn
+	 */
+	public TiledMapTileLayer[] getLayers()
+	{
+		return this.layers;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public SpriteCache getSpriteCache()
+	{
+		return this.spriteCache;
+	}
+
+	/**
+	 *
+	 * @return the sprites baked into the cache
+	 */
+	public int getSpriteCount()
+	{
+		return this.spriteCount;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBlockCount()
+	{
+		return this.blockColumns * this.blockRows * this.layers.length;
+	}
+
+	@Override
+	public void dispose()
+	{
+		if(this.ownsSpriteCache)
+		{
+			this.spriteCache.dispose();
+		}
+	}
+}
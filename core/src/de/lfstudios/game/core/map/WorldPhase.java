@@ -0,0 +1,100 @@
+package de.lfstudios.game.core.map;
+
+/**
+ * The light and the dark world share one map, each layer belongs to the
+ * phase in its name ("light", "objects_light", "light_uniq"), layers
+ * without one belong to both. The walls of both phases are in the box2d
+ * world at once, they are told apart by their category bits and the
+ * entities only collide with the category of the current phase.
+ *
+ * @author vwiebe
+ */
+public final class WorldPhase
+{
+	public static final int LIGHT = 0;
+	public static final int DARK = 1;
+	public static final int COUNT = 2;
+	public static final int BOTH = -1;
+
+	public static final short ENTITY_CATEGORY = 0x0001;
+
+	private static final String[] NAMES = {"light", "dark"};
+
+	private WorldPhase()
+	{
+	}
+
+	/**
+	 *
+	 * @param layerName
+	 * @return the phase the layer belongs to or BOTH
+	 */
+	public static int ofLayer(String layerName)
+	{
+		if(layerName == null) return BOTH;
+
+		for(int phase = 0; phase < COUNT; phase++)
+		{
+			String name = NAMES[phase];
+
+			if(layerName.equals(name) || layerName.startsWith(name + "_") || layerName.endsWith("_" + name))
+			{
+				return phase;
+			}
+		}
+		return BOTH;
+	}
+
+	/**
+	 *
+	 * @param layerPhase the phase of a layer, may be BOTH
+	 * @param phase
+	 * @return true if the layer is part of the given phase
+	 */
+	public static boolean contains(int layerPhase, int phase)
+	{
+		return layerPhase == BOTH || layerPhase == phase;
+	}
+
+	/**
+	 *
+	 * @param phase may be BOTH
+	 * @return the category bits of the walls of the phase
+	 */
+	public static short getCategory(int phase)
+	{
+		if(phase == BOTH) return (short) (((1 << COUNT) - 1) << 1);
+
+		return (short) (ENTITY_CATEGORY << (phase + 1));
+	}
+
+	/**
+	 *
+	 * @param phase
+	 * @return the mask bits of the entities in the phase, they collide with each other and its walls
+	 */
+	public static short getEntityMask(int phase)
+	{
+		return (short) (ENTITY_CATEGORY | getCategory(phase));
+	}
+
+	/**
+	 *
+	 * @param phase
+	 * @return
+	 */
+	public static int getOther(int phase)
+	{
+		return phase == LIGHT ? DARK : LIGHT;
+	}
+
+	/**
+	 *
+	 * @param phase
+	 * @return
+	 */
+	public static String getName(int phase)
+	{
+		return NAMES[phase];
+	}
+}
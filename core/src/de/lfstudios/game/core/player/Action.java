@@ -1,272 +1,123 @@
 package de.lfstudios.game.core.player;
 
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.audio.Music;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Animation;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.utils.Array;
+import de.lfstudios.game.core.audio.SoundEffect;
 
 /**
+ * An {@link ActionDefinition} played by one entity. The animations are
+ * shared with every entity using the same definition, the direction and
+ * state time are kept by the entity.
+ *
  * @author vwiebe
  */
 public class Action
 {
-	private Texture texture;
-	private TextureRegion[] textureRegion;
-	private int[][] frameMap;
+	public static final int DOWN = 1;
+	public static final int UP = 2;
+	public static final int LEFT = 3;
+	public static final int RIGHT = 4;
+	public static final int DOWN_LEFT = 5;
+	public static final int DOWN_RIGHT = 6;
+	public static final int UP_LEFT = 7;
+	public static final int UP_RIGHT = 8;
 
-	private Animation downAnimation;
-	private Animation upAnimation;
-	private Animation leftAnimation;
-	private Animation rightAnimation;
+	private static final float TAN_22_5 = 0.41421356f;
 
-	private Animation downLeftAnimation;
-	private Animation downRightAnimation;
-	private Animation upLeftAnimation;
-	private Animation upRightAnimation;
+	private ActionAssetCache assetCache;
+	private ActionDefinition definition;
 
-	private boolean isAnimationLooping;
-	private int direction;
-	private float frameDuration;
-	private Music sound;
-	private float soundVolume;
-	private boolean loopSound;
-	private boolean hasSound;
+	// indexed by direction - 1
+	private Animation[] animations;
 
 	/**
 	 *
-	 * @param texturePath
-	 * @param x
-	 * @param y
-	 * @param frameDuration
-	 * @param frameMap
-	 * @param isAnimationLooping
+	 * @param assetCache
+	 * @param definition
 	 */
-	public Action(String texturePath,
-				  int x,
-				  int y,
-				  float frameDuration,
-				  int[][] frameMap,
-				  boolean isAnimationLooping)
+	public Action(ActionAssetCache assetCache, ActionDefinition definition)
 	{
-			this(texturePath,
-				 x,
-				 y,
-				 frameDuration,
-				 frameMap,
-				 isAnimationLooping,
-				 null,
-				 0,
-				 false);
+		this.assetCache = assetCache;
+		this.definition = definition;
+		this.animations = assetCache.acquireAnimations(definition);
 	}
 
 	/**
+	 * Picks the octant of a vector without angles, a direction is diagonal
+	 * unless one component is below tan(22.5°) of the other.
 	 *
-	 * @param texturePath
 	 * @param x
 	 * @param y
-	 * @param frameDuration
-	 * @param frameMap
-	 * @param isAnimationLooping
-	 * @param soundPath
-	 * @param soundVolume
-	 * @param loopSound
-	 */
-	public Action(String texturePath,
-				  int x,
-				  int y,
-				  float frameDuration,
-				  int[][] frameMap,
-				  boolean isAnimationLooping,
-				  String soundPath,
-				  float soundVolume,
-				  boolean loopSound)
-	{
-		this.texture = this.loadTexture(texturePath);
-		this.textureRegion = setupRegion(this.texture, x, y);
-		this.frameMap = frameMap;
-		this.isAnimationLooping = isAnimationLooping;
-		this.frameDuration = frameDuration;
-		this.sound = this.loadSound(soundPath);
-		this.soundVolume = soundVolume;
-		this.loopSound = loopSound;
-
-		this.setupAnimations();
-		this.setupSound();
-	}
-
-	/**
-	 *
-	 * @param path
-	 * @return
+	 * @return {@link #DOWN} to {@link #UP_RIGHT}, must not be called with a zero vector
 	 */
-	private Texture loadTexture(String path)
+	public static int toDirection(float x, float y)
 	{
-		if(path != null)
-		{
-			return new Texture(Gdx.files.internal(path));
-		}
-		return null;
-	}
+		float absX = Math.abs(x);
+		float absY = Math.abs(y);
 
-	/**
-	 *
-	 * @param path
-	 * @return
-	 */
-	private Music loadSound(String path)
-	{
-		if(path != null)
+		if(absX <= absY * TAN_22_5)
 		{
-			this.hasSound = true;
-			return Gdx.audio.newMusic((Gdx.files.internal(path)));
+			return y > 0 ? UP : DOWN;
 		}
-		this.hasSound = false;
-		return null;
-	}
-
-	private void setupAnimations()
-	{
-		Array<TextureRegion> down = new Array<TextureRegion>();
-		Array<TextureRegion> up = new Array<TextureRegion>();
-		Array<TextureRegion> left = new Array<TextureRegion>();
-		Array<TextureRegion> right = new Array<TextureRegion>();
-		Array<TextureRegion> downLeft = new Array<TextureRegion>();
-		Array<TextureRegion> downRight = new Array<TextureRegion>();
-		Array<TextureRegion> upLeft = new Array<TextureRegion>();
-		Array<TextureRegion> upRight = new Array<TextureRegion>();
-
-		for(int i = 0; i < this.frameMap[0].length; i++) down.add(this.textureRegion[this.frameMap[0][i]]);
-		for(int i = 0; i < this.frameMap[1].length; i++) up.add(this.textureRegion[this.frameMap[1][i]]);
-		for(int i = 0; i < this.frameMap[2].length; i++) left.add(this.textureRegion[this.frameMap[2][i]]);
-		for(int i = 0; i < this.frameMap[3].length; i++) right.add(this.textureRegion[this.frameMap[3][i]]);
-		for(int i = 0; i < this.frameMap[4].length; i++) downLeft.add(this.textureRegion[this.frameMap[4][i]]);
-		for(int i = 0; i < this.frameMap[5].length; i++) downRight.add(this.textureRegion[this.frameMap[5][i]]);
-		for(int i = 0; i < this.frameMap[6].length; i++) upLeft.add(this.textureRegion[this.frameMap[6][i]]);
-		for(int i = 0; i < this.frameMap[7].length; i++) upRight.add(this.textureRegion[this.frameMap[7][i]]);
-
-		this.downAnimation = new Animation(this.frameDuration, down);
-		this.upAnimation = new Animation(this.frameDuration, up);
-		this.leftAnimation = new Animation(this.frameDuration, left);
-		this.rightAnimation = new Animation(this.frameDuration, right);
-		this.downLeftAnimation = new Animation(this.frameDuration, downLeft);
-		this.downRightAnimation = new Animation(this.frameDuration, downRight);
-		this.upLeftAnimation = new Animation(this.frameDuration, upLeft);
-		this.upRightAnimation = new Animation(this.frameDuration, upRight);
-
-		if(this.isAnimationLooping)
+		if(absY <= absX * TAN_22_5)
 		{
-			this.downAnimation.setPlayMode(Animation.PlayMode.LOOP);
-			this.upAnimation.setPlayMode(Animation.PlayMode.LOOP);
-			this.leftAnimation.setPlayMode(Animation.PlayMode.LOOP);
-			this.rightAnimation.setPlayMode(Animation.PlayMode.LOOP);
-			this.downLeftAnimation.setPlayMode(Animation.PlayMode.LOOP);
-			this.downRightAnimation.setPlayMode(Animation.PlayMode.LOOP);
-			this.upLeftAnimation.setPlayMode(Animation.PlayMode.LOOP);
-			this.upRightAnimation.setPlayMode(Animation.PlayMode.LOOP);
+			return x > 0 ? RIGHT : LEFT;
 		}
-		else
+		if(y > 0)
 		{
-			this.downAnimation.setPlayMode(Animation.PlayMode.NORMAL);
-			this.upAnimation.setPlayMode(Animation.PlayMode.NORMAL);
-			this.leftAnimation.setPlayMode(Animation.PlayMode.NORMAL);
-			this.rightAnimation.setPlayMode(Animation.PlayMode.NORMAL);
-			this.downLeftAnimation.setPlayMode(Animation.PlayMode.NORMAL);
-			this.downRightAnimation.setPlayMode(Animation.PlayMode.NORMAL);
-			this.upLeftAnimation.setPlayMode(Animation.PlayMode.NORMAL);
-			this.upRightAnimation.setPlayMode(Animation.PlayMode.NORMAL);
+			return x > 0 ? UP_RIGHT : UP_LEFT;
 		}
+		return x > 0 ? DOWN_RIGHT : DOWN_LEFT;
 	}
 
-	private void setupSound()
+	public void dispose()
 	{
-		if(this.hasSound)
-		{
-			this.sound.setVolume(this.soundVolume);
-			this.sound.setLooping(this.loopSound);
-		}
+		this.assetCache.releaseAnimations(this.definition);
 	}
 
 	/**
 	 *
-	 * @param texture
 	 * @return
 	 */
-	private TextureRegion[] setupRegion(Texture texture, int x, int y)
+	public ActionDefinition getDefinition()
 	{
-		TextureRegion[][] tmp = TextureRegion.split(texture,
-													texture.getWidth() / x,
-													texture.getHeight() / y);
-		TextureRegion[] region = new TextureRegion[x * y];
-		int index = 0;
-		for (int i = 0; i < y; i++)
-		{
-			for (int j = 0; j < x; j++)
-			{
-				region[index++] = tmp[i][j];
-			}
-		}
-		return region;
-	}
-
-	public void dispose()
-	{
-		this.texture.dispose();
-		if(this.sound != null) this.sound.dispose();
+		return this.definition;
 	}
 
 	/**
+	 * See {@link #DOWN} to {@link #UP_RIGHT}.
 	 *
-	 * @return
+	 * @return the animations, indexed by direction - 1
 	 */
-	public int getDirection()
+	public Animation[] getAnimations()
 	{
-		return this.direction;
+		return this.animations;
 	}
 
 	/**
 	 *
-	 * @param direction
+	 * @return
 	 */
-	public void setDirection(int direction)
+	public SoundEffect getSound()
 	{
-		this.direction = direction;
+		return this.definition.getSound();
 	}
 
 	/**
-	 * 1 = down
-	 * 2 = up
-	 * 3 = left
-	 * 4 = right
-	 *
-	 * 5 = down left
-	 * 6 = down right
-	 * 7 = up left
-	 * 8 = up right
 	 *
 	 * @return
 	 */
-	public Animation getCurrentAnimation()
+	public float getSoundVolume()
 	{
-		if(this.getDirection() == 1) return this.downAnimation;
-		if(this.getDirection() == 2) return this.upAnimation;
-		if(this.getDirection() == 3) return this.leftAnimation;
-		if(this.getDirection() == 4) return this.rightAnimation;
-		if(this.getDirection() == 5) return this.downLeftAnimation;
-		if(this.getDirection() == 6) return this.downRightAnimation;
-		if(this.getDirection() == 7) return this.upLeftAnimation;
-		if(this.getDirection() == 8) return this.upRightAnimation;
-		return this.downAnimation;
+		return this.definition.getSoundVolume();
 	}
 
 	/**
 	 *
 	 * @return
 	 */
-	public Music getSound()
+	public boolean isSoundLooping()
 	{
-		return this.sound;
+		return this.definition.isSoundLooping();
 	}
 
 	/**
@@ -275,7 +126,7 @@ public class Action
 	 */
 	public boolean hasSound()
 	{
-		return this.hasSound;
+		return this.definition.getSound() != null;
 	}
 
 	/**
@@ -284,6 +135,6 @@ public class Action
 	 */
 	public boolean isAnimationLooping()
 	{
-		return this.isAnimationLooping;
+		return this.definition.isLooping();
 	}
 }
@@ -0,0 +1,230 @@
+package de.lfstudios.game.core.player;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+import de.lfstudios.game.core.render.AtlasImageResolver;
+
+/**
+ * Shares the sprite sheets of actions between all actions and players. A
+ * sheet is split into frames once per path and frame layout, and the
+ * animations of an {@link ActionDefinition} are built once, so creating
+ * more entities of a character costs no more splits or animations. Both
+ * are reference counted and dropped when the last action releases them.
+ * Action sounds are played through
+ * {@link de.lfstudios.game.core.audio.SoundEffects}.
+ *
+ * @author vwiebe
+ */
+public class ActionAssetCache implements Disposable
+{
+	private AtlasImageResolver imageResolver;
+
+	private ObjectMap<String, Sheet> sheets = new ObjectMap<String, Sheet>();
+	private ObjectMap<ActionDefinition, Animations> animations = new ObjectMap<ActionDefinition, Animations>();
+
+	private int savedSplits;
+	private int reusedFrames;
+	private int sharedAnimations;
+
+	/**
+	 *
+	 * @param assetManager
+	 * @param atlasPaths atlases the sheets are looked up in
+	 */
+	public ActionAssetCache(AssetManager assetManager, String... atlasPaths)
+	{
+		this.imageResolver = new AtlasImageResolver(assetManager, atlasPaths);
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @param columns
+	 * @param rows
+	 * @return the frames of the sheet, row by row
+	 */
+	public TextureRegion[] acquireFrames(String path, int columns, int rows)
+	{
+		String key = this.getSheetKey(path, columns, rows);
+		Sheet sheet = this.sheets.get(key);
+
+		if(sheet == null)
+		{
+			sheet = new Sheet(this.split(this.imageResolver.getImage(path), columns, rows));
+			this.sheets.put(key, sheet);
+		}
+		else
+		{
+			// without the cache every action split the sheet into frames of its own
+			this.reusedFrames += sheet.frames.length;
+			this.savedSplits++;
+		}
+
+		sheet.references++;
+		return sheet.frames;
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @param columns
+	 * @param rows
+	 */
+	public void releaseFrames(String path, int columns, int rows)
+	{
+		String key = this.getSheetKey(path, columns, rows);
+		Sheet sheet = this.sheets.get(key);
+
+		if(sheet != null && --sheet.references == 0)
+		{
+			this.sheets.remove(key);
+		}
+	}
+
+	/**
+	 *
+	 * @param definition
+	 * @return the animations of the definition, indexed by direction - 1
+	 */
+	public Animation[] acquireAnimations(ActionDefinition definition)
+	{
+		Animations animations = this.animations.get(definition);
+
+		if(animations == null)
+		{
+			TextureRegion[] frames = this.acquireFrames(definition.getSheet(), definition.getColumns(), definition.getRows());
+			animations = new Animations(this.createAnimations(definition, frames));
+			this.animations.put(definition, animations);
+		}
+		else
+		{
+			this.sharedAnimations++;
+		}
+
+		animations.references++;
+		return animations.animations;
+	}
+
+	/**
+	 *
+	 * @param definition
+	 */
+	public void releaseAnimations(ActionDefinition definition)
+	{
+		Animations animations = this.animations.get(definition);
+
+		if(animations != null && --animations.references == 0)
+		{
+			this.animations.remove(definition);
+			this.releaseFrames(definition.getSheet(), definition.getColumns(), definition.getRows());
+		}
+	}
+
+	/**
+	 *
+	 * @param definition
+	 * @param sheetFrames
+	 * @return
+	 */
+	private Animation[] createAnimations(ActionDefinition definition, TextureRegion[] sheetFrames)
+	{
+		int[][] frameMap = definition.getFrames();
+		Animation[] animations = new Animation[frameMap.length];
+
+		for(int direction = 0; direction < frameMap.length; direction++)
+		{
+			TextureRegion[] frames = new TextureRegion[frameMap[direction].length];
+
+			for(int i = 0; i < frames.length; i++)
+			{
+				frames[i] = sheetFrames[frameMap[direction][i]];
+			}
+
+			animations[direction] = new Animation(definition.getFrameDuration(), frames);
+			animations[direction].setPlayMode(definition.isLooping() ? Animation.PlayMode.LOOP
+																	 : Animation.PlayMode.NORMAL);
+		}
+		return animations;
+	}
+
+	/**
+	 *
+	 * @param texture
+	 * @param columns
+	 * @param rows
+	 * @return
+	 */
+	private TextureRegion[] split(TextureRegion texture, int columns, int rows)
+	{
+		TextureRegion[][] tmp = texture.split(texture.getRegionWidth() / columns,
+											  texture.getRegionHeight() / rows);
+		TextureRegion[] frames = new TextureRegion[columns * rows];
+		int index = 0;
+		for(int i = 0; i < rows; i++)
+		{
+			for(int j = 0; j < columns; j++)
+			{
+				frames[index++] = tmp[i][j];
+			}
+		}
+		return frames;
+	}
+
+	private String getSheetKey(String path, int columns, int rows)
+	{
+		return path + ":" + columns + "x" + rows;
+	}
+
+	/**
+	 *
+	 * @return frame regions handed out again instead of splitting the sheet once more
+	 */
+	public int getReusedFrames()
+	{
+		return this.reusedFrames;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public String getReport()
+	{
+		return this.sheets.size + " sheets and " + this.animations.size + " actions shared, " +
+			   this.sharedAnimations + " animation sets reused, " +
+			   this.savedSplits + " splits saved, " + this.reusedFrames + " frame regions reused";
+	}
+
+	@Override
+	public void dispose()
+	{
+		this.animations.clear();
+		this.sheets.clear();
+		this.imageResolver.dispose();
+	}
+
+	private static class Animations
+	{
+		private final Animation[] animations;
+		private int references;
+
+		private Animations(Animation[] animations)
+		{
+			this.animations = animations;
+		}
+	}
+
+	private static class Sheet
+	{
+		private final TextureRegion[] frames;
+		private int references;
+
+		private Sheet(TextureRegion[] frames)
+		{
+			this.frames = frames;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package de.lfstudios.game.core.player;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonValue;
+import de.lfstudios.game.core.audio.SoundEffect;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Describes an {@link Action}: its sprite sheet and frame grid, the frames
+ * per direction and its sound. Definitions are read once per
+ * {@link ActionSet} and shared by every entity using them.
+ *
+ * @author vwiebe
+ */
+public class ActionDefinition
+{
+	static final int DIRECTIONS = 8;
+
+	private String name;
+	private String sheet;
+	private int columns;
+	private int rows;
+	private float frameDuration;
+	private boolean looping;
+	private int[][] frames;
+	private SoundEffect sound;
+	private float soundVolume;
+	private boolean loopSound;
+
+	private ActionDefinition()
+	{
+	}
+
+	/**
+	 *
+	 * @param json
+	 * @return
+	 */
+	static ActionDefinition fromJson(JsonValue json)
+	{
+		ActionDefinition definition = new ActionDefinition();
+		definition.name = json.getString("name");
+		definition.sheet = json.getString("sheet");
+		definition.columns = json.getInt("columns");
+		definition.rows = json.getInt("rows");
+		definition.frameDuration = json.getFloat("frameDuration");
+		definition.looping = json.getBoolean("looping", false);
+
+		JsonValue frames = json.get("frames");
+
+		if(frames == null || frames.size != DIRECTIONS)
+		{
+			throw new GdxRuntimeException("action " + definition.name + " needs frames for " + DIRECTIONS + " directions");
+		}
+
+		definition.frames = new int[DIRECTIONS][];
+
+		for(int i = 0; i < DIRECTIONS; i++)
+		{
+			definition.frames[i] = frames.get(i).asIntArray();
+		}
+
+		String sound = json.getString("sound", null);
+
+		if(sound != null)
+		{
+			definition.sound = SoundEffect.forName(sound);
+			definition.soundVolume = json.getFloat("soundVolume", 1);
+			definition.loopSound = json.getBoolean("loopSound", false);
+		}
+
+		definition.validate();
+		return definition;
+	}
+
+	/**
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	static ActionDefinition read(DataInputStream in) throws IOException
+	{
+		ActionDefinition definition = new ActionDefinition();
+		definition.name = in.readUTF();
+		definition.sheet = in.readUTF();
+		definition.columns = in.readUnsignedByte();
+		definition.rows = in.readUnsignedByte();
+		definition.frameDuration = in.readFloat();
+		definition.looping = in.readBoolean();
+		definition.frames = new int[DIRECTIONS][];
+
+		for(int i = 0; i < DIRECTIONS; i++)
+		{
+			definition.frames[i] = new int[in.readUnsignedByte()];
+
+			for(int j = 0; j < definition.frames[i].length; j++)
+			{
+				definition.frames[i][j] = in.readUnsignedByte();
+			}
+		}
+
+		String sound = in.readUTF();
+
+		if(sound.length() > 0)
+		{
+			definition.sound = SoundEffect.forName(sound);
+			definition.soundVolume = in.readFloat();
+			definition.loopSound = in.readBoolean();
+		}
+		return definition;
+	}
+
+	/**
+	 * Grid sizes and frame indices are stored as bytes.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	void write(DataOutputStream out) throws IOException
+	{
+		out.writeUTF(this.name);
+		out.writeUTF(this.sheet);
+		out.writeByte(this.columns);
+		out.writeByte(this.rows);
+		out.writeFloat(this.frameDuration);
+		out.writeBoolean(this.looping);
+
+		for(int[] direction : this.frames)
+		{
+			out.writeByte(direction.length);
+
+			for(int frame : direction)
+			{
+				out.writeByte(frame);
+			}
+		}
+
+		if(this.sound != null)
+		{
+			out.writeUTF(this.sound.getName());
+			out.writeFloat(this.soundVolume);
+			out.writeBoolean(this.loopSound);
+		}
+		else
+		{
+			out.writeUTF("");
+		}
+	}
+
+	private void validate()
+	{
+		int frameCount = this.columns * this.rows;
+
+		if(frameCount <= 0 || frameCount > 256)
+		{
+			throw new GdxRuntimeException("action " + this.name + " has an invalid grid of " + this.columns + "x" + this.rows);
+		}
+
+		for(int[] direction : this.frames)
+		{
+			if(direction.length == 0 || direction.length > 255)
+			{
+				throw new GdxRuntimeException("action " + this.name + " needs 1 to 255 frames per direction");
+			}
+
+			for(int frame : direction)
+			{
+				if(frame < 0 || frame >= frameCount)
+				{
+					throw new GdxRuntimeException("action " + this.name + " has no frame " + frame);
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public String getName()
+	{
+		return this.name;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public String getSheet()
+	{
+		return this.sheet;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getColumns()
+	{
+		return this.columns;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getRows()
+	{
+		return this.rows;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getFrameDuration()
+	{
+		return this.frameDuration;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public boolean isLooping()
+	{
+		return this.looping;
+	}
+
+	/**
+	 *
+	 * @return frame indices into the sheet, indexed by direction - 1
+	 */
+	public int[][] getFrames()
+	{
+		return this.frames;
+	}
+
+	/**
+	 *
+	 * @return the sound or null
+	 */
+	public SoundEffect getSound()
+	{
+		return this.sound;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public float getSoundVolume()
+	{
+		return this.soundVolume;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public boolean isSoundLooping()
+	{
+		return this.loopSound;
+	}
+}
@@ -0,0 +1,197 @@
+package de.lfstudios.game.core.player;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.StreamUtils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * The {@link ActionDefinition}s of a character, written as json and baked
+ * by {@link ActionSetWriter} into a compact binary file next to it. Loaded
+ * once through the asset manager by {@link ActionSetLoader} and shared by
+ * every entity of that character.
+ *
+ * The binary file is big endian:
+ * header (magic, version, json checksum), definition count, definitions.
+ *
+ * @author vwiebe
+ */
+public class ActionSet
+{
+	public static final int MAGIC = 0x44414354;
+	public static final int VERSION = 2;
+
+	private Array<ActionDefinition> definitions = new Array<ActionDefinition>();
+	private ObjectMap<String, ActionDefinition> definitionsByName = new ObjectMap<String, ActionDefinition>();
+
+	private ActionSet()
+	{
+	}
+
+	/**
+	 *
+	 * @param jsonFile
+	 * @return
+	 */
+	public static ActionSet parse(FileHandle jsonFile)
+	{
+		ActionSet actionSet = new ActionSet();
+		JsonValue root = new JsonReader().parse(jsonFile);
+
+		for(JsonValue action = root.getChild("actions"); action != null; action = action.next())
+		{
+			actionSet.add(ActionDefinition.fromJson(action));
+		}
+		return actionSet;
+	}
+
+	/**
+	 *
+	 * @param binaryFile
+	 * @return
+	 */
+	public static ActionSet read(FileHandle binaryFile)
+	{
+		ActionSet actionSet = new ActionSet();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(binaryFile.read()));
+
+		try
+		{
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+			{
+				throw new GdxRuntimeException(binaryFile.path() + " is not an action set of version " + VERSION);
+			}
+
+			// the json checksum is checked by isValid
+			in.readLong();
+
+			int count = in.readUnsignedShort();
+
+			for(int i = 0; i < count; i++)
+			{
+				actionSet.add(ActionDefinition.read(in));
+			}
+		}
+		catch(IOException e)
+		{
+			throw new GdxRuntimeException("could not read " + binaryFile.path(), e);
+		}
+		finally
+		{
+			StreamUtils.closeQuietly(in);
+		}
+		return actionSet;
+	}
+
+	/**
+	 *
+	 * @param binaryFile
+	 * @param jsonFile the json the binary file was baked from, the check is skipped if it is missing
+	 * @return false if the binary file is missing or outdated
+	 */
+	public static boolean isValid(FileHandle binaryFile, FileHandle jsonFile)
+	{
+		if(!binaryFile.exists())
+		{
+			return false;
+		}
+
+		DataInputStream in = new DataInputStream(binaryFile.read());
+
+		try
+		{
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+			{
+				return false;
+			}
+
+			long jsonChecksum = in.readLong();
+
+			return !jsonFile.exists() || checksum(jsonFile) == jsonChecksum;
+		}
+		catch(IOException e)
+		{
+			return false;
+		}
+		finally
+		{
+			StreamUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 *
+	 * @param jsonFile
+	 * @return the CRC32 of the content, a binary file is outdated once the json changes
+	 */
+	static long checksum(FileHandle jsonFile)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(jsonFile.readBytes());
+		return crc.getValue();
+	}
+
+	/**
+	 *
+	 * @param out
+	 * @param jsonChecksum
+	 * @throws IOException
+	 */
+	void write(DataOutputStream out, long jsonChecksum) throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(jsonChecksum);
+		out.writeShort(this.definitions.size);
+
+		for(ActionDefinition definition : this.definitions)
+		{
+			definition.write(out);
+		}
+	}
+
+	private void add(ActionDefinition definition)
+	{
+		if(this.definitionsByName.containsKey(definition.getName()))
+		{
+			throw new GdxRuntimeException("action " + definition.getName() + " is defined twice");
+		}
+
+		this.definitions.add(definition);
+		this.definitionsByName.put(definition.getName(), definition);
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return
+	 */
+	public ActionDefinition get(String name)
+	{
+		ActionDefinition definition = this.definitionsByName.get(name);
+
+		if(definition == null)
+		{
+			throw new GdxRuntimeException("unknown action: " + name);
+		}
+		return definition;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public Array<ActionDefinition> getDefinitions()
+	{
+		return this.definitions;
+	}
+}
@@ -0,0 +1,87 @@
+package de.lfstudios.game.core.player;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Loads an {@link ActionSet} through the asset manager, off the render
+ * thread. The baked binary file next to the json is preferred, without a
+ * valid one the json is parsed instead.
+ *
+ * @author vwiebe
+ */
+public class ActionSetLoader extends AsynchronousAssetLoader<ActionSet, ActionSetLoader.ActionSetParameters>
+{
+	private ActionSet actionSet;
+
+	/**
+	 *
+	 * @param resolver
+	 */
+	public ActionSetLoader(FileHandleResolver resolver)
+	{
+		super(resolver);
+	}
+
+	/**
+	 *
+	 * @param fileName
+	 * @param file
+	 * @param parameter
+	 * @return
+	 */
+	@Override
+	public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, ActionSetParameters parameter)
+	{
+		return null;
+	}
+
+	/**
+	 *
+	 * @param manager
+	 * @param fileName
+	 * @param file
+	 * @param parameter
+	 */
+	@Override
+	public void loadAsync(AssetManager manager, String fileName, FileHandle file, ActionSetParameters parameter)
+	{
+		FileHandle binaryFile = file.sibling(file.nameWithoutExtension() + ".bin");
+
+		if(ActionSet.isValid(binaryFile, file))
+		{
+			this.actionSet = ActionSet.read(binaryFile);
+		}
+		else
+		{
+			Gdx.app.log("ActionSetLoader", binaryFile.path() + " is missing or outdated, run the bakeActions task");
+			this.actionSet = ActionSet.parse(file);
+		}
+	}
+
+	/**
+	 *
+	 * @param manager
+	 * @param fileName
+	 * @param file
+	 * @param parameter
+	 * @return
+	 */
+	@Override
+	public ActionSet loadSync(AssetManager manager, String fileName, FileHandle file, ActionSetParameters parameter)
+	{
+		ActionSet actionSet = this.actionSet;
+		this.actionSet = null;
+		return actionSet;
+	}
+
+	public static class ActionSetParameters extends AssetLoaderParameters<ActionSet>
+	{
+	}
+}
@@ -0,0 +1,60 @@
+package de.lfstudios.game.core.player;
+
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Bakes the json action definitions of a character into the binary file
+ * read by {@link ActionSet#read}. Run by the bakeActions task of the core
+ * module, it only needs a plain JVM.
+ *
+ * @author vwiebe
+ */
+public class ActionSetWriter
+{
+	/**
+	 *
+	 * @param args pairs of json file and output file
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length == 0 || args.length % 2 != 0)
+		{
+			System.out.println("usage: ActionSetWriter <actions.json> <actions.bin> ...");
+			System.exit(1);
+		}
+
+		for(int i = 0; i < args.length; i += 2)
+		{
+			write(new FileHandle(args[i]), new FileHandle(args[i + 1]));
+		}
+	}
+
+	/**
+	 *
+	 * @param jsonFile
+	 * @param binaryFile
+	 * @throws IOException
+	 */
+	public static void write(FileHandle jsonFile, FileHandle binaryFile) throws IOException
+	{
+		ActionSet actionSet = ActionSet.parse(jsonFile);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(binaryFile.write(false)));
+
+		try
+		{
+			actionSet.write(out, ActionSet.checksum(jsonFile));
+		}
+		finally
+		{
+			out.close();
+		}
+
+		System.out.println("baked " + actionSet.getDefinitions().size + " actions into " +
+						   binaryFile.path() + " (" + binaryFile.length() + " bytes, json " + jsonFile.length() + " bytes)");
+	}
+}
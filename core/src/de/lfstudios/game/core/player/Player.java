@@ -1,25 +1,42 @@
 package de.lfstudios.game.core.player;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.Body;
-import com.badlogic.gdx.physics.box2d.BodyDef;
 import com.badlogic.gdx.scenes.scene2d.ui.Touchpad;
-
-import java.util.ArrayList;
+import de.lfstudios.game.core.audio.SoundEffects;
+import de.lfstudios.game.core.entity.EntityController;
+import de.lfstudios.game.core.entity.EntityWorld;
 
 /**
+ * Controls the player's entity with the touchpad and the buttons of the
+ * game screen. Position, body and animation are components of the entity.
+ *
  * @author vwiebe
  */
-public class Player
+public class Player implements EntityController
 {
-	private BodyDef bodyDef;
-	private Body body;
+	public static final String ATLAS = "game/atlas/player.atlas";
+	public static final String ACTIONS = "game/actions/player.json";
+
+	// the body in box2d units, relative to the bottom left of the sprite
+	public static final float BODY_RADIUS = 0.2f;
+	public static final float BODY_OFFSET_X = 0.65f;
+	public static final float BODY_OFFSET_Y = 0.1f;
+	public static final int TEAM = 1;
+
+	private static final float SPRITE_SCALE = 4;
+	private static final float RUN_THRESHOLD = 0.5f;
+
+	private ActionAssetCache assetCache;
+	private SoundEffects soundEffects;
+	private long loopVoice = -1;
+
+	private EntityWorld entities;
+	private int entity;
+	private Touchpad touchpad;
 
-	private TextureRegion currentFrame;
-	private ArrayList<Action> actionList;
 	private Action standAction;
 	private Action walkAction;
 	private Action runAction;
@@ -27,128 +44,76 @@ public class Player
 	private Action blockAction;
 	private Action currentAction;
 	private boolean isBlockReleased;
+	private int direction = Action.DOWN;
 
-	private float stateTime;
-	private float posX;
-	private float posY;
 	private float speed;
 
-	public Player()
+	/**
+	 * Queues everything a player needs, see {@link #Player}. The sounds are
+	 * loaded with {@link SoundEffects#queueAssets}.
+	 *
+	 * @param assetManager
+	 */
+	public static void queueAssets(AssetManager assetManager)
+	{
+		assetManager.load(ATLAS, TextureAtlas.class);
+		assetManager.load(ACTIONS, ActionSet.class);
+	}
+
+	/**
+	 *
+	 * @param assetManager
+	 */
+	public static void unloadAssets(AssetManager assetManager)
+	{
+		assetManager.unload(ATLAS);
+		assetManager.unload(ACTIONS);
+	}
+
+	/**
+	 *
+	 * @param assetCache shared by all players, the assets queued by {@link #queueAssets} must be loaded
+	 * @param actions the definitions of the player's actions, needs stand, walk, run, attack and block
+	 * @param soundEffects
+	 */
+	public Player(ActionAssetCache assetCache, ActionSet actions, SoundEffects soundEffects)
 	{
+		this.assetCache = assetCache;
+		this.soundEffects = soundEffects;
 
-		this.bodyDef = new BodyDef();
-		this.bodyDef.type = BodyDef.BodyType.DynamicBody;
-
-		this.standAction = new Action("game/player_run_light.png",
-									  8,
-									  4,
-									  0.5f,
-									  new int[][]
-										  {
-											  {1,3},
-											  {5,7},
-											  {13,15},
-											  {9,11},
-											  {21,23},
-											  {17,19},
-											  {25,27},
-											  {29,31}
-										  },
-									  true);
-
-		this.walkAction = new Action("game/player_run_light.png",
-									 8,
-									 4,
-									 0.25f,
-									 new int[][]
-										 {
-											 {0,1,2,3},
-											 {4,5,6,7},
-											 {12,13,14,15},
-											 {8,9,10,11},
-											 {20,21,22,23},
-											 {16,17,18,19},
-											 {24,25,26,27},
-											 {28,29,30,31}
-										 },
-									 true,
-									 "sounds/walk.mp3",
-									 0.05f,
-									 true);
-
-		this.runAction = new Action("game/player_run_light.png",
-									8,
-									4,
-									0.15f,
-									new int[][]
-										{
-											{0,1,2,3},
-											{4,5,6,7},
-											{12,13,14,15},
-											{8,9,10,11},
-											{20,21,22,23},
-											{16,17,18,19},
-											{24,25,26,27},
-											{28,29,30,31}
-										},
-									true,
-									"sounds/run.mp3",
-									0.05f,
-									true);
-
-		this.attackAction = new Action("game/player_hit_0.png",
-									   8,
-									   4,
-									   0.075f,
-									   new int[][]
-										   {
-											   {0,1,2},
-											   {4,5,6},
-											   {12,13,14},
-											   {8,9,10},
-											   {20,21,22},
-											   {16,17,18},
-											   {24,25,26},
-											   {28,29,30}
-										   },
-									   false,
-									   "sounds/swing_1.mp3",
-									   0.2f,
-									   false);
-
-		this.blockAction = new Action("game/player_def_0.png",
-									  8,
-									  4,
-									  0.075f,
-									  new int[][]
-										  {
-											  {0,1,2},
-											  {4,5,6},
-											  {12,13,14},
-											  {8,9,10},
-											  {20,21,22},
-											  {16,17,18},
-											  {24,25,26},
-											  {28,29,30}
-										  },
-									  false,
-									  "sounds/block_0.mp3",
-									  0.2f,
-									  false);
-
-		this.actionList = new ArrayList<Action>();
-
-		this.actionList.add(this.standAction);
-		this.actionList.add(this.walkAction);
-		this.actionList.add(this.runAction);
-		this.actionList.add(this.attackAction);
-		this.actionList.add(this.blockAction);
+		this.standAction = new Action(this.assetCache, actions.get("stand"));
+		this.walkAction = new Action(this.assetCache, actions.get("walk"));
+		this.runAction = new Action(this.assetCache, actions.get("run"));
+		this.attackAction = new Action(this.assetCache, actions.get("attack"));
+		this.blockAction = new Action(this.assetCache, actions.get("block"));
 
 		// default
 		this.currentAction = this.standAction;
 		this.speed = 2.0f;
 		this.setBlockReleased(true);
-		this.setStateTime(0.0f);
+	}
+
+	/**
+	 * Takes control of an entity, e.g. one spawned by the map with the
+	 * player's body.
+	 *
+	 * @param entities
+	 * @param entity
+	 * @param touchpad
+	 */
+	public void attach(EntityWorld entities, int entity, Touchpad touchpad)
+	{
+		this.entities = entities;
+		this.entity = entity;
+		this.touchpad = touchpad;
+
+		this.entities.setController(entity, this);
+		this.entities.setTeam(entity, TEAM);
+		this.entities.setDirection(entity, this.direction);
+		this.entities.setAnimations(entity,
+									this.currentAction.getAnimations(),
+									this.currentAction.isAnimationLooping(),
+									SPRITE_SCALE);
 	}
 
 	/**
@@ -158,62 +123,15 @@ public class Player
 	 */
 	private void setDirection(float x, float y)
 	{
-		Vector2 v = new Vector2(x, y);
-		float angle = v.angle(new Vector2(0, 1));
-
-		if( angle == 0)
-		{
-			this.setCurrentAction(this.standAction); // standing
-		}
-		else if(angle >=  157.5 || angle <= -157.5)
+		if(x == 0 && y == 0)
 		{
-			this.updateActionDirections(1); // facing down
+			this.setCurrentAction(this.standAction);
+			return;
 		}
-		else if(angle > 112.5 && angle < 157.5)
-		{
-			this.updateActionDirections(6); // facing down right
-		}
-		else if(angle > -157.5  && angle < -112.5)
-		{
-			this.updateActionDirections(5); // facing down left
-		}
-		else if(angle > 67.5 && angle < 112.5)
-		{
-			this.updateActionDirections(4); // facing right
-		}
-		else if(angle < -67.5 && angle > -112.5)
-		{
-			this.updateActionDirections(3); // facing left
-		}
-		else if(angle < -22.5 && angle > -67.5)
-		{
-			this.updateActionDirections(7); // facing up left
-		}
-		else if(angle > 22.5 && angle < 67.5)
-		{
-			this.updateActionDirections(8); // facing up right
-		}
-		else if(angle < 22.5 || angle > -22.5)
-		{
-			this.updateActionDirections(2); // facing up
-		}
-
-		if(v.len() > 0.5f && angle != 0)
-		{
-			this.setCurrentAction(this.runAction);
-		}
-		else if(v.len() <= 0.5f && angle != 0)
-		{
-			this.setCurrentAction(this.walkAction);
-		}
-	}
 
-	private void updateActionDirections(int direction)
-	{
-		for(Action action : this.actionList)
-		{
-			action.setDirection(direction);
-		}
+		this.direction = Action.toDirection(x, y);
+		this.setCurrentAction(x * x + y * y > RUN_THRESHOLD * RUN_THRESHOLD ? this.runAction : this.walkAction);
+		this.entities.setDirection(this.entity, this.direction);
 	}
 
 	public void attack() { this.setCurrentAction(this.attackAction); }
@@ -230,17 +148,20 @@ public class Player
 
 	/**
 	 *
-	 * @param touchpad
+	 * @param entities
+	 * @param entity
+	 * @param delta
 	 */
-	public void update(Touchpad touchpad)
+	@Override
+	public void update(EntityWorld entities, int entity, float delta)
 	{
 		if(this.getCurrentAction().equals(this.blockAction))
 		{
 			if(!this.isBlockReleased())
 			{
-				this.getBody().setLinearVelocity(0, 0);
+				entities.setVelocity(entity, 0, 0);
 			}
-			else if(this.getCurrentAction().getCurrentAnimation().isAnimationFinished(this.getStateTime()))
+			else if(entities.isAnimationFinished(entity))
 			{
 				this.setCurrentAction(this.standAction);
 			}
@@ -251,9 +172,7 @@ public class Player
 			{
 				this.speed = 1.0f;
 
-				if(this.getCurrentAction()
-					   .getCurrentAnimation()
-					   .isAnimationFinished(this.getStateTime()))
+				if(entities.isAnimationFinished(entity))
 				{
 					this.setCurrentAction(standAction);
 				}
@@ -262,47 +181,26 @@ public class Player
 			{
 				this.speed = 2.0f;
 
-				this.setDirection(touchpad.getKnobPercentX(),
-								  touchpad.getKnobPercentY());
+				this.setDirection(this.touchpad.getKnobPercentX(),
+								  this.touchpad.getKnobPercentY());
 			}
 
 			if(Gdx.input.isTouched())
 			{
-				this.getBody().setLinearVelocity(touchpad.getKnobPercentX() * this.speed,
-												 touchpad.getKnobPercentY() * this.speed);
+				entities.setVelocity(entity,
+									 this.touchpad.getKnobPercentX() * this.speed,
+									 this.touchpad.getKnobPercentY() * this.speed);
 			}
 			else
 			{
-				this.getBody().setLinearVelocity(0, 0);
+				entities.setVelocity(entity, 0, 0);
 			}
 		}
-
-		// prepare current player frame
-		this.setStateTime(this.getStateTime() + Gdx.graphics.getDeltaTime());
-		this.setCurrentFrame(this.getCurrentAction()
-								 .getCurrentAnimation()
-								 .getKeyFrame(this.getStateTime(),
-											  this.getCurrentAction()
-												  .isAnimationLooping()));
-	}
-
-	/**
-	 *
-	 * @param spriteBatch
-	 */
-	public void draw(SpriteBatch spriteBatch)
-	{
-		spriteBatch.begin();
-		spriteBatch.draw(this.getCurrentFrame(),
-							  this.getPosX(),
-							  this.getPosY(),
-							  this.getCurrentFrame().getRegionWidth() * 4,
-							  this.getCurrentFrame().getRegionHeight() * 4);
-		spriteBatch.end();
 	}
 
 	public void dispose()
 	{
+		this.soundEffects.stop(this.loopVoice);
 		this.standAction.dispose();
 		this.walkAction.dispose();
 		this.runAction.dispose();
@@ -310,33 +208,13 @@ public class Player
 		this.blockAction.dispose();
 	}
 
-	/**
-	 *
-	 * @param x
-	 * @param y
-	 */
-	public void setPosition(float x, float y)
-	{
-		this.setPosX(x);
-		this.setPosY(y);
-	}
-
 	/**
 	 *
 	 * @return
 	 */
-	public float getStateTime()
-	{
-		return this.stateTime;
-	}
-
-	/**
-	 *
-	 * @param stateTime
-	 */
-	public void setStateTime(float stateTime)
+	public int getEntity()
 	{
-		this.stateTime = stateTime;
+		return this.entity;
 	}
 
 	/**
@@ -345,16 +223,7 @@ public class Player
 	 */
 	public TextureRegion getCurrentFrame()
 	{
-		return this.currentFrame;
-	}
-
-	/**
-	 *
-	 * @param currentFrame
-	 */
-	public void setCurrentFrame(TextureRegion currentFrame)
-	{
-		this.currentFrame = currentFrame;
+		return this.entities.getFrame(this.entity);
 	}
 
 	/**
@@ -363,16 +232,7 @@ public class Player
 	 */
 	public float getPosX()
 	{
-		return this.posX;
-	}
-
-	/**
-	 *
-	 * @param posX
-	 */
-	private void setPosX(float posX)
-	{
-		this.posX = posX;
+		return this.entities.getX(this.entity);
 	}
 
 	/**
@@ -381,16 +241,7 @@ public class Player
 	 */
 	public float getPosY()
 	{
-		return this.posY;
-	}
-
-	/**
-	 *
-	 * @param posY
-	 */
-	private void setPosY(float posY)
-	{
-		this.posY = posY;
+		return this.entities.getY(this.entity);
 	}
 
 	/**
@@ -402,33 +253,6 @@ public class Player
 		return this.currentAction;
 	}
 
-	/**
-	 *
-	 * @return
-	 */
-	public BodyDef getBodyDef()
-	{
-		return this.bodyDef;
-	}
-
-	/**
-	 *
-	 * @return
-	 */
-	public Body getBody()
-	{
-		return this.body;
-	}
-
-	/**
-	 *
-	 * @param body
-	 */
-	public void setBody(Body body)
-	{
-		this.body = body;
-	}
-
 	/**
 	 *
 	 * @param currentAction
@@ -437,18 +261,27 @@ public class Player
 	{
 		if(getCurrentAction().equals(currentAction)) return;
 
-//		if(this.getCurrentAction().hasSound() && this.getCurrentAction().getSound().isPlaying())
-//		{
-//			this.getCurrentAction().getSound().stop();
-//		}
+		// one shots like the swing play out, only the footsteps are cut
+		this.soundEffects.stop(this.loopVoice);
+		this.loopVoice = -1;
 
-		this.setStateTime(0.0f);
 		this.currentAction = currentAction;
+		this.entities.setAnimations(this.entity,
+									currentAction.getAnimations(),
+									currentAction.isAnimationLooping(),
+									SPRITE_SCALE);
 
-//		if(this.getCurrentAction().hasSound() && !this.getCurrentAction().getSound().isPlaying())
-//		{
-//			this.getCurrentAction().getSound().play();
-//		}
+		if(currentAction.hasSound())
+		{
+			if(currentAction.isSoundLooping())
+			{
+				this.loopVoice = this.soundEffects.loop(currentAction.getSound(), currentAction.getSoundVolume());
+			}
+			else
+			{
+				this.soundEffects.play(currentAction.getSound(), currentAction.getSoundVolume());
+			}
+		}
 	}
 
 	/**
@@ -0,0 +1,171 @@
+package de.lfstudios.game.core.render;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.ImageResolver;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Resolves image paths against packed texture atlases (see the packTextures
+ * task of the core module). A region is looked up by the file name of the
+ * image without extension, images that were not packed are loaded as
+ * separate textures.
+ *
+ * Atlases and textures that are loaded by an AssetManager are taken from
+ * it and stay owned by it, everything else is loaded and disposed here.
+ *
+ * @author vwiebe
+ */
+public class AtlasImageResolver implements ImageResolver, Disposable
+{
+	private AssetManager assetManager;
+	private Array<TextureAtlas> atlases = new Array<TextureAtlas>();
+	private Array<TextureAtlas> ownedAtlases = new Array<TextureAtlas>();
+	private ObjectMap<String, Texture> textures = new ObjectMap<String, Texture>();
+	private ObjectMap<String, TextureRegion> images = new ObjectMap<String, TextureRegion>();
+	private int managedTextureCount;
+
+	/**
+	 * Atlas files that do not exist are skipped.
+	 *
+	 * @param atlasPaths
+	 */
+	public AtlasImageResolver(String... atlasPaths)
+	{
+		this(null, atlasPaths);
+	}
+
+	/**
+	 *
+	 * @param assetManager may be null
+	 * @param atlasPaths
+	 */
+	public AtlasImageResolver(AssetManager assetManager, String... atlasPaths)
+	{
+		this.assetManager = assetManager;
+
+		for(String atlasPath : atlasPaths)
+		{
+			FileHandle atlasFile = Gdx.files.internal(atlasPath);
+
+			if(this.isLoaded(atlasPath, TextureAtlas.class))
+			{
+				this.atlases.add(assetManager.get(atlasPath, TextureAtlas.class));
+			}
+			else if(atlasFile.exists())
+			{
+				TextureAtlas atlas = new TextureAtlas(atlasFile);
+				this.atlases.add(atlas);
+				this.ownedAtlases.add(atlas);
+			}
+			else
+			{
+				Gdx.app.log("AtlasImageResolver", atlasPath + " does not exist, run the packTextures task");
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @return
+	 */
+	@Override
+	public TextureRegion getImage(String path)
+	{
+		TextureRegion image = this.images.get(path);
+
+		if(image == null)
+		{
+			image = this.findRegion(new FileHandle(path).nameWithoutExtension());
+
+			if(image == null && this.isLoaded(path, Texture.class))
+			{
+				image = new TextureRegion(this.assetManager.get(path, Texture.class));
+				this.managedTextureCount++;
+			}
+
+			if(image == null)
+			{
+				Texture texture = new Texture(Gdx.files.internal(path));
+				texture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+				this.textures.put(path, texture);
+				image = new TextureRegion(texture);
+			}
+			this.images.put(path, image);
+		}
+		return image;
+	}
+
+	private boolean isLoaded(String path, Class<?> type)
+	{
+		return this.assetManager != null && this.assetManager.isLoaded(path, type);
+	}
+
+	private TextureRegion findRegion(String name)
+	{
+		for(TextureAtlas atlas : this.atlases)
+		{
+			TextureRegion region = atlas.findRegion(name);
+
+			if(region != null)
+			{
+				return region;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @return the number of different images resolved so far
+	 */
+	public int getImageCount()
+	{
+		return this.images.size;
+	}
+
+	/**
+	 *
+	 * @return the number of textures backing the resolved images
+	 */
+	public int getTextureCount()
+	{
+		int count = this.textures.size + this.managedTextureCount;
+
+		for(TextureAtlas atlas : this.atlases)
+		{
+			count += atlas.getTextures().size;
+		}
+		return count;
+	}
+
+	/**
+	 * Only disposes the atlases and textures that were not taken from the
+	 * asset manager.
+	 */
+	@Override
+	public void dispose()
+	{
+		for(TextureAtlas atlas : this.ownedAtlases)
+		{
+			atlas.dispose();
+		}
+
+		for(Texture texture : this.textures.values())
+		{
+			texture.dispose();
+		}
+
+		this.atlases.clear();
+		this.ownedAtlases.clear();
+		this.textures.clear();
+		this.images.clear();
+	}
+}
@@ -0,0 +1,45 @@
+package de.lfstudios.game.core.render;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.TextureAtlasLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Loads texture atlases like TextureAtlasLoader and hands the pages to the
+ * {@link TextureDecoder} as soon as the pack file is read, so they are
+ * decoded while the asset manager is still busy with other assets.
+ *
+ * @author vwiebe
+ */
+public class PooledTextureAtlasLoader extends TextureAtlasLoader
+{
+	private TextureDecoder decoder;
+
+	/**
+	 *
+	 * @param resolver
+	 * @param decoder
+	 */
+	public PooledTextureAtlasLoader(FileHandleResolver resolver, TextureDecoder decoder)
+	{
+		super(resolver);
+		this.decoder = decoder;
+	}
+
+	/**
+	 *
+	 * @param fileName
+	 * @param atlasFile
+	 * @param parameter
+	 * @return
+	 */
+	@Override
+	public Array<AssetDescriptor> getDependencies(String fileName, FileHandle atlasFile, TextureAtlasParameter parameter)
+	{
+		Array<AssetDescriptor> dependencies = super.getDependencies(fileName, atlasFile, parameter);
+		this.decoder.prefetch(dependencies);
+		return dependencies;
+	}
+}
@@ -0,0 +1,106 @@
+package de.lfstudios.game.core.render;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Loads textures like TextureLoader, but takes the image from the
+ * {@link TextureDecoder} if it was prefetched, decoded by one of its
+ * workers. Only the upload runs on the render thread.
+ *
+ * @author vwiebe
+ */
+public class PooledTextureLoader extends AsynchronousAssetLoader<Texture, TextureLoader.TextureParameter>
+{
+	private TextureDecoder decoder;
+	private TextureData data;
+	private Texture texture;
+
+	/**
+	 *
+	 * @param resolver
+	 * @param decoder
+	 */
+	public PooledTextureLoader(FileHandleResolver resolver, TextureDecoder decoder)
+	{
+		super(resolver);
+		this.decoder = decoder;
+	}
+
+	/**
+	 *
+	 * @param fileName
+	 * @param file
+	 * @param parameter
+	 * @return
+	 */
+	@Override
+	public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, TextureLoader.TextureParameter parameter)
+	{
+		return null;
+	}
+
+	/**
+	 *
+	 * @param manager
+	 * @param fileName
+	 * @param file
+	 * @param parameter
+	 */
+	@Override
+	public void loadAsync(AssetManager manager, String fileName, FileHandle file, TextureLoader.TextureParameter parameter)
+	{
+		if(parameter != null && parameter.textureData != null)
+		{
+			this.data = parameter.textureData;
+			if(!this.data.isPrepared()) this.data.prepare();
+		}
+		else
+		{
+			this.data = this.decoder.obtain(file,
+											parameter == null ? null : parameter.format,
+											parameter != null && parameter.genMipMaps);
+		}
+		this.texture = parameter == null ? null : parameter.texture;
+	}
+
+	/**
+	 *
+	 * @param manager
+	 * @param fileName
+	 * @param file
+	 * @param parameter
+	 * @return
+	 */
+	@Override
+	public Texture loadSync(AssetManager manager, String fileName, FileHandle file, TextureLoader.TextureParameter parameter)
+	{
+		Texture texture = this.texture;
+
+		if(texture != null)
+		{
+			texture.load(this.data);
+		}
+		else
+		{
+			texture = new Texture(this.data);
+		}
+
+		if(parameter != null)
+		{
+			texture.setFilter(parameter.minFilter, parameter.magFilter);
+			texture.setWrap(parameter.wrapU, parameter.wrapV);
+		}
+
+		this.data = null;
+		this.texture = null;
+		return texture;
+	}
+}
@@ -0,0 +1,87 @@
+package de.lfstudios.game.core.render;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+
+/**
+ * Counts sprites, batch passes and the GL draw calls (flushes) a
+ * {@link SpriteBatch} issued during the current frame. Texture binds are
+ * only counted while the {@link GLProfiler} is enabled.
+ *
+ * @author vwiebe
+ */
+public class RenderStatistics
+{
+	private int sprites;
+	private int batchPasses;
+	private int renderCalls;
+	private int textureBindings;
+	private int profilerBindings;
+
+	/**
+	 * Resets all counters, called once at the start of a frame.
+	 */
+	public void beginFrame()
+	{
+		this.sprites = 0;
+		this.batchPasses = 0;
+		this.renderCalls = 0;
+		this.textureBindings = 0;
+		this.profilerBindings = GLProfiler.textureBindings;
+	}
+
+	public void countSprite()
+	{
+		this.sprites++;
+	}
+
+	/**
+	 * Collects the counters of a batch, must be called after spriteBatch.end().
+	 *
+	 * @param spriteBatch
+	 */
+	public void countPass(SpriteBatch spriteBatch)
+	{
+		this.batchPasses++;
+		this.renderCalls += spriteBatch.renderCalls;
+		this.textureBindings += GLProfiler.textureBindings - this.profilerBindings;
+		this.profilerBindings = GLProfiler.textureBindings;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getSprites()
+	{
+		return this.sprites;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getBatchPasses()
+	{
+		return this.batchPasses;
+	}
+
+	/**
+	 * Number of flushes that actually reached the GPU, one GL draw call each.
+	 *
+	 * @return
+	 */
+	public int getRenderCalls()
+	{
+		return this.renderCalls;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getTextureBindings()
+	{
+		return this.textureBindings;
+	}
+}
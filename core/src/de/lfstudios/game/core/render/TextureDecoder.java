@@ -0,0 +1,244 @@
+package de.lfstudios.game.core.render;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.TextureLoader;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+
+/**
+ * Decodes images into pixmaps on a pool of worker threads, one per core.
+ * The asset manager loads one asset after the other on a single thread, so
+ * the loaders hand over the textures they depend on as soon as they know
+ * them and every image is decoded in parallel while the manager works
+ * through its queue. {@link PooledTextureLoader} then only waits for the
+ * decoded image and uploads it on the render thread.
+ *
+ * The workers decode the images in the format of their files, a
+ * conversion to another format draws with the blending of Pixmap, which is
+ * global, so it is left to the single thread of the asset manager.
+ *
+ * @author vwiebe
+ */
+public class TextureDecoder implements Disposable
+{
+	private AssetManager assetManager;
+	private FileHandleResolver resolver;
+	private AsyncExecutor executor;
+	// by path, until the texture loader takes them
+	private ObjectMap<String, Decode> decodes = new ObjectMap<String, Decode>();
+
+	private int prefetchCount;
+	private int hitCount;
+
+	/**
+	 *
+	 * @param assetManager textures it has loaded already are not decoded
+	 * @param resolver of the asset manager
+	 */
+	public TextureDecoder(AssetManager assetManager, FileHandleResolver resolver)
+	{
+		this.assetManager = assetManager;
+		this.resolver = resolver;
+		this.executor = new AsyncExecutor(Math.max(1, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Sets the texture and atlas loaders of an asset manager to ones that
+	 * decode on the workers of a new decoder.
+	 *
+	 * @param assetManager
+	 * @param resolver
+	 * @return the decoder, to be disposed with the asset manager
+	 */
+	public static TextureDecoder register(AssetManager assetManager, FileHandleResolver resolver)
+	{
+		TextureDecoder decoder = new TextureDecoder(assetManager, resolver);
+		assetManager.setLoader(Texture.class, new PooledTextureLoader(resolver, decoder));
+		assetManager.setLoader(TextureAtlas.class, new PooledTextureAtlasLoader(resolver, decoder));
+		return decoder;
+	}
+
+	/**
+	 * Starts decoding the textures among the dependencies of an asset.
+	 *
+	 * @param dependencies
+	 */
+	public void prefetch(Array<AssetDescriptor> dependencies)
+	{
+		for(AssetDescriptor dependency : dependencies)
+		{
+			if(dependency.type != Texture.class || this.assetManager.isLoaded(dependency.fileName)) continue;
+
+			TextureLoader.TextureParameter parameter = (TextureLoader.TextureParameter) dependency.params;
+
+			// the loader takes care of textures with given data
+			if(parameter != null && parameter.textureData != null) continue;
+
+			this.prefetch(dependency.file != null ? dependency.file : this.resolver.resolve(dependency.fileName),
+						  parameter != null && parameter.genMipMaps);
+		}
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param genMipMaps
+	 */
+	public synchronized void prefetch(final FileHandle file, final boolean genMipMaps)
+	{
+		if(this.decodes.containsKey(file.path())) return;
+
+		Decode decode = new Decode(genMipMaps);
+		decode.result = this.executor.submit(new AsyncTask<TextureData>()
+		{
+			@Override
+			public TextureData call() throws Exception
+			{
+				return TextureDecoder.decode(file, null, genMipMaps);
+			}
+		});
+
+		this.decodes.put(file.path(), decode);
+		this.prefetchCount++;
+	}
+
+	/**
+	 * Waits for a prefetched image or decodes it on the calling thread.
+	 *
+	 * @param file
+	 * @param format null for the format of the file
+	 * @param genMipMaps
+	 * @return prepared texture data, the pixmap is ready to be uploaded
+	 */
+	public TextureData obtain(FileHandle file, Pixmap.Format format, boolean genMipMaps)
+	{
+		Decode decode;
+
+		synchronized(this)
+		{
+			decode = this.decodes.remove(file.path());
+		}
+
+		if(decode != null)
+		{
+			// rethrows what went wrong on the worker
+			TextureData data = decode.result.get();
+
+			if(decode.genMipMaps == genMipMaps)
+			{
+				synchronized(this)
+				{
+					this.hitCount++;
+				}
+				return convert(data, format, genMipMaps);
+			}
+
+			// decoded with other parameters
+			release(data);
+		}
+		return decode(file, format, genMipMaps);
+	}
+
+	/**
+	 * Same as FileTextureData.prepare does for a format other than the one
+	 * of the file.
+	 *
+	 * @param data
+	 * @param format null to keep the format
+	 * @param genMipMaps
+	 * @return
+	 */
+	private static TextureData convert(TextureData data, Pixmap.Format format, boolean genMipMaps)
+	{
+		if(format == null || data.getFormat() == format || data.getType() != TextureData.TextureDataType.Pixmap)
+		{
+			return data;
+		}
+
+		Pixmap pixmap = data.consumePixmap();
+		Pixmap converted = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), format);
+		Pixmap.setBlending(Pixmap.Blending.None);
+		converted.drawPixmap(pixmap, 0, 0, 0, 0, pixmap.getWidth(), pixmap.getHeight());
+		Pixmap.setBlending(Pixmap.Blending.SourceOver);
+		pixmap.dispose();
+
+		return new PixmapTextureData(converted, format, genMipMaps, true);
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param format
+	 * @param genMipMaps
+	 * @return
+	 */
+	private static TextureData decode(FileHandle file, Pixmap.Format format, boolean genMipMaps)
+	{
+		TextureData data = TextureData.Factory.loadFromFile(file, format, genMipMaps);
+
+		if(!data.isPrepared()) data.prepare();
+
+		return data;
+	}
+
+	/**
+	 * Frees the pixmap of prepared data that is not uploaded.
+	 *
+	 * @param data
+	 */
+	private static void release(TextureData data)
+	{
+		if(data.getType() == TextureData.TextureDataType.Pixmap && data.disposePixmap())
+		{
+			data.consumePixmap().dispose();
+		}
+	}
+
+	/**
+	 *
+	 * @return a summary for the log, how many of the prefetched images the loader took
+	 */
+	public synchronized String getReport()
+	{
+		return this.hitCount + " of " + this.prefetchCount + " prefetched textures used on " +
+			   Runtime.getRuntime().availableProcessors() + " decoder threads";
+	}
+
+	/**
+	 * Waits for the running decodes and frees what no loader took.
+	 */
+	@Override
+	public synchronized void dispose()
+	{
+		this.executor.dispose();
+
+		for(Decode decode : this.decodes.values())
+		{
+			release(decode.result.get());
+		}
+		this.decodes.clear();
+	}
+
+	private static class Decode
+	{
+		private final boolean genMipMaps;
+		private AsyncResult<TextureData> result;
+
+		private Decode(boolean genMipMaps)
+		{
+			this.genMipMaps = genMipMaps;
+		}
+	}
+}
@@ -3,14 +3,12 @@ package de.lfstudios.game.view;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.audio.Music;
 import com.badlogic.gdx.graphics.GL30;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.Shape;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.InputListener;
 import com.badlogic.gdx.scenes.scene2d.Stage;
@@ -21,7 +19,16 @@ import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
 import com.badlogic.gdx.utils.viewport.ExtendViewport;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import de.lfstudios.game.Despair;
+import de.lfstudios.game.core.ai.ChaseBehaviour;
+import de.lfstudios.game.core.audio.SoundEffect;
+import de.lfstudios.game.core.debug.DebugOverlay;
+import de.lfstudios.game.core.debug.FrameProfiler;
 import de.lfstudios.game.core.map.Map;
+import de.lfstudios.game.core.map.MapCacheLoader;
+import de.lfstudios.game.core.map.WorldPhase;
+import de.lfstudios.game.core.player.Action;
+import de.lfstudios.game.core.player.ActionAssetCache;
+import de.lfstudios.game.core.player.ActionSet;
 import de.lfstudios.game.core.player.Player;
 
 public class GameScreen implements Screen
@@ -30,10 +37,63 @@ public class GameScreen implements Screen
 	private static final float UI_VIEW_BORDER = UI_HEIGHT / 40;
 	private static final float UI_CONTROL_AREA_SIZE = (UI_HEIGHT / 8) * 3;
 	private static final float VIEW_HEIGHT = 200;
+
+	// draw the ground and the background objects from baked chunk textures
+	private static final boolean CHUNK_BAKING = true;
+	// stream the map region by region from the files of the bakeWorld task,
+	// see getMapFile
+	private static final boolean WORLD_STREAMING = true;
+	// where the player starts, in map pixels
+	private static final float START_X = 777;
+	private static final float START_Y = 3820;
+
+	// indexed by WorldPhase, both are loaded so switching does not stall
+	private static final String[] BACKGROUND_MUSIC = {"sounds/ingame_light.mp3", "sounds/ingame.mp3"};
+	private static final int PHASE_KEY = Input.Keys.TAB;
+	private static final String KNOB_TEXTURE = "game/knob.png";
+	private static final String ATTACK_TEXTURE = "game/button_atk.png";
+	private static final String ATTACK_ACTIVE_TEXTURE = "game/button_atk_a.png";
+	private static final String BLOCK_TEXTURE = "game/button_def.png";
+	private static final String BLOCK_ACTIVE_TEXTURE = "game/button_def_a.png";
+	private static final String[] TEXTURES = {KNOB_TEXTURE,
+											  ATTACK_TEXTURE,
+											  ATTACK_ACTIVE_TEXTURE,
+											  BLOCK_TEXTURE,
+											  BLOCK_ACTIVE_TEXTURE};
+
+	private static final int PROFILE_CLEAR = 0;
+	private static final int PROFILE_TILES = 1;
+	private static final int PROFILE_ENTITIES = 2;
+	private static final int PROFILE_PHYSICS = 3;
+	private static final int PROFILE_OBJECTS = 4;
+	private static final int PROFILE_DEBUG = 5;
+	private static final int PROFILE_CAMERA = 6;
+	private static final int PROFILE_STAGE = 7;
+	private static final int PROFILE_UI = 8;
+	private static final String[] PROFILE_SECTIONS = {"clear",
+													  "tiles",
+													  "entities",
+													  "physics",
+													  "objects",
+													  "debug",
+													  "camera",
+													  "stage",
+													  "ui"};
+
+	private static final String MAP_ATLAS = "game/atlas/map.atlas";
+	private static final String PIG_ACTIONS = "game/actions/pig.json";
+	private static final int PIG_COUNT = 6;
+	private static final int PIG_TEAM = 2;
+	private static final float PIG_SCALE = 4;
+	private static final float PIG_SPEED = 1.2f;
+	private static final float PIG_BODY_RADIUS = 0.15f;
+	private static final float PIG_BODY_OFFSET_X = 0.6f;
+	private static final float PIG_BODY_OFFSET_Y = 0.1f;
 	private float aspectRatio;
 
 	private Stage uiStage;
 	private Despair game;
+	private AssetManager assetManager;
 	private OrthographicCamera camera;
 	private SpriteBatch spriteBatch;
 	private Skin touchpadSkin;
@@ -42,9 +102,14 @@ public class GameScreen implements Screen
 	private Touchpad touchpad;
 	private Stage stage;
 	private Music backgroundMusic;
-	private Music backButtonSound;
+	private boolean phaseKeyDown;
 	private Map map;
 	private Player player;
+	private ActionAssetCache actionAssetCache;
+	private Action pigStandAction;
+	private Action pigWalkAction;
+	private DebugOverlay debugOverlay;
+	private FrameProfiler frameProfiler;
 
 	private ImageButton attackButton;
 	private Skin attackButtonSkin;
@@ -57,11 +122,77 @@ public class GameScreen implements Screen
 	private Drawable blockButtonDrawable;
 	private Drawable blockButtonActiveDrawable;
 
-//	private ShapeRenderer sr = new ShapeRenderer();
+	/**
+	 * Queues everything the game screen needs, it is created once the
+	 * asset manager has finished loading.
+	 *
+	 * @param assetManager
+	 */
+	public static void queueAssets(AssetManager assetManager)
+	{
+		for(String music : BACKGROUND_MUSIC)
+		{
+			assetManager.load(music, Music.class);
+		}
+
+		for(String texture : TEXTURES)
+		{
+			assetManager.load(texture, Texture.class);
+		}
+
+		assetManager.load(getMapFile(), Map.class);
+		Player.queueAssets(assetManager);
+
+		if(Despair.SPAWN_TEST_ENEMIES)
+		{
+			assetManager.load(PIG_ACTIONS, ActionSet.class);
+		}
+	}
+
+	/**
+	 * The streamed world once the bakeWorld task baked it from the current
+	 * map, the whole map otherwise, e.g. right after editing the tmx.
+	 *
+	 * @return
+	 */
+	private static String getMapFile()
+	{
+		if(WORLD_STREAMING && MapCacheLoader.isValid(Gdx.files.internal(Map.WORLD_FILE), Gdx.files.internal(Map.MAP_FILE)))
+		{
+			return Map.WORLD_FILE;
+		}
+		return Map.MAP_FILE;
+	}
+
+	/**
+	 *
+	 * @param assetManager
+	 */
+	private static void unloadAssets(AssetManager assetManager)
+	{
+		for(String music : BACKGROUND_MUSIC)
+		{
+			assetManager.unload(music);
+		}
+
+		for(String texture : TEXTURES)
+		{
+			assetManager.unload(texture);
+		}
+
+		assetManager.unload(getMapFile());
+		Player.unloadAssets(assetManager);
+
+		if(Despair.SPAWN_TEST_ENEMIES)
+		{
+			assetManager.unload(PIG_ACTIONS);
+		}
+	}
 
 	public GameScreen(Despair game)
 	{
 		this.game = game;
+		this.assetManager = game.getAssetManager();
 
 		this.aspectRatio = (float) Gdx.graphics.getWidth() / (float) Gdx.graphics.getHeight();
 
@@ -69,8 +200,7 @@ public class GameScreen implements Screen
 		this.camera.position.set(0, 0, 0);
 		this.camera.update();
 
-		this.backgroundMusic = Gdx.audio.newMusic(Gdx.files.internal("sounds/ingame_light.mp3"));
-		this.backButtonSound = Gdx.audio.newMusic(Gdx.files.internal("sounds/gong.mp3"));
+		this.backgroundMusic = this.assetManager.get(BACKGROUND_MUSIC[WorldPhase.LIGHT], Music.class);
 		this.backgroundMusic.play();
 
 		this.spriteBatch = new SpriteBatch();
@@ -79,14 +209,19 @@ public class GameScreen implements Screen
 		this.stage = new Stage(new ScreenViewport(this.camera), this.spriteBatch);
 		this.uiStage = new Stage(new ExtendViewport(UI_HEIGHT * aspectRatio , UI_HEIGHT));
 
-		this.map = new Map();
-		this.player = new Player();
-		this.player.setPosition(777 * this.map.getMapScale(), 3820 * this.map.getMapScale());
-
-		this.map.add(this.player);
+		this.map = this.assetManager.get(getMapFile(), Map.class);
+		this.map.setChunkBaking(CHUNK_BAKING);
+		this.map.finishLoading(START_X * this.map.getMapScale(), START_Y * this.map.getMapScale());
+		this.actionAssetCache = new ActionAssetCache(this.assetManager, Player.ATLAS, MAP_ATLAS);
+		this.player = new Player(this.actionAssetCache,
+								 this.assetManager.get(Player.ACTIONS, ActionSet.class),
+								 game.getSoundEffects());
+		Gdx.app.log("GameScreen", this.actionAssetCache.getReport());
+		this.debugOverlay = new DebugOverlay(Despair.DEBUG);
+		this.frameProfiler = new FrameProfiler(PROFILE_SECTIONS, Despair.DEBUG);
 
 		this.touchpadSkin = new Skin();
-		this.touchpadSkin.add("knob", new Texture(Gdx.files.internal("game/knob.png")));
+		this.touchpadSkin.add("knob", this.assetManager.get(KNOB_TEXTURE, Texture.class));
 		this.touchpadStyle = new Touchpad.TouchpadStyle();
 		this.touchKnob = this.touchpadSkin.getDrawable("knob");
 		this.touchpadStyle.knob = this.touchKnob;
@@ -97,8 +232,8 @@ public class GameScreen implements Screen
 				UI_CONTROL_AREA_SIZE);
 
 		this.attackButtonSkin = new Skin();
-		this.attackButtonSkin.add("inactive", new Texture(Gdx.files.internal("game/button_atk.png")));
-		this.attackButtonSkin.add("active", new Texture(Gdx.files.internal("game/button_atk_a.png")));
+		this.attackButtonSkin.add("inactive", this.assetManager.get(ATTACK_TEXTURE, Texture.class));
+		this.attackButtonSkin.add("active", this.assetManager.get(ATTACK_ACTIVE_TEXTURE, Texture.class));
 		this.attackButtonStyle = new ImageButton.ImageButtonStyle();
 		this.attackButtonDrawable = this.attackButtonSkin.getDrawable("inactive");
 		this.attackButtonActiveDrawable = this.attackButtonSkin.getDrawable("active");
@@ -125,8 +260,8 @@ public class GameScreen implements Screen
 		});
 
 		this.blockButtonSkin = new Skin();
-		this.blockButtonSkin.add("inactive", new Texture(Gdx.files.internal("game/button_def.png")));
-		this.blockButtonSkin.add("active", new Texture(Gdx.files.internal("game/button_def_a.png")));
+		this.blockButtonSkin.add("inactive", this.assetManager.get(BLOCK_TEXTURE, Texture.class));
+		this.blockButtonSkin.add("active", this.assetManager.get(BLOCK_ACTIVE_TEXTURE, Texture.class));
 		this.blockButtonStyle = new ImageButton.ImageButtonStyle();
 		this.blockButtonDrawable = this.blockButtonSkin.getDrawable("inactive");
 		this.blockButtonActiveDrawable = this.blockButtonSkin.getDrawable("active");
@@ -152,63 +287,114 @@ public class GameScreen implements Screen
 			}
 		});
 		
+		this.player.attach(this.map.getEntities(),
+						   this.map.spawn(START_X * this.map.getMapScale(),
+										  START_Y * this.map.getMapScale() + 300,
+										  Player.BODY_RADIUS,
+										  Player.BODY_OFFSET_X,
+										  Player.BODY_OFFSET_Y),
+						   this.touchpad);
+		this.map.setFocus(this.player.getEntity());
+
+		if(Despair.SPAWN_TEST_ENEMIES)
+		{
+			this.spawnPigs();
+		}
+
 		this.uiStage.addActor(this.touchpad);
 		this.uiStage.addActor(this.attackButton);
 		this.uiStage.addActor(this.blockButton);
 		Gdx.input.setInputProcessor(this.uiStage);
 	}
 
+	/**
+	 * Puts a few pigs into the pen next to the start, they go for the
+	 * player once the player comes close. See
+	 * {@link Despair#SPAWN_TEST_ENEMIES}.
+	 */
+	private void spawnPigs()
+	{
+		ActionSet pigActions = this.assetManager.get(PIG_ACTIONS, ActionSet.class);
+		this.pigStandAction = new Action(this.actionAssetCache, pigActions.get("stand"));
+		this.pigWalkAction = new Action(this.actionAssetCache, pigActions.get("walk"));
+
+		for(int i = 0; i < PIG_COUNT; i++)
+		{
+			int pig = this.map.spawn((840 + (i % 3) * 30) * this.map.getMapScale(),
+									 (3860 + (i / 3) * 20) * this.map.getMapScale(),
+									 PIG_BODY_RADIUS,
+									 PIG_BODY_OFFSET_X,
+									 PIG_BODY_OFFSET_Y);
+
+			this.map.getEntities().setTeam(pig, PIG_TEAM);
+			this.map.getEntities().setAnimations(pig,
+												 this.pigStandAction.getAnimations(),
+												 this.pigStandAction.isAnimationLooping(),
+												 PIG_SCALE);
+			this.map.getAiScheduler().add(pig, new ChaseBehaviour(this.map,
+																  this.pigStandAction,
+																  this.pigWalkAction,
+																  PIG_SCALE,
+																  PIG_SPEED));
+		}
+	}
+
 	@Override
 	public void render(float delta)
 	{
+		this.frameProfiler.checkInput();
+		this.frameProfiler.beginFrame();
+		this.checkPhaseInput();
+
+		this.frameProfiler.begin(PROFILE_CLEAR);
 		this.clearScreen();
-		this.updatePlayer();
-		this.updateMap();
+		this.frameProfiler.end(PROFILE_CLEAR);
+
+		this.updateMap(delta);
+
+		this.frameProfiler.begin(PROFILE_DEBUG);
+		this.debugOverlay.checkInput();
+		this.debugOverlay.render(this.camera, this.map);
+		this.frameProfiler.end(PROFILE_DEBUG);
+
+		this.frameProfiler.begin(PROFILE_CAMERA);
 		this.updateCamera();
+		this.frameProfiler.end(PROFILE_CAMERA);
 
+		this.frameProfiler.begin(PROFILE_STAGE);
 		this.stage.draw();
+		this.frameProfiler.end(PROFILE_STAGE);
+
+		this.frameProfiler.begin(PROFILE_UI);
 		this.uiStage.draw();
+		this.frameProfiler.end(PROFILE_UI);
+
+		this.frameProfiler.endFrame();
+		this.frameProfiler.render();
 
 		if (Gdx.input.isKeyPressed(Input.Keys.BACK))
 		{
 			this.exit();
 		}
-
-
-//		int tileWidth = 128 * 4;
-//		int mapWidth = 4096 * 4;
-//		sr.setProjectionMatrix(camera.combined);
-//		sr.begin(ShapeRenderer.ShapeType.Line);
-//
-//		for (int x = 0; x < mapWidth; x += tileWidth)
-//		{
-//			sr.line(x, 0, x, 4096 * 4);
-//		}
-//
-//
-//		for (int y = 0; y < 4096 * 4; y += 128 * 4)
-//		{
-//			sr.line(0, y, mapWidth, y);
-//		}
-//
-//		sr.end();
 	}
 
-	private void updateMap()
+	private void updateMap(float delta)
 	{
-		this.map.getMapRenderer().setView(this.camera);
-		this.map.getMapRenderer().render();
-		this.map.updatePhysics(this.camera);
+		this.frameProfiler.begin(PROFILE_TILES);
+		this.map.drawTiles(this.camera);
+		this.frameProfiler.end(PROFILE_TILES);
 
-		this.map.draw(this.spriteBatch, this.player, new Vector2(this.camera.position.x, this.camera.position.y));
-	}
+		this.frameProfiler.begin(PROFILE_ENTITIES);
+		this.map.updateEntities(delta);
+		this.frameProfiler.end(PROFILE_ENTITIES);
 
-	private void updatePlayer()
-	{
-		this.player.update(this.touchpad);
-		this.player.setPosition(this.player.getBody().getPosition().x * this.map.getBoxToWorld(),
-								this.player.getBody().getPosition().y * this.map.getBoxToWorld());
-//		this.player.draw(this.spriteBatch);
+		this.frameProfiler.begin(PROFILE_PHYSICS);
+		this.map.updatePhysics(delta);
+		this.frameProfiler.end(PROFILE_PHYSICS);
+
+		this.frameProfiler.begin(PROFILE_OBJECTS);
+		this.map.draw(this.spriteBatch, this.camera);
+		this.frameProfiler.end(PROFILE_OBJECTS);
 	}
 
 	private void updateCamera()
@@ -231,6 +417,38 @@ public class GameScreen implements Screen
 		this.camera.update();
 	}
 
+	private void checkPhaseInput()
+	{
+		boolean down = Gdx.input.isKeyPressed(PHASE_KEY);
+
+		if(down && !this.phaseKeyDown)
+		{
+			this.setPhase(WorldPhase.getOther(this.map.getPhase()));
+		}
+		this.phaseKeyDown = down;
+	}
+
+	/**
+	 * Switches the map and the music to the light or dark world, the music
+	 * of each phase goes on where it was left.
+	 *
+	 * @param phase
+	 */
+	public void setPhase(int phase)
+	{
+		this.map.setPhase(phase);
+
+		Music music = this.assetManager.get(BACKGROUND_MUSIC[phase], Music.class);
+
+		if(music != this.backgroundMusic)
+		{
+			this.backgroundMusic.pause();
+			this.backgroundMusic = music;
+			this.backgroundMusic.setLooping(true);
+			this.backgroundMusic.play();
+		}
+	}
+
 	private void clearScreen()
 	{
 		Gdx.graphics.getGL20().glClearColor( 0, 0, 0, 1 );
@@ -265,6 +483,8 @@ public class GameScreen implements Screen
 	@Override
 	public void resume()
 	{
+		// the GL context may have been lost while paused
+		this.map.invalidateChunks();
 		this.backgroundMusic.play();
 	}
 
@@ -273,26 +493,24 @@ public class GameScreen implements Screen
 	{
 		this.backgroundMusic.stop();
 		this.spriteBatch.dispose();
-		this.touchpadSkin.dispose();
 		this.stage.dispose();
 		this.player.dispose();
-		this.backgroundMusic.dispose();
-		this.map.dispose();
+		if(this.pigStandAction != null)
+		{
+			this.pigStandAction.dispose();
+			this.pigWalkAction.dispose();
+		}
+		this.actionAssetCache.dispose();
+		this.debugOverlay.dispose();
+		this.frameProfiler.dispose();
+		// the skins only hold managed textures, the map and the music are disposed by the asset manager
+		unloadAssets(this.assetManager);
 	}
 
 	private void exit()
 	{
-		this.backButtonSound.setVolume(0.1f);
-		this.backButtonSound.setOnCompletionListener(new Music.OnCompletionListener()
-		{
-			@Override
-			public void onCompletion(Music music)
-			{
-				backButtonSound.dispose();
-			}
-		});
-
-		this.backButtonSound.play();
+		// the sound effects outlive the screen, so the gong plays on in the menu
+		this.game.getSoundEffects().play(SoundEffect.GONG, 0.1f);
 		this.dispose();
 		this.game.openMenu();
 		Gdx.input.setCatchBackKey(false);
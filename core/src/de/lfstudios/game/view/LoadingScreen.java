@@ -0,0 +1,104 @@
+package de.lfstudios.game.view;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.utils.TimeUtils;
+import de.lfstudios.game.Despair;
+
+/**
+ * Loads the queued assets a few milliseconds per frame and shows the
+ * progress, then hands over to the game screen.
+ *
+ * @author vwiebe
+ */
+public class LoadingScreen implements Screen
+{
+	// leaves the rest of a 60 fps frame for drawing
+	private static final int LOADING_BUDGET_MILLIS = 10;
+	private static final float BAR_HEIGHT = 0.02f;
+	private static final float BAR_WIDTH = 0.6f;
+
+	private Despair game;
+	private AssetManager assetManager;
+	private ShapeRenderer shapeRenderer;
+	private long start;
+
+	/**
+	 *
+	 * @param game
+	 */
+	public LoadingScreen(Despair game)
+	{
+		this.game = game;
+		this.assetManager = game.getAssetManager();
+		this.shapeRenderer = new ShapeRenderer();
+	}
+
+	@Override
+	public void render(float delta)
+	{
+		Gdx.graphics.getGL20().glClearColor(0, 0, 0, 1);
+		Gdx.graphics.getGL20().glClear(GL30.GL_COLOR_BUFFER_BIT | GL30.GL_DEPTH_BUFFER_BIT);
+
+		if(this.assetManager.update(LOADING_BUDGET_MILLIS))
+		{
+			Gdx.app.log("LoadingScreen", this.assetManager.getLoadedAssets() + " assets loaded in " +
+										 TimeUtils.timeSinceMillis(this.start) + " ms");
+			this.game.showGame();
+			this.dispose();
+			return;
+		}
+
+		float width = Gdx.graphics.getWidth() * BAR_WIDTH;
+		float height = Gdx.graphics.getHeight() * BAR_HEIGHT;
+		float x = (Gdx.graphics.getWidth() - width) / 2;
+		float y = (Gdx.graphics.getHeight() - height) / 2;
+
+		this.shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+		this.shapeRenderer.setColor(Color.DARK_GRAY);
+		this.shapeRenderer.rect(x, y, width, height);
+		this.shapeRenderer.setColor(Color.LIGHT_GRAY);
+		this.shapeRenderer.rect(x, y, width * this.assetManager.getProgress(), height);
+		this.shapeRenderer.end();
+	}
+
+	@Override
+	public void resize(int width, int height)
+	{
+		this.shapeRenderer.getProjectionMatrix().setToOrtho2D(0, 0, width, height);
+	}
+
+	@Override
+	public void show()
+	{
+		this.start = TimeUtils.millis();
+	}
+
+	@Override
+	public void hide()
+	{
+
+	}
+
+	@Override
+	public void pause()
+	{
+
+	}
+
+	@Override
+	public void resume()
+	{
+
+	}
+
+	@Override
+	public void dispose()
+	{
+		this.shapeRenderer.dispose();
+	}
+}
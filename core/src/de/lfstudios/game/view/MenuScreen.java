@@ -3,14 +3,16 @@ package de.lfstudios.game.view;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.audio.Music;
-import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.graphics.GL30;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Timer;
 import de.lfstudios.game.Despair;
+import de.lfstudios.game.core.audio.SoundEffect;
+import de.lfstudios.game.core.audio.SoundEffects;
 
 /**
  * @author vwiebe
@@ -27,8 +29,7 @@ public class MenuScreen implements Screen
 	private TextureRegion currentFrame;
 	private float stateTime;
 	private Music backgroundMusic;
-	private Sound startGameSound;
-	private Music exitGameSound;
+	private SoundEffects soundEffects;
 
 	public MenuScreen(Despair game)
 	{
@@ -50,8 +51,7 @@ public class MenuScreen implements Screen
 		this.menuFrames[3] = tmp[1][1];
 		this.menuAnimation = new Animation(0.5f, this.menuFrames);
 		this.backgroundMusic = Gdx.audio.newMusic(Gdx.files.internal("sounds/menuscreen.mp3"));
-		this.startGameSound = Gdx.audio.newSound(Gdx.files.internal("sounds/gong.mp3"));
-		this.exitGameSound = Gdx.audio.newMusic(Gdx.files.internal("sounds/sword1.mp3"));
+		this.soundEffects = game.getSoundEffects();
 	}
 
 	@Override
@@ -106,8 +106,6 @@ public class MenuScreen implements Screen
 		this.menuSheet.dispose();
 		this.spriteBatch.dispose();
 		this.backgroundMusic.dispose();
-		this.startGameSound.dispose();
-		this.exitGameSound.dispose();
 	}
 
 	private void checkInput()
@@ -130,22 +128,23 @@ public class MenuScreen implements Screen
 
 	private void exit()
 	{
-		this.exitGameSound.setOnCompletionListener(new Music.OnCompletionListener()
+		this.soundEffects.play(SoundEffect.SWORD, 0.2f);
+		this.backgroundMusic.stop();
+
+		// a sound has no completion listener, so exit once the sword has rung out
+		Timer.schedule(new Timer.Task()
 		{
 			@Override
-			public void onCompletion(Music music)
+			public void run()
 			{
 				game.exitGame();
 			}
-		});
-		this.exitGameSound.setVolume(0.2f);
-		this.exitGameSound.play();
-		this.backgroundMusic.stop();
+		}, SoundEffect.SWORD.getDuration());
 	}
 
 	private void start()
 	{
-		this.startGameSound.play(0.1f);
+		this.soundEffects.play(SoundEffect.GONG, 0.1f);
 		this.game.startGame();
 		this.dispose();
 	}